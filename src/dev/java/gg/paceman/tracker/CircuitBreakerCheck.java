@@ -0,0 +1,125 @@
+package gg.paceman.tracker;
+
+import gg.paceman.tracker.dev.DevCheck;
+import gg.paceman.tracker.dev.FakePaceManServer;
+import gg.paceman.tracker.util.CircuitBreaker;
+import gg.paceman.tracker.util.CircuitOpenException;
+import gg.paceman.tracker.util.PostUtil;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Steps a {@link CircuitBreaker} through its token bucket and open, half open and closed states on a fake clock, then
+ * checks against a {@link FakePaceManServer} that a 429 with a Retry-After keeps requests from being sent for as long
+ * as the server asked.
+ */
+public class CircuitBreakerCheck {
+    private static final long BASE_OPEN_MILLIS = 15_000;
+
+    public static void main(String[] args) {
+        DevCheck.run("Circuit breaker", () -> {
+            AtomicLong now = new AtomicLong(1_000_000);
+            CircuitBreakerCheck.checkTokenBucket(now);
+            CircuitBreakerCheck.checkOpenAndClose(now);
+            CircuitBreakerCheck.checkSlowCalls(now);
+            CircuitBreakerCheck.checkRetryAfter();
+        });
+    }
+
+    private static void checkTokenBucket(AtomicLong now) {
+        CircuitBreaker breaker = new CircuitBreaker("bucket", 3, 2, now::get);
+        for (int i = 0; i < 3; i++) {
+            DevCheck.require(breaker.tryAcquire() == 0, "Call " + (i + 1) + " of a full bucket was not allowed");
+        }
+        long wait = breaker.tryAcquire();
+        DevCheck.require(wait == 500, "Empty bucket at 2 calls per second should wait 500ms, got " + wait);
+        now.addAndGet(500);
+        DevCheck.require(breaker.tryAcquire() == 0, "Bucket did not refill after 500ms");
+        now.addAndGet(60_000);
+        for (int i = 0; i < 3; i++) {
+            DevCheck.require(breaker.tryAcquire() == 0, "Bucket refilled past its capacity is not full again");
+        }
+        DevCheck.require(breaker.tryAcquire() > 0, "Bucket holds more than its capacity of 3");
+        DevCheck.require(breaker.getState() == CircuitBreaker.State.CLOSED, "Running out of tokens opened the circuit");
+    }
+
+    private static void checkOpenAndClose(AtomicLong now) {
+        CircuitBreaker breaker = new CircuitBreaker("states", 100, 100, now::get);
+        breaker.onFailure("first", -1);
+        breaker.onFailure("second", -1);
+        DevCheck.require(breaker.getState() == CircuitBreaker.State.CLOSED, "Opened before 3 failures in a row");
+        breaker.onFailure("third", -1);
+        DevCheck.require(breaker.getState() == CircuitBreaker.State.OPEN, "Still closed after 3 failures in a row");
+        long wait = breaker.tryAcquire();
+        DevCheck.require(wait == BASE_OPEN_MILLIS, "First open should last " + BASE_OPEN_MILLIS + "ms, got " + wait);
+
+        now.addAndGet(BASE_OPEN_MILLIS);
+        DevCheck.require(breaker.getState() == CircuitBreaker.State.HALF_OPEN, "Not half open once the open time passed");
+        DevCheck.require(breaker.tryAcquire() == 0, "Half open circuit did not let the trial call through");
+        DevCheck.require(breaker.tryAcquire() > 0, "Half open circuit let a second call through during the trial");
+        breaker.onFailure("trial", -1);
+        wait = breaker.tryAcquire();
+        DevCheck.require(wait == 2 * BASE_OPEN_MILLIS, "Failed trial should re-open for twice as long, got " + wait + "ms");
+
+        now.addAndGet(2 * BASE_OPEN_MILLIS);
+        DevCheck.require(breaker.tryAcquire() == 0, "Second trial call was not let through");
+        breaker.onSuccess(50);
+        DevCheck.require(breaker.getState() == CircuitBreaker.State.CLOSED, "Successful trial did not close the circuit");
+        DevCheck.require(breaker.tryAcquire() == 0 && breaker.tryAcquire() == 0, "Closed circuit rejected calls");
+
+        // Backoff starts over once the circuit closed
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure("again", -1);
+        }
+        wait = breaker.tryAcquire();
+        DevCheck.require(wait == BASE_OPEN_MILLIS, "Backoff was not reset by closing, open for " + wait + "ms");
+
+        now.addAndGet(BASE_OPEN_MILLIS);
+        DevCheck.require(breaker.tryAcquire() == 0, "Trial call after the reset backoff was not let through");
+        breaker.onSuccess(4_000);
+        DevCheck.require(breaker.getState() == CircuitBreaker.State.OPEN, "A trial call slower than the limit closed the circuit");
+    }
+
+    /**
+     * Slow calls have to count as failures well before the request timeout cancels them.
+     */
+    private static void checkSlowCalls(AtomicLong now) {
+        CircuitBreaker breaker = new CircuitBreaker("slow", 100, 100, now::get);
+        for (int i = 0; i < 5; i++) {
+            breaker.onSuccess(2_500);
+        }
+        DevCheck.require(breaker.getState() == CircuitBreaker.State.CLOSED, "Calls of 2.5s opened the circuit");
+        for (int i = 0; i < 3; i++) {
+            DevCheck.require(breaker.getState() == CircuitBreaker.State.CLOSED, "Opened before 3 slow calls in a row");
+            breaker.onSuccess(PostUtil.READ_TIMEOUT_MILLIS / 2);
+        }
+        DevCheck.require(breaker.getState() == CircuitBreaker.State.OPEN, "3 calls of half the request timeout in a row did not open the circuit");
+    }
+
+    private static void checkRetryAfter() throws Exception {
+        FakePaceManServer server = new FakePaceManServer(0);
+        server.rateLimitRate = 1;
+        server.retryAfterSeconds = 40;
+        server.start();
+        try {
+            String url = server.getUrl() + FakePaceManServer.EVENT_ROUTE;
+            CircuitBreaker breaker = PostUtil.registerCircuitBreaker(url, new CircuitBreaker("retry-after", 10, 10));
+            int code = PostUtil.sendData(url, "{}").getCode();
+            DevCheck.require(code == 429, "Fake server should rate limit, got " + code);
+            DevCheck.require(breaker.getState() == CircuitBreaker.State.OPEN, "A 429 did not open the circuit");
+            long wait = breaker.getMillisUntilPermitted();
+            DevCheck.require(wait > 35_000 && wait <= 40_000, "Should wait the 40s the server asked for, not the usual backoff, got " + wait + "ms");
+
+            try {
+                PostUtil.sendData(url, "{}");
+                throw new AssertionError("Request was sent while the server asked to wait");
+            } catch (CircuitOpenException e) {
+                DevCheck.require(e.getRetryInMillis() > 35_000, "Rejected request says to retry in " + e.getRetryInMillis() + "ms");
+            }
+            long requests = server.getStats().get(FakePaceManServer.EVENT_ROUTE).requests.get();
+            DevCheck.require(requests == 1, "Server got " + requests + " requests, the rejected one should not reach it");
+        } finally {
+            server.stop();
+        }
+    }
+}
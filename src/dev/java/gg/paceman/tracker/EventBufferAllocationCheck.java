@@ -0,0 +1,88 @@
+package gg.paceman.tracker;
+
+import com.google.gson.stream.JsonWriter;
+import gg.paceman.tracker.dev.Allocations;
+import gg.paceman.tracker.dev.DevCheck;
+import gg.paceman.tracker.util.EventBuffer;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks that {@link EventBuffer#writeJsonArray(JsonWriter)} writes the same JSON as a JsonWriter does for each line,
+ * and that it allocates less than decoding every line to a String on each send (what it did before lines were stored
+ * escaped).
+ */
+public class EventBufferAllocationCheck {
+    private static final int WARMUP_RUNS = 20_000;
+    private static final int MEASURED_RUNS = 20_000;
+
+    public static void main(String[] args) {
+        DevCheck.run("Event buffer allocation", () -> {
+            List<String> lines = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                lines.add(TrackerFixture.event("rsg.enter_nether", 60_000 + i * 10_000));
+            }
+            List<String> tricky = Arrays.asList("quote \" backslash \\ tab \t newline \n", "control \u0001 separators \u2028 \u2029", "accents \u00e9 \u2713 \ud83d\ude00");
+
+            EventBuffer buffer = new EventBuffer();
+            buffer.addAll(tricky);
+            DevCheck.require(buffer.toList().equals(tricky), "Lines changed on the way through the buffer: " + buffer.toList());
+            DevCheck.require(EventBufferAllocationCheck.write(buffer::writeJsonArray).equals(EventBufferAllocationCheck.writePerLine(tricky)),
+                    "Buffer JSON differs from JsonWriter: " + EventBufferAllocationCheck.write(buffer::writeJsonArray));
+
+            buffer.clear();
+            buffer.addAll(lines);
+            List<byte[]> encoded = new ArrayList<>();
+            lines.forEach(line -> encoded.add(line.getBytes(StandardCharsets.UTF_8)));
+            StringWriter out = new StringWriter(8192);
+
+            long escaped = Allocations.perRun(() -> EventBufferAllocationCheck.writeTo(out, buffer::writeJsonArray), WARMUP_RUNS, MEASURED_RUNS);
+            long perLine = Allocations.perRun(() -> EventBufferAllocationCheck.writeTo(out, writer -> {
+                writer.beginArray();
+                for (byte[] line : encoded) {
+                    writer.value(new String(line, StandardCharsets.UTF_8));
+                }
+                writer.endArray();
+            }), WARMUP_RUNS, MEASURED_RUNS);
+            System.out.println("Writing " + lines.size() + " events: " + escaped + " bytes from the escaped buffer, " + perLine + " bytes decoding each line");
+            DevCheck.require(escaped < perLine, "Writing the escaped buffer allocates " + escaped + " bytes, decoding each line " + perLine);
+        });
+    }
+
+    private static String write(JsonBody body) {
+        StringWriter out = new StringWriter();
+        EventBufferAllocationCheck.writeTo(out, body);
+        return out.toString();
+    }
+
+    private static String writePerLine(List<String> lines) {
+        return EventBufferAllocationCheck.write(writer -> {
+            writer.beginArray();
+            for (String line : lines) {
+                writer.value(line);
+            }
+            writer.endArray();
+        });
+    }
+
+    private static void writeTo(StringWriter out, JsonBody body) {
+        out.getBuffer().setLength(0);
+        try {
+            JsonWriter writer = new JsonWriter(out);
+            body.write(writer);
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private interface JsonBody {
+        void write(JsonWriter writer) throws IOException;
+    }
+}
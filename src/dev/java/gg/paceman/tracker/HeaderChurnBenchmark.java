@@ -0,0 +1,102 @@
+package gg.paceman.tracker;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Replays latest_world.json changes the way SeedQueue resets do, a new world every time, while ticking the tracker,
+ * and reports how long the ticks take and how many of the worlds the tracker picked up. Run with
+ * {@code ./gradlew headerChurnBenchmark --args="--resets-per-minute 6000 --seconds 30"}.
+ * <p>
+ * Options: --resets-per-minute (default 3000), --seconds (default 30) and --tick-millis, the time between tracker ticks
+ * (default 25, the real tracker ticks once a second but ticking faster makes nearly every change its own tick).
+ */
+public class HeaderChurnBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = HeaderChurnBenchmark.parseArgs(args);
+        int resetsPerMinute = Integer.parseInt(options.getOrDefault("resets-per-minute", "3000"));
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "30"));
+        long tickMillis = Long.parseLong(options.getOrDefault("tick-millis", "25"));
+
+        PaceManTrackerOptions.load();
+        PaceManTrackerOptions.update(o -> o.withAccessKey("header-churn-benchmark"));
+        TrackerFixture fixture = new TrackerFixture(Files.createTempDirectory("paceman-header-churn"));
+        fixture.newWorld();
+        PaceManTracker tracker = new PaceManTracker(fixture.getPaths());
+        tracker.tick();
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger written = new AtomicInteger();
+        Thread writer = new Thread(() -> {
+            long intervalNanos = 60_000_000_000L / resetsPerMinute;
+            long next = System.nanoTime();
+            try {
+                while (running.get()) {
+                    fixture.newWorld();
+                    written.incrementAndGet();
+                    next += intervalNanos;
+                    long sleepNanos = next - System.nanoTime();
+                    if (sleepNanos > 0) {
+                        Thread.sleep(sleepNanos / 1_000_000, (int) (sleepNanos % 1_000_000));
+                    }
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, "header-churn-writer");
+
+        System.out.printf("Writing %d resets per minute for %d seconds, ticking every %d ms%n", resetsPerMinute, seconds, tickMillis);
+        long[] tickNanos = new long[(int) (seconds * 1000L / tickMillis) + 1];
+        int ticks = 0;
+        int worldsSeen = 0;
+        Path lastWorld = tracker.getWorldPath();
+        writer.start();
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        while (System.nanoTime() < end && ticks < tickNanos.length) {
+            long start = System.nanoTime();
+            tracker.tick();
+            tickNanos[ticks++] = System.nanoTime() - start;
+            Path world = tracker.getWorldPath();
+            if (world != null && !world.equals(lastWorld)) {
+                worldsSeen++;
+                lastWorld = world;
+            }
+            Thread.sleep(tickMillis);
+        }
+        running.set(false);
+        writer.join();
+
+        long[] sorted = Arrays.copyOf(tickNanos, ticks);
+        Arrays.sort(sorted);
+        long total = 0;
+        for (long nanos : sorted) {
+            total += nanos;
+        }
+        System.out.printf("%d resets written (%.0f per minute), %d ticks, %d new worlds picked up%n", written.get(), written.get() * 60.0 / seconds, ticks, worldsSeen);
+        System.out.printf("Tick ms: mean %.3f, p50 %.3f, p90 %.3f, p99 %.3f, max %.3f%n", total / 1e6 / ticks, HeaderChurnBenchmark.percentile(sorted, 50), HeaderChurnBenchmark.percentile(sorted, 90), HeaderChurnBenchmark.percentile(sorted, 99), sorted[ticks - 1] / 1e6);
+        PaceManTracker.flushLogs();
+        System.exit(0);
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Expected an option but got " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+}
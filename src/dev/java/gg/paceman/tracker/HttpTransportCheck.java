@@ -0,0 +1,164 @@
+package gg.paceman.tracker;
+
+import com.google.gson.JsonObject;
+import gg.paceman.tracker.dev.DevCheck;
+import gg.paceman.tracker.dev.H2cServer;
+import gg.paceman.tracker.util.CircuitBreaker;
+import gg.paceman.tracker.util.PostUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Sends the same requests through both versions of PostUtil's HTTP client, HttpURLConnection (Java 8) and
+ * java.net.http (Java 11+, over HTTP/2), blocking and async, to an {@link H2cServer}. Every way has to give the same
+ * code and message and honour Retry-After in seconds and as a date the same way.
+ * <p>
+ * Each version runs in its own class loader, the Java 11 one with the java11 source set's classes (passed in as
+ * {@code paceman.dev.java11Classes} by the build) in front of the main ones, as in the multi-release jar.
+ */
+public class HttpTransportCheck {
+    private static final long ASYNC_TIMEOUT_MILLIS = 15_000;
+    // Retry-After dates only have whole seconds
+    private static final long TIME_TOLERANCE_MILLIS = 2_000;
+    private static final List<String> CASES = Arrays.asList("ok", "deny", "limit", "unavailable", "empty");
+
+    public static void main(String[] args) {
+        DevCheck.run("HTTP transports", () -> {
+            H2cServer server = new H2cServer(HttpTransportCheck::reply);
+            server.start();
+            String url = server.getUrl() + "/api/sendevent";
+            try (URLClassLoader java8 = HttpTransportCheck.loader(false); URLClassLoader java11 = HttpTransportCheck.loader(true)) {
+                Map<String, List<Object>> java8Results = HttpTransportCheck.probe(java8, url, "HttpURLConnection");
+                DevCheck.require(server.http1Requests.get() == 2 * CASES.size() && server.http2Requests.get() == 0, "HttpURLConnection didn't use HTTP/1.1 for every request");
+                Map<String, List<Object>> java11Results = HttpTransportCheck.probe(java11, url, "java.net.http");
+                DevCheck.require(server.http1Requests.get() == 2 * CASES.size() && server.http2Requests.get() == 2 * CASES.size(), "java.net.http didn't use HTTP/2 for every request, " + server.http2Requests.get() + " did");
+
+                for (String key : java8Results.keySet()) {
+                    List<Object> expected = java8Results.get(key);
+                    List<Object> actual = java11Results.get(key);
+                    DevCheck.require(expected.get(0).equals(actual.get(0)) && expected.get(1).equals(actual.get(1)), key + ": HttpURLConnection got " + expected + ", java.net.http got " + actual);
+                    for (int i = 2; i < expected.size(); i++) {
+                        DevCheck.require(Math.abs((long) expected.get(i) - (long) actual.get(i)) <= TIME_TOLERANCE_MILLIS, key + ": HttpURLConnection got " + expected + ", java.net.http got " + actual);
+                    }
+                }
+            } finally {
+                server.stop();
+            }
+        });
+    }
+
+    private static H2cServer.Reply reply(String body) {
+        switch (body) {
+            case "ok":
+                return new H2cServer.Reply(200, "OK", "", null);
+            case "deny":
+                return new H2cServer.Reply(400, "Bad Request", "Invalid access key", null);
+            case "limit":
+                return new H2cServer.Reply(429, "Too Many Requests", "Slow down", "40");
+            case "unavailable":
+                String date = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(60));
+                return new H2cServer.Reply(503, "Service Unavailable", "Down for maintenance", date);
+            default:
+                return new H2cServer.Reply(502, "Bad Gateway", "", null);
+        }
+    }
+
+    private static URLClassLoader loader(boolean java11) throws IOException {
+        List<URL> urls = new ArrayList<>();
+        if (java11) {
+            String classes = System.getProperty("paceman.dev.java11Classes");
+            DevCheck.require(classes != null, "No paceman.dev.java11Classes, run this check through Gradle");
+            for (String dir : classes.split(File.pathSeparator)) {
+                urls.add(new File(dir).toURI().toURL());
+            }
+        }
+        for (Class<?> fromJar : new Class<?>[]{PostUtil.class, HttpTransportCheck.class, JsonObject.class}) {
+            urls.add(fromJar.getProtectionDomain().getCodeSource().getLocation());
+        }
+        // Not delegating to the application class loader, which has the Java 8 client
+        return new URLClassLoader(urls.toArray(new URL[0]), ClassLoader.getSystemClassLoader().getParent());
+    }
+
+    /**
+     * Runs every case through {@link Probe} in the class loader and checks the results against what the stand-in sent.
+     *
+     * @return the results by case and way of sending
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, List<Object>> probe(ClassLoader loader, String url, String client) throws Exception {
+        BiFunction<String, String, Map<String, List<Object>>> probe = (BiFunction<String, String, Map<String, List<Object>>>) loader.loadClass(Probe.class.getName()).getConstructor().newInstance();
+        Map<String, List<Object>> results = new LinkedHashMap<>();
+        for (String body : CASES) {
+            Map<String, List<Object>> caseResults = probe.apply(url, body);
+            String name = (String) caseResults.remove("client").get(0);
+            DevCheck.require(name.startsWith(client), "Expected the " + client + " client, got " + name);
+            caseResults.forEach((way, result) -> results.put(body + " " + way, result));
+        }
+        results.forEach((key, result) -> HttpTransportCheck.requireExpected(key, client, result));
+        return results;
+    }
+
+    private static void requireExpected(String key, String client, List<Object> result) {
+        String body = key.substring(0, key.indexOf(' '));
+        H2cServer.Reply reply = HttpTransportCheck.reply(body);
+        String expectedMessage = reply.code >= 400 ? new String(reply.body, StandardCharsets.UTF_8) : reply.reason;
+        DevCheck.require(result.get(0).equals(reply.code) && result.get(1).equals(expectedMessage), client + " " + key + ": expected " + reply.code + " " + expectedMessage + ", got " + result);
+        long retryAfter = (long) result.get(2);
+        long openFor = (long) result.get(3);
+        switch (body) {
+            case "limit":
+                DevCheck.require(retryAfter == 40_000, client + " " + key + ": Retry-After of 40 seconds read as " + retryAfter + "ms");
+                DevCheck.require(openFor > 40_000 - TIME_TOLERANCE_MILLIS && openFor <= 40_000, client + " " + key + ": circuit open for " + openFor + "ms after a 429 asking for 40s");
+                break;
+            case "unavailable":
+                DevCheck.require(retryAfter > 60_000 - 2 * TIME_TOLERANCE_MILLIS && retryAfter <= 60_000, client + " " + key + ": Retry-After date 60s on read as " + retryAfter + "ms");
+                break;
+            default:
+                DevCheck.require(retryAfter == -1 && openFor == 0, client + " " + key + ": no Retry-After read as " + retryAfter + "ms, circuit open for " + openFor + "ms");
+                break;
+        }
+    }
+
+    /**
+     * Sends one body through PostUtil blocking and async, each through a fresh circuit breaker. Loaded in each
+     * transport's class loader, so it only hands back JDK types: the code, message, Retry-After and how long the circuit
+     * breaker is then open, by way of sending, and the client's name under "client".
+     */
+    public static class Probe implements BiFunction<String, String, Map<String, List<Object>>> {
+        @Override
+        public Map<String, List<Object>> apply(String url, String body) {
+            Map<String, List<Object>> results = new LinkedHashMap<>();
+            results.put("client", Arrays.asList(PostUtil.getClientName()));
+            try {
+                CircuitBreaker breaker = PostUtil.registerCircuitBreaker(url, new CircuitBreaker("probe", 10, 10));
+                results.put("sync", Probe.describe(PostUtil.sendData(url, body), breaker));
+                breaker = PostUtil.registerCircuitBreaker(url, new CircuitBreaker("probe", 10, 10));
+                results.put("async", Probe.describe(PostUtil.sendDataAsync(url, body).get(ASYNC_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS), breaker));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            return results;
+        }
+
+        private static List<Object> describe(PostUtil.PostResponse response, CircuitBreaker breaker) {
+            return Arrays.asList(response.code, response.message, response.retryAfterMillis, breaker.getMillisUntilPermitted());
+        }
+    }
+}
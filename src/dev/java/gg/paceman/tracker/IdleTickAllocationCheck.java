@@ -0,0 +1,46 @@
+package gg.paceman.tracker;
+
+import gg.paceman.tracker.dev.Allocations;
+import gg.paceman.tracker.dev.DevCheck;
+
+import java.nio.file.Files;
+
+/**
+ * Fails if an idle tick of {@link PaceManTracker} or {@link StateTracker} (nothing changed in the game files)
+ * allocates more than its budget. Idle ticks run every second and every 25ms for as long as the game is open, so they
+ * should only cost the stat calls that notice a change.
+ */
+public class IdleTickAllocationCheck {
+    // Both are a few times what the stat calls of an idle tick allocate, a header or state file read is far more
+    private static final long TRACKER_TICK_BUDGET_BYTES = 512;
+    private static final long STATE_TICK_BUDGET_BYTES = 1024;
+    private static final int WARMUP_TICKS = 20_000;
+    private static final int MEASURED_TICKS = 20_000;
+
+    public static void main(String[] args) {
+        DevCheck.run("Idle tick allocation", () -> {
+            PaceManTrackerOptions.load();
+            PaceManTrackerOptions.update(options -> options.withAccessKey("allocation-check"));
+            TrackerFixture fixture = new TrackerFixture(Files.createTempDirectory("paceman-idle-tick"));
+            fixture.newWorld();
+            fixture.appendEvents(TrackerFixture.event("common.multiplayer", 1000));
+            fixture.writeState("wall");
+            fixture.writeResets(100);
+
+            PaceManTracker tracker = new PaceManTracker(fixture.getPaths());
+            StateTracker stateTracker = tracker.getStateTracker();
+            tracker.tick();
+            stateTracker.tickResetCheck();
+            stateTracker.tickInstPath();
+            stateTracker.tryTick();
+
+            long trackerTick = Allocations.perRun(tracker::tick, WARMUP_TICKS, MEASURED_TICKS);
+            long stateTick = Allocations.perRun(stateTracker::tryTick, WARMUP_TICKS, MEASURED_TICKS);
+            System.out.println("Idle PaceManTracker.tick: " + trackerTick + " bytes (budget " + TRACKER_TICK_BUDGET_BYTES + ")");
+            System.out.println("Idle StateTracker.tryTick: " + stateTick + " bytes (budget " + STATE_TICK_BUDGET_BYTES + ")");
+            PaceManTracker.flushLogs();
+            DevCheck.require(trackerTick <= TRACKER_TICK_BUDGET_BYTES, "Idle tracker tick allocates " + trackerTick + " bytes");
+            DevCheck.require(stateTick <= STATE_TICK_BUDGET_BYTES, "Idle state tracker tick allocates " + stateTick + " bytes");
+        });
+    }
+}
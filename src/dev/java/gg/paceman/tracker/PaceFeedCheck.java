@@ -0,0 +1,151 @@
+package gg.paceman.tracker;
+
+import com.google.gson.JsonObject;
+import gg.paceman.tracker.dev.DevCheck;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Checks the {@link PaceFeedServer}'s guards over raw sockets (HttpURLConnection won't send an Origin header): pages
+ * from other origins get a 403, a client past {@link PaceFeedServer#MAX_CLIENTS} gets a 503, and a client that stops
+ * reading loses its oldest events and is told how many with a {@code dropped} event.
+ */
+public class PaceFeedCheck {
+    private static final int STALL_FRAMES = 2000;
+    private static final int STALL_FRAME_BYTES = 4096;
+    private static final int READ_TIMEOUT_MILLIS = 10_000;
+
+    public static void main(String[] args) {
+        DevCheck.run("Pace feed", () -> {
+            PaceFeedServer feed = new PaceFeedServer(0);
+            feed.start();
+            int port = feed.getPort();
+            try {
+                for (String origin : new String[]{"null", "https://example.com", "http://localhost.example.com", "file://"}) {
+                    try (Socket socket = PaceFeedCheck.connect(port, origin, 0)) {
+                        String headers = PaceFeedCheck.readHeaders(socket.getInputStream());
+                        DevCheck.require(headers.startsWith("HTTP/1.1 403"), "Origin " + origin + " was not refused: " + headers);
+                    }
+                }
+
+                List<Socket> clients = new ArrayList<>();
+                // A small receive buffer, so the server's writes block soon after this client stops reading
+                Socket stalled = PaceFeedCheck.connect(port, "http://localhost:3000", 4096);
+                clients.add(stalled);
+                String headers = PaceFeedCheck.readHeaders(stalled.getInputStream());
+                DevCheck.require(headers.startsWith("HTTP/1.1 200"), "Localhost origin was refused: " + headers);
+                DevCheck.require(headers.toLowerCase(Locale.ROOT).contains("access-control-allow-origin: http://localhost:3000"), "Localhost origin not allowed: " + headers);
+                for (String origin : new String[]{"http://127.0.0.1:8080", null, null, null, null, null, null}) {
+                    Socket client = PaceFeedCheck.connect(port, origin, 0);
+                    clients.add(client);
+                    headers = PaceFeedCheck.readHeaders(client.getInputStream());
+                    DevCheck.require(headers.startsWith("HTTP/1.1 200"), "Client " + clients.size() + " was refused: " + headers);
+                }
+                try (Socket ninth = PaceFeedCheck.connect(port, null, 0)) {
+                    headers = PaceFeedCheck.readHeaders(ninth.getInputStream());
+                    DevCheck.require(headers.startsWith("HTTP/1.1 503") && headers.toLowerCase(Locale.ROOT).contains("retry-after"), "Client past the limit was not refused: " + headers);
+                }
+
+                StringBuilder padding = new StringBuilder();
+                while (padding.length() < STALL_FRAME_BYTES) {
+                    padding.append("0123456789abcdef");
+                }
+                for (int i = 0; i < STALL_FRAMES; i++) {
+                    JsonObject data = new JsonObject();
+                    data.addProperty("name", "rsg.event_" + i);
+                    data.addProperty("padding", padding.toString());
+                    feed.publish("event", data);
+                }
+                // Only read once everything was published, by then the stalled client's queue overflowed
+                DevCheck.require(PaceFeedCheck.readUntil(stalled.getInputStream(), "event: dropped"), "Stalled client was never told about dropped events");
+                for (Socket client : clients) {
+                    client.close();
+                }
+            } finally {
+                feed.stop();
+            }
+        });
+    }
+
+    private static Socket connect(int port, String origin, int receiveBufferSize) throws IOException {
+        Socket socket = new Socket();
+        if (receiveBufferSize > 0) {
+            socket.setReceiveBufferSize(receiveBufferSize);
+        }
+        socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+        socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        String request = "GET /events HTTP/1.1\r\nHost: localhost:" + port + "\r\n" + (origin == null ? "" : "Origin: " + origin + "\r\n") + "\r\n";
+        socket.getOutputStream().write(request.getBytes(StandardCharsets.US_ASCII));
+        socket.getOutputStream().flush();
+        return socket;
+    }
+
+    /**
+     * @return the status line and headers, the server sends header names in its own capitalization
+     */
+    private static String readHeaders(InputStream in) throws IOException {
+        ByteArrayOutputStream headers = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1) {
+            headers.write(b);
+            if (headers.toString("US-ASCII").endsWith("\r\n\r\n")) {
+                break;
+            }
+        }
+        return headers.toString("US-ASCII");
+    }
+
+    /**
+     * Reads the chunked event stream until the text shows up, or throws once the read times out.
+     *
+     * @return false if the stream ended without it
+     */
+    private static boolean readUntil(InputStream in, String text) throws IOException {
+        // Kept between chunks, the text can be split across two
+        String carry = "";
+        while (true) {
+            String sizeLine = PaceFeedCheck.readLine(in);
+            if (sizeLine.isEmpty()) {
+                continue;
+            }
+            int size = Integer.parseInt(sizeLine.trim(), 16);
+            if (size == 0) {
+                return false;
+            }
+            byte[] chunk = new byte[size];
+            int read = 0;
+            while (read < size) {
+                int n = in.read(chunk, read, size - read);
+                if (n == -1) {
+                    return false;
+                }
+                read += n;
+            }
+            String contents = carry + new String(chunk, StandardCharsets.UTF_8);
+            if (contents.contains(text)) {
+                return true;
+            }
+            carry = contents.substring(Math.max(0, contents.length() - text.length()));
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') {
+            if (b != '\r') {
+                line.append((char) b);
+            }
+        }
+        return line.toString();
+    }
+}
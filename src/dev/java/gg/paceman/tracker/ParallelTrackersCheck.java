@@ -0,0 +1,91 @@
+package gg.paceman.tracker;
+
+import gg.paceman.tracker.dev.DevCheck;
+import gg.paceman.tracker.dev.FakePaceManServer;
+
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs two trackers side by side on isolated {@link TrackerContext}s, each with its own {@link FakePaceManServer} that
+ * only knows that tracker's key, and checks that each run and its cancel reach only its own server, that changing one
+ * tracker's options leaves the other's and the global ones alone, and that the options file watcher keeps running
+ * until the last tracker watching it stops.
+ */
+public class ParallelTrackersCheck {
+    private static final long TIMEOUT_MILLIS = 10_000;
+    private static final String WATCH_THREAD = "paceman-options-watch";
+
+    public static void main(String[] args) {
+        DevCheck.run("Parallel trackers", () -> {
+            FakePaceManServer serverA = new FakePaceManServer(0);
+            serverA.start();
+            FakePaceManServer serverB = new FakePaceManServer(0);
+            serverB.start();
+            serverA.validKeys.add("parallel-a");
+            serverB.validKeys.add("parallel-b");
+            TrackerContext contextA = TrackerContext.isolated(serverA.getUrl(), PaceManTrackerOptions.getDefaults().withAccessKey("parallel-a"));
+            TrackerContext contextB = TrackerContext.isolated(serverB.getUrl(), PaceManTrackerOptions.getDefaults().withAccessKey("parallel-b"));
+            FakePaceManServer.RouteStats eventsA = serverA.getStats().get(FakePaceManServer.EVENT_ROUTE);
+            FakePaceManServer.RouteStats eventsB = serverB.getStats().get(FakePaceManServer.EVENT_ROUTE);
+
+            try {
+                TrackerFixture fixtureA = new TrackerFixture(Files.createTempDirectory("paceman-parallel-a"));
+                fixtureA.newWorld();
+                fixtureA.appendEvents(TrackerFixture.event("rsg.enter_nether", 90_000));
+                TrackerFixture fixtureB = new TrackerFixture(Files.createTempDirectory("paceman-parallel-b"));
+                fixtureB.newWorld();
+                fixtureB.appendEvents(TrackerFixture.event("rsg.enter_nether", 95_000));
+                PaceManTracker trackerA = new PaceManTracker(fixtureA.getPaths(), contextA);
+                PaceManTracker trackerB = new PaceManTracker(fixtureB.getPaths(), contextB);
+                // The server counts a send before the tracker has the response, so wait for the trackers to see it
+                CountDownLatch sent = new CountDownLatch(2);
+                PaceManTrackerListener onSent = new PaceManTrackerListener() {
+                    @Override
+                    public void onSendResult(PaceManTracker.PaceManResponse.Type result, String message) {
+                        sent.countDown();
+                    }
+                };
+                trackerA.addListener(onSent);
+                trackerB.addListener(onSent);
+                trackerA.start(false);
+                trackerB.start(false);
+                sent.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                DevCheck.require(eventsA.requests.get() == 1 && eventsA.accepted.get() == 1, "Server A did not get exactly tracker A's run: " + eventsA);
+                DevCheck.require(eventsB.requests.get() == 1 && eventsB.accepted.get() == 1, "Server B did not get exactly tracker B's run: " + eventsB);
+
+                contextA.updateOptions(options -> options.withAllowAnyWorldName(true));
+                DevCheck.require(!contextB.getOptions().allowAnyWorldName, "Changing tracker A's options changed tracker B's");
+                DevCheck.require(PaceManTrackerOptions.getInstance() == null, "Isolated trackers loaded the global options");
+                DevCheck.require(contextA.getEventCircuitBreaker() != contextB.getEventCircuitBreaker() && contextA.getEventCircuitBreaker() != TrackerContext.getDefault().getEventCircuitBreaker(), "Isolated contexts share circuit breakers");
+
+                trackerA.stop();
+                DevCheck.require(eventsA.accepted.get() == 2, "Server A did not get tracker A's cancel: " + eventsA);
+                DevCheck.require(eventsB.requests.get() == 1, "Stopping tracker A sent to server B: " + eventsB);
+                trackerB.stop();
+                DevCheck.require(eventsB.accepted.get() == 2, "Server B did not get tracker B's cancel: " + eventsB);
+            } finally {
+                serverA.stop();
+                serverB.stop();
+            }
+
+            // Two trackers on the default context watch options.json, the first to stop must not end it for the other
+            PaceManTrackerOptions.startWatching();
+            PaceManTrackerOptions.startWatching();
+            PaceManTrackerOptions.stopWatching();
+            TimeUnit.MILLISECONDS.sleep(200);
+            DevCheck.require(ParallelTrackersCheck.isWatching(), "Options stopped being watched while a tracker still watches them");
+            PaceManTrackerOptions.stopWatching();
+            long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (ParallelTrackersCheck.isWatching() && System.currentTimeMillis() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(20);
+            }
+            DevCheck.require(!ParallelTrackersCheck.isWatching(), "Options still watched after the last tracker stopped");
+        });
+    }
+
+    private static boolean isWatching() {
+        return Thread.getAllStackTraces().keySet().stream().anyMatch(thread -> thread.getName().equals(WATCH_THREAD) && thread.isAlive());
+    }
+}
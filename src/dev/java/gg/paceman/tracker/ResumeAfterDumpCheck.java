@@ -0,0 +1,92 @@
+package gg.paceman.tracker;
+
+import gg.paceman.tracker.dev.DevCheck;
+import gg.paceman.tracker.dev.FakePaceManServer;
+
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops the tracker after a run got onto PaceMan.gg, starts a new one on the same files and checks that the run is sent
+ * again in full: header and every event, not only the ones that came in after the restart.
+ */
+public class ResumeAfterDumpCheck {
+    private static final long SEND_TIMEOUT_MILLIS = 10_000;
+
+    public static void main(String[] args) {
+        DevCheck.run("Resume after dump", () -> {
+            FakePaceManServer server = new FakePaceManServer(0);
+            server.start();
+            // Before PaceManTracker is loaded, its endpoints are built from this
+            System.setProperty("paceman.url", server.getUrl());
+            PaceManTrackerOptions.load();
+            PaceManTrackerOptions.update(options -> options.withAccessKey("resume-check"));
+            server.validKeys.add("resume-check");
+
+            TrackerFixture fixture = new TrackerFixture(Files.createTempDirectory("paceman-resume"));
+            fixture.newWorld();
+            fixture.appendEvents(TrackerFixture.event("rsg.enter_nether", 90_000));
+
+            PaceManTracker first = new PaceManTracker(fixture.getPaths());
+            RecordingSink firstSink = new RecordingSink();
+            first.addEventSink(firstSink);
+            first.start(false);
+            String firstPayload = firstSink.await("rsg.enter_nether");
+            DevCheck.require(firstPayload.contains("gameData"), "First send has no header: " + firstPayload);
+            DevCheck.require(!firstPayload.contains("resume-check"), "Secondary sink got the access key: " + firstPayload);
+            first.stop();
+
+            fixture.appendEvents(TrackerFixture.event("rsg.enter_bastion", 120_000));
+            PaceManTracker second = new PaceManTracker(fixture.getPaths());
+            RecordingSink secondSink = new RecordingSink();
+            second.addEventSink(secondSink);
+            second.start(false);
+            String secondPayload = secondSink.await("rsg.enter_bastion");
+            second.stop();
+            server.stop();
+
+            DevCheck.require(secondPayload.contains("gameData"), "Run was not sent with its header after the restart: " + secondPayload);
+            DevCheck.require(secondPayload.contains("rsg.enter_nether"), "Events sent before the restart are missing: " + secondPayload);
+        });
+    }
+
+    private static class RecordingSink implements EventSink {
+        private final List<String> payloads = new CopyOnWriteArrayList<>();
+
+        String await(String event) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + SEND_TIMEOUT_MILLIS;
+            while (System.currentTimeMillis() < deadline) {
+                for (String payload : this.payloads) {
+                    if (payload.contains(event)) {
+                        return payload;
+                    }
+                }
+                TimeUnit.MILLISECONDS.sleep(50);
+            }
+            throw new AssertionError("No send with " + event + " in " + SEND_TIMEOUT_MILLIS + "ms, got " + this.payloads);
+        }
+
+        @Override
+        public String getName() {
+            return "recording";
+        }
+
+        @Override
+        public PaceManTracker.PaceManResponse sendEvents(String payload) {
+            this.payloads.add(payload);
+            return new PaceManTracker.PaceManResponse(PaceManTracker.PaceManResponse.Type.SUCCESS, "OK");
+        }
+
+        @Override
+        public PaceManTracker.PaceManResponse sendCancel(String payload) {
+            return new PaceManTracker.PaceManResponse(PaceManTracker.PaceManResponse.Type.SUCCESS, "OK");
+        }
+
+        @Override
+        public PaceManTracker.PaceManResponse sendStats(String payload) {
+            return new PaceManTracker.PaceManResponse(PaceManTracker.PaceManResponse.Type.SUCCESS, "OK");
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package gg.paceman.tracker;
+
+import com.google.gson.JsonObject;
+import gg.paceman.tracker.dev.DevCheck;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+
+/**
+ * Records runs into a {@link RunHistory}, then damages its files the ways a crash or a user can and checks that a new
+ * history on the same folder recovers the right run count and split percentiles: a partial index record, an index
+ * missing the last run, a runs.jsonl record cut short, and missing index or event types files.
+ */
+public class RunHistoryRecoveryCheck {
+    private static final int INDEX_RECORD_BYTES = 24;
+    private static final long WRITE_TIMEOUT_MILLIS = 5_000;
+
+    public static void main(String[] args) {
+        DevCheck.run("Run history recovery", () -> {
+            Path folder = Files.createTempDirectory("paceman-history");
+            Path runs = folder.resolve("runs.jsonl");
+            Path types = folder.resolve("event-types.txt");
+            Path index = folder.resolve("splits.idx");
+
+            // Nether at 100s to 500s, started a second apart, bastion only in the first two
+            RunHistory history = new RunHistory(folder);
+            for (int i = 1; i <= 5; i++) {
+                history.startRun(RunHistoryRecoveryCheck.header(i), false);
+                if (i <= 2) {
+                    history.addEvents(Collections.singletonList(TrackerFixture.event("rsg.enter_bastion", i * 150_000)), i * 1000L);
+                }
+                history.addEvents(Collections.singletonList(TrackerFixture.event("rsg.enter_nether", i * 100_000)), i * 1000L);
+            }
+            history.startRun(RunHistoryRecoveryCheck.header(6), false);
+            history.stop(WRITE_TIMEOUT_MILLIS);
+            RunHistoryRecoveryCheck.requireHistory(folder, 5, "after recording");
+            long indexSize = Files.size(index);
+            DevCheck.require(indexSize == 7 * INDEX_RECORD_BYTES, "Index has " + indexSize + " bytes for 7 events");
+
+            RunHistory loaded = new RunHistory(folder);
+            DevCheck.require(loaded.getSplitPercentile("rsg.enter_nether", 0, 0).getAsLong() == 100_000, "0th percentile is not the fastest");
+            DevCheck.require(loaded.getSplitPercentile("rsg.enter_nether", 20, 0).getAsLong() == 100_000, "20th percentile of 5 is not the fastest");
+            DevCheck.require(loaded.getSplitPercentile("rsg.enter_nether", 21, 0).getAsLong() == 200_000, "21st percentile of 5 is not the second");
+            DevCheck.require(loaded.getSplitPercentile("rsg.enter_nether", 100, 0).getAsLong() == 500_000, "100th percentile is not the slowest");
+            DevCheck.require(loaded.getSplitPercentile("rsg.enter_nether", 50, 3000).getAsLong() == 400_000, "Median since the third run is not 400s");
+            DevCheck.require(loaded.getSplitCount("rsg.enter_bastion", 0) == 2, "Not 2 bastion enters");
+            DevCheck.require(!loaded.getSplitPercentile("rsg.enter_end", 50, 0).isPresent(), "Percentile of an event no run has");
+
+            // A crash part way through writing the last index record
+            RunHistoryRecoveryCheck.truncate(index, indexSize - 10);
+            RunHistoryRecoveryCheck.requireHistory(folder, 5, "after cutting the index mid record");
+            DevCheck.require(Files.size(index) == indexSize, "Index was not rebuilt in full, " + Files.size(index) + " bytes");
+
+            // A crash part way through writing the last run, whose index records were already written
+            RunHistoryRecoveryCheck.truncate(runs, Files.size(runs) - 20);
+            RunHistoryRecoveryCheck.requireHistory(folder, 4, "after cutting the last run short");
+            // Loading again must not rebuild the index again
+            FileTime stamp = FileTime.fromMillis(1_000_000);
+            Files.setLastModifiedTime(index, stamp);
+            RunHistoryRecoveryCheck.requireHistory(folder, 4, "loaded again after cutting the last run short");
+            DevCheck.require(Files.getLastModifiedTime(index).equals(stamp), "Index was rebuilt on every load");
+
+            // The next run is appended on its own line after the cut record and gets the next run number
+            RunHistory appending = new RunHistory(folder);
+            appending.startRun(RunHistoryRecoveryCheck.header(7), false);
+            appending.addEvents(Collections.singletonList(TrackerFixture.event("rsg.enter_nether", 600_000)), 7000);
+            appending.startRun(RunHistoryRecoveryCheck.header(8), false);
+            appending.stop(WRITE_TIMEOUT_MILLIS);
+            RunHistory afterAppend = new RunHistory(folder);
+            DevCheck.require(afterAppend.getRunCount() == 5, "Not 5 runs after appending past the cut record: " + afterAppend.getRunCount());
+            DevCheck.require(afterAppend.getSplitPercentile("rsg.enter_nether", 100, 0).getAsLong() == 600_000, "Appended run is missing from the index");
+            String lastLine = Files.readAllLines(runs, StandardCharsets.UTF_8).stream().reduce((a, b) -> b).orElse("");
+            DevCheck.require(lastLine.contains("\"run\":4"), "Appended run is not run 4: " + lastLine);
+
+            // Missing index, then missing event types as well
+            Files.delete(index);
+            RunHistoryRecoveryCheck.requireNether(folder, 5, 300_000, "without an index");
+            Files.delete(index);
+            Files.delete(types);
+            RunHistoryRecoveryCheck.requireNether(folder, 5, 300_000, "without an index or event types");
+            // Event types gone but the index still there, so its type ids point at nothing
+            Files.delete(types);
+            RunHistoryRecoveryCheck.requireNether(folder, 5, 300_000, "without event types");
+        });
+    }
+
+    private static JsonObject header(int world) {
+        JsonObject header = new JsonObject();
+        header.addProperty("world_path", "/saves/Random Speedrun #" + world);
+        header.addProperty("version", "1.16.1");
+        header.addProperty("category", "ANY");
+        return header;
+    }
+
+    /**
+     * Requires the run count, and the median nether of runs 1 to 4 (or 1 to 5) that every step keeps.
+     */
+    private static void requireHistory(Path folder, int runs, String when) throws IOException {
+        RunHistoryRecoveryCheck.requireNether(folder, runs, runs == 5 ? 300_000 : 200_000, when);
+    }
+
+    private static void requireNether(Path folder, int runs, long median, String when) throws IOException {
+        RunHistory history = new RunHistory(folder);
+        DevCheck.require(history.getRunCount() == runs, "Expected " + runs + " runs " + when + ", got " + history.getRunCount());
+        long actual = history.getSplitPercentile("rsg.enter_nether", 50, 0).orElse(-1);
+        DevCheck.require(actual == median, "Expected a median nether of " + median + " " + when + ", got " + actual);
+        DevCheck.require(history.getSplitCount("rsg.enter_bastion", 0) == 2, "Bastion enters lost " + when);
+    }
+
+    private static void truncate(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+}
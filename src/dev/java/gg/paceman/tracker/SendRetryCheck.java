@@ -0,0 +1,84 @@
+package gg.paceman.tracker;
+
+import gg.paceman.tracker.dev.DevCheck;
+import gg.paceman.tracker.dev.FakePaceManServer;
+
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives single ticks while the {@link FakePaceManServer} is down for a send, and checks that the tick doesn't wait
+ * for the retry: the retry is made by a later tick at least 5 seconds on, carries the events that came in meanwhile, and
+ * an end event that came in while it was due still ends the run once the retry got through.
+ */
+public class SendRetryCheck {
+    private static final long TICK_LIMIT_MILLIS = 2_000;
+    private static final long MIN_RETRY_DELAY_MILLIS = 5_000;
+    private static final long RETRY_TIMEOUT_MILLIS = 35_000;
+
+    public static void main(String[] args) {
+        DevCheck.run("Send retry", () -> {
+            FakePaceManServer server = new FakePaceManServer(0);
+            server.start();
+            int port = Integer.parseInt(server.getUrl().substring(server.getUrl().lastIndexOf(':') + 1));
+            // Before PaceManTracker is loaded, its endpoints are built from this
+            System.setProperty("paceman.url", server.getUrl());
+            PaceManTrackerOptions.load();
+            PaceManTrackerOptions.update(options -> options.withAccessKey("retry-check"));
+            server.validKeys.add("retry-check");
+            FakePaceManServer.RouteStats stats = server.getStats().get(FakePaceManServer.EVENT_ROUTE);
+
+            TrackerFixture fixture = new TrackerFixture(Files.createTempDirectory("paceman-retry"));
+            fixture.newWorld();
+            fixture.appendEvents(TrackerFixture.event("rsg.enter_nether", 90_000));
+            PaceManTracker tracker = new PaceManTracker(fixture.getPaths());
+            for (int i = 0; i < 10 && stats.accepted.get() == 0; i++) {
+                SendRetryCheck.timedTick(tracker);
+            }
+            server.stop();
+            DevCheck.require(stats.accepted.get() == 1, "Run was not sent, " + stats.requests.get() + " requests");
+
+            // Only a send that doesn't get a response is retried, a 5xx is a denial like any other 400+ code
+            fixture.appendEvents(TrackerFixture.event("rsg.enter_bastion", 120_000));
+            fixture.touchLatestWorld();
+            SendRetryCheck.timedTick(tracker);
+            long failedAt = System.currentTimeMillis();
+
+            FakePaceManServer restarted = new FakePaceManServer(port);
+            restarted.start();
+            try {
+                restarted.validKeys.add("retry-check");
+                FakePaceManServer.RouteStats restartedStats = restarted.getStats().get(FakePaceManServer.EVENT_ROUTE);
+                fixture.appendEvents(TrackerFixture.event("rsg.credits", 150_000));
+                fixture.touchLatestWorld();
+                SendRetryCheck.timedTick(tracker);
+                DevCheck.require(restartedStats.requests.get() == 0, "End event was sent before the retry was due");
+
+                while (restartedStats.requests.get() == 0 && System.currentTimeMillis() - failedAt < RETRY_TIMEOUT_MILLIS) {
+                    SendRetryCheck.timedTick(tracker);
+                    TimeUnit.MILLISECONDS.sleep(100);
+                }
+                long retriedAfter = System.currentTimeMillis() - failedAt;
+                DevCheck.require(restartedStats.accepted.get() == 1, "Retry did not get through in " + retriedAfter + "ms, " + restartedStats.requests.get() + " requests");
+                DevCheck.require(retriedAfter >= MIN_RETRY_DELAY_MILLIS - 200, "Retried after only " + retriedAfter + "ms");
+
+                // Ended by the end event the retry carried, so nothing more is sent for this run
+                fixture.appendEvents(TrackerFixture.event("rsg.enter_end", 180_000));
+                fixture.touchLatestWorld();
+                for (int i = 0; i < 3; i++) {
+                    SendRetryCheck.timedTick(tracker);
+                }
+                DevCheck.require(restartedStats.requests.get() == 1, "Run kept sending after its end event, " + restartedStats.requests.get() + " requests");
+            } finally {
+                restarted.stop();
+            }
+        });
+    }
+
+    private static void timedTick(PaceManTracker tracker) {
+        long start = System.currentTimeMillis();
+        tracker.tick();
+        long took = System.currentTimeMillis() - start;
+        DevCheck.require(took < TICK_LIMIT_MILLIS, "Tick took " + took + "ms, it waited for a retry");
+    }
+}
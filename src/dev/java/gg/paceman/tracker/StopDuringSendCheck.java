@@ -0,0 +1,66 @@
+package gg.paceman.tracker;
+
+import gg.paceman.tracker.dev.DevCheck;
+import gg.paceman.tracker.dev.FakePaceManServer;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops a tracker while its tick thread is stuck in a slow send to a {@link FakePaceManServer}, and checks that the
+ * shutdown doesn't wait for it, leaves the run out of the checkpoint (the tick thread could still be changing it), and
+ * that the tick thread neither sends nor checkpoints anything once the slow send returns.
+ */
+public class StopDuringSendCheck {
+    private static final long SEND_LATENCY_MILLIS = 4_000;
+    private static final long STOP_LIMIT_MILLIS = 6_000;
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    public static void main(String[] args) {
+        DevCheck.run("Stop during send", () -> {
+            FakePaceManServer server = new FakePaceManServer(0);
+            server.latencyMillis = SEND_LATENCY_MILLIS;
+            server.start();
+            // Before PaceManTracker is loaded, its endpoints are built from this
+            System.setProperty("paceman.url", server.getUrl());
+            PaceManTrackerOptions.load();
+            PaceManTrackerOptions.update(options -> options.withAccessKey("stop-check"));
+            server.validKeys.add("stop-check");
+            FakePaceManServer.RouteStats stats = server.getStats().get(FakePaceManServer.EVENT_ROUTE);
+
+            try {
+                TrackerFixture fixture = new TrackerFixture(Files.createTempDirectory("paceman-stop"));
+                fixture.newWorld();
+                fixture.appendEvents(TrackerFixture.event("rsg.enter_nether", 90_000));
+                PaceManTracker tracker = new PaceManTracker(fixture.getPaths());
+                tracker.start(false);
+                long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+                while (stats.requests.get() == 0 && System.currentTimeMillis() < deadline) {
+                    TimeUnit.MILLISECONDS.sleep(20);
+                }
+                DevCheck.require(stats.requests.get() == 1, "Run was not sent");
+
+                long start = System.currentTimeMillis();
+                tracker.stop();
+                long took = System.currentTimeMillis() - start;
+                DevCheck.require(took < STOP_LIMIT_MILLIS, "Stopping took " + took + "ms");
+                Path checkpointFile = fixture.getPaths().getCheckpointFile();
+                TrackerCheckpoint checkpoint = TrackerCheckpoint.load(checkpointFile);
+                DevCheck.require(checkpoint != null, "No checkpoint written to " + checkpointFile);
+                DevCheck.require(checkpoint.eventLog == null && checkpoint.run == null, "Run was checkpointed while the tick thread was still running");
+
+                // Past the slow send, which the tick thread is done with by then
+                byte[] written = Files.readAllBytes(checkpointFile);
+                fixture.appendEvents(TrackerFixture.event("rsg.enter_bastion", 120_000));
+                fixture.touchLatestWorld();
+                TimeUnit.MILLISECONDS.sleep(SEND_LATENCY_MILLIS + 1_000);
+                DevCheck.require(stats.requests.get() == 1, "Tick thread sent " + (stats.requests.get() - 1) + " more times after stopping");
+                DevCheck.require(Arrays.equals(written, Files.readAllBytes(checkpointFile)), "Tick thread wrote a checkpoint after stopping");
+            } finally {
+                server.stop();
+            }
+        });
+    }
+}
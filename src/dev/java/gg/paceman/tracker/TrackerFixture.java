@@ -0,0 +1,113 @@
+package gg.paceman.tracker;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * A fake SpeedRunIGT folder, Minecraft instance and PaceMan dir under one root folder, on any file system, for driving
+ * trackers in the dev checks and benchmarks. Every write gets a newer modification time than the last, so the
+ * trackers notice it even when the file system's timestamps are coarse.
+ */
+final class TrackerFixture {
+    private final Path root;
+    private final Path instance;
+    private final TrackerPaths paths;
+    private final long timeStepMillis;
+    private long lastStamp = 0;
+    private Path world = null;
+    private int worldNumber = 0;
+
+    /**
+     * @param timeStepMillis the least time between two modification times, at least the file system's granularity
+     */
+    TrackerFixture(Path root, long timeStepMillis) throws IOException {
+        this.root = root;
+        this.instance = root.resolve("instance").resolve(".minecraft");
+        this.paths = new TrackerPaths(root.resolve("speedrunigt"), root.resolve("PaceMan"));
+        this.timeStepMillis = timeStepMillis;
+        Files.createDirectories(this.paths.getLatestWorldFile().getParent());
+        Files.createDirectories(this.instance.resolve("saves"));
+        this.write(this.instance.resolve("config").resolve("mcsr").resolve("atum.json"), "{\"hasLegalSettings\":true,\"seed\":\"\",\"difficulty\":\"normal\"}");
+    }
+
+    TrackerFixture(Path root) throws IOException {
+        this(root, 1);
+    }
+
+    TrackerPaths getPaths() {
+        return this.paths;
+    }
+
+    Path getRoot() {
+        return this.root;
+    }
+
+    Path getInstance() {
+        return this.instance;
+    }
+
+    Path getWorld() {
+        return this.world;
+    }
+
+    /**
+     * Creates the next Random Speedrun world with an empty events.log and points latest_world.json at it.
+     */
+    Path newWorld() throws IOException {
+        this.world = this.instance.resolve("saves").resolve("Random Speedrun #" + ++this.worldNumber);
+        this.write(this.world.resolve("speedrunigt").resolve("events.log"), "");
+        this.write(this.paths.getLatestWorldFile(), "{\"world_path\":\"" + this.world.toString().replace("\\", "\\\\")
+                + "\",\"version\":\"1.16.1\",\"mod_version\":\"14.2+1.16.1\",\"category\":\"ANY\",\"run_type\":\"random_seed\","
+                + "\"mods\":[\"speedrunigt\",\"seedqueue\",\"state-output\",\"atum\"]}\n");
+        return this.world;
+    }
+
+    /**
+     * Appends lines to the current world's events.log, see {@link #event(String, long)}.
+     */
+    void appendEvents(String... lines) throws IOException {
+        StringBuilder contents = new StringBuilder();
+        for (String line : lines) {
+            contents.append(line).append('\n');
+        }
+        this.write(this.world.resolve("speedrunigt").resolve("events.log"), contents.toString(), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Gives latest_world.json a newer modification time, the tracker only reads events.log again once that changes.
+     */
+    void touchLatestWorld() throws IOException {
+        this.lastStamp = Math.max(System.currentTimeMillis(), this.lastStamp + this.timeStepMillis);
+        Files.setLastModifiedTime(this.paths.getLatestWorldFile(), FileTime.fromMillis(this.lastStamp));
+    }
+
+    /**
+     * @return an events.log line with the IGT a bit behind the RTA
+     */
+    static String event(String name, long rta) {
+        return name + " " + rta + " " + Math.max(0, rta - 2000);
+    }
+
+    /**
+     * Writes the State Output mod's file, e.g. "wall" or "inworld,unpaused".
+     */
+    void writeState(String state) throws IOException {
+        this.write(this.paths.getStateFile(this.instance), state);
+    }
+
+    void writeResets(int resets) throws IOException {
+        this.write(this.paths.getResetsFile(this.instance), String.valueOf(resets));
+    }
+
+    private void write(Path file, String contents, OpenOption... options) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, contents.getBytes(StandardCharsets.UTF_8), options);
+        this.lastStamp = Math.max(System.currentTimeMillis(), this.lastStamp + this.timeStepMillis);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(this.lastStamp));
+    }
+}
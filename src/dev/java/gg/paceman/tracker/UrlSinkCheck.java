@@ -0,0 +1,59 @@
+package gg.paceman.tracker;
+
+import gg.paceman.tracker.dev.DevCheck;
+import gg.paceman.tracker.dev.FakePaceManServer;
+
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a tracker with {@code -Dpaceman.sink.url} and {@code -Dpaceman.sink.key} pointed at a second
+ * {@link FakePaceManServer}, which like PaceMan.gg denies anything without a key it knows, and checks that the run and
+ * its reset stats are accepted there with the sink's own key, never the PaceMan.gg one.
+ */
+public class UrlSinkCheck {
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    public static void main(String[] args) {
+        DevCheck.run("URL sink", () -> {
+            FakePaceManServer server = new FakePaceManServer(0);
+            server.start();
+            FakePaceManServer sinkServer = new FakePaceManServer(0);
+            sinkServer.start();
+            // Before PaceManTracker is loaded and started, its endpoints and sinks are built from these
+            System.setProperty("paceman.url", server.getUrl());
+            System.setProperty("paceman.sink.url", sinkServer.getUrl());
+            System.setProperty("paceman.sink.key", "sink-check-sink");
+            PaceManTrackerOptions.load();
+            PaceManTrackerOptions.update(options -> options.withAccessKey("sink-check"));
+            server.validKeys.add("sink-check");
+            sinkServer.validKeys.add("sink-check-sink");
+            FakePaceManServer.RouteStats events = sinkServer.getStats().get(FakePaceManServer.EVENT_ROUTE);
+            FakePaceManServer.RouteStats stats = sinkServer.getStats().get(FakePaceManServer.STATS_ROUTE);
+
+            try {
+                TrackerFixture fixture = new TrackerFixture(Files.createTempDirectory("paceman-url-sink"));
+                fixture.newWorld();
+                fixture.writeState("wall");
+                fixture.writeResets(10);
+                fixture.appendEvents(TrackerFixture.event("rsg.enter_nether", 90_000));
+                PaceManTracker tracker = new PaceManTracker(fixture.getPaths());
+                tracker.start(false);
+                long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+                while ((events.accepted.get() == 0 || stats.accepted.get() == 0) && System.currentTimeMillis() < deadline) {
+                    TimeUnit.MILLISECONDS.sleep(50);
+                }
+                DevCheck.require(server.getStats().get(FakePaceManServer.EVENT_ROUTE).accepted.get() == 1, "PaceMan.gg stand-in did not get the run");
+                DevCheck.require(events.requests.get() == 1 && events.accepted.get() == 1, "Sink server did not accept the run: " + events);
+                DevCheck.require(stats.requests.get() == 1 && stats.accepted.get() == 1, "Sink server did not accept the reset stats: " + stats);
+
+                // The run is still on PaceMan.gg, so stopping cancels it on both
+                tracker.stop();
+                DevCheck.require(events.requests.get() == 2 && events.accepted.get() == 2, "Sink server did not accept the cancel: " + events);
+            } finally {
+                server.stop();
+                sinkServer.stop();
+            }
+        });
+    }
+}
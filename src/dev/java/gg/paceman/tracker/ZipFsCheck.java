@@ -0,0 +1,113 @@
+package gg.paceman.tracker;
+
+import gg.paceman.tracker.dev.DevCheck;
+import gg.paceman.tracker.dev.FakePaceManServer;
+
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs trackers entirely on a zip file system: reading events.log and the state files, writing and resuming from a
+ * checkpoint. Catches code that reaches for the default file system (Path.toFile, Paths.get) instead of going through
+ * {@link TrackerPaths}. A zip file system has no watch service, creation times or file keys, and only stores
+ * modification times to 2 seconds, so this also covers running without those.
+ */
+public class ZipFsCheck {
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    public static void main(String[] args) {
+        DevCheck.run("Zip file system", () -> {
+            FakePaceManServer server = new FakePaceManServer(0);
+            server.start();
+            // Before PaceManTracker is loaded, its endpoints are built from this
+            System.setProperty("paceman.url", server.getUrl());
+            PaceManTrackerOptions.load();
+            PaceManTrackerOptions.update(options -> options.withAccessKey("zip-fs-check"));
+            server.validKeys.add("zip-fs-check");
+
+            Path zip = Files.createTempDirectory("paceman-zip-fs").resolve("tracker.zip");
+            try (FileSystem fileSystem = FileSystems.newFileSystem(URI.create("jar:" + zip.toUri()), Collections.singletonMap("create", "true"))) {
+                TrackerFixture fixture = new TrackerFixture(fileSystem.getPath("/"), 2000);
+                fixture.newWorld();
+                fixture.writeState("wall");
+                fixture.appendEvents(TrackerFixture.event("rsg.enter_nether", 90_000));
+
+                PaceManTracker first = new PaceManTracker(fixture.getPaths());
+                Recorder firstRecorder = new Recorder();
+                first.addEventSink(firstRecorder);
+                first.addListener(firstRecorder);
+                first.start(false);
+                String firstPayload = firstRecorder.await(firstRecorder.payloads, "rsg.enter_nether");
+                DevCheck.require(firstPayload.contains("gameData"), "First send has no header: " + firstPayload);
+
+                fixture.writeState("inworld,unpaused");
+                firstRecorder.await(firstRecorder.states, StateTracker.State.PLAYING.name());
+                first.stop();
+                DevCheck.require(Files.exists(fixture.getPaths().getCheckpointFile()), "No checkpoint written to " + fixture.getPaths().getCheckpointFile());
+
+                fixture.appendEvents(TrackerFixture.event("rsg.enter_bastion", 120_000));
+                PaceManTracker second = new PaceManTracker(fixture.getPaths());
+                Recorder secondRecorder = new Recorder();
+                second.addEventSink(secondRecorder);
+                second.start(false);
+                String secondPayload = secondRecorder.await(secondRecorder.payloads, "rsg.enter_bastion");
+                second.stop();
+                server.stop();
+
+                DevCheck.require(secondPayload.contains("gameData"), "Run was not resumed with its header: " + secondPayload);
+                DevCheck.require(secondPayload.contains("rsg.enter_nether"), "Events from before the restart are missing: " + secondPayload);
+            }
+        });
+    }
+
+    private static class Recorder implements EventSink, PaceManTrackerListener {
+        private final List<String> payloads = new CopyOnWriteArrayList<>();
+        private final List<String> states = new CopyOnWriteArrayList<>();
+
+        String await(List<String> received, String expected) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (System.currentTimeMillis() < deadline) {
+                for (String value : received) {
+                    if (value.contains(expected)) {
+                        return value;
+                    }
+                }
+                TimeUnit.MILLISECONDS.sleep(50);
+            }
+            throw new AssertionError("Nothing with " + expected + " in " + TIMEOUT_MILLIS + "ms, got " + received);
+        }
+
+        @Override
+        public void onStateChange(Path instancePath, StateTracker.State from, StateTracker.State to) {
+            this.states.add(to.name());
+        }
+
+        @Override
+        public String getName() {
+            return "recording";
+        }
+
+        @Override
+        public PaceManTracker.PaceManResponse sendEvents(String payload) {
+            this.payloads.add(payload);
+            return new PaceManTracker.PaceManResponse(PaceManTracker.PaceManResponse.Type.SUCCESS, "OK");
+        }
+
+        @Override
+        public PaceManTracker.PaceManResponse sendCancel(String payload) {
+            return new PaceManTracker.PaceManResponse(PaceManTracker.PaceManResponse.Type.SUCCESS, "OK");
+        }
+
+        @Override
+        public PaceManTracker.PaceManResponse sendStats(String payload) {
+            return new PaceManTracker.PaceManResponse(PaceManTracker.PaceManResponse.Type.SUCCESS, "OK");
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package gg.paceman.tracker.dev;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Per thread allocation counters for the allocation checks, from the HotSpot extension of ThreadMXBean.
+ */
+public final class Allocations {
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private Allocations() {
+    }
+
+    /**
+     * @return the bytes allocated by the current thread so far
+     */
+    public static long current() {
+        return THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * @return the average bytes allocated by one run of the task on the current thread, after warming it up
+     */
+    public static long perRun(Runnable task, int warmupRuns, int measuredRuns) {
+        for (int i = 0; i < warmupRuns; i++) {
+            task.run();
+        }
+        long before = Allocations.current();
+        for (int i = 0; i < measuredRuns; i++) {
+            task.run();
+        }
+        return (Allocations.current() - before) / measuredRuns;
+    }
+}
@@ -0,0 +1,32 @@
+package gg.paceman.tracker.dev;
+
+/**
+ * Runs a check from the dev source set as a main method: prints the outcome and exits with status 1 on failure, so
+ * the check fails the Gradle build. Exits explicitly since the trackers leave non-daemon threads behind.
+ */
+public final class DevCheck {
+    private DevCheck() {
+    }
+
+    public static void run(String name, Check check) {
+        try {
+            check.run();
+        } catch (Throwable t) {
+            System.out.println("FAILED: " + name);
+            t.printStackTrace(System.out);
+            System.exit(1);
+        }
+        System.out.println("PASSED: " + name);
+        System.exit(0);
+    }
+
+    public static void require(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    public interface Check {
+        void run() throws Exception;
+    }
+}
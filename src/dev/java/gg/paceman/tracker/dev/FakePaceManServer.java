@@ -0,0 +1,253 @@
+package gg.paceman.tracker.dev;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A stand-in for paceman.gg on localhost, for trying the tracker without touching the real service. Implements the
+ * sendevent, test and submitStats routes with configurable latency, failures, rate limiting and denials.
+ * <p>
+ * Run standalone with {@code ./gradlew runFakePaceMan} and start the tracker with
+ * {@code -Dpaceman.url=http://127.0.0.1:<port>}, or embed it like {@link LoadTest} does.
+ */
+public class FakePaceManServer {
+    public static final String EVENT_ROUTE = "/api/sendevent";
+    public static final String TEST_ROUTE = "/api/test";
+    public static final String STATS_ROUTE = "/stats/api/submitStats/";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, RouteStats> stats = new LinkedHashMap<>();
+
+    // Settings can be changed while running
+    public volatile long latencyMillis = 0;
+    public volatile long latencyJitterMillis = 0;
+    // Chance of a 503
+    public volatile double errorRate = 0;
+    // Chance of a 429 with a Retry-After header
+    public volatile double rateLimitRate = 0;
+    public volatile int retryAfterSeconds = 5;
+    // Chance of a 400 deny, like paceman.gg gives for a bad run
+    public volatile double denyRate = 0;
+    // Keys that are accepted, empty to accept any non-empty key
+    public final Set<String> validKeys = ConcurrentHashMap.newKeySet();
+
+    public FakePaceManServer(int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "fake-paceman");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server.setExecutor(this.executor);
+        for (String route : new String[]{EVENT_ROUTE, TEST_ROUTE, STATS_ROUTE}) {
+            this.stats.put(route, new RouteStats());
+            this.server.createContext(route, exchange -> this.handle(route, exchange));
+        }
+    }
+
+    public void start() {
+        this.server.start();
+    }
+
+    public void stop() {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * @return the base URL to pass to the tracker as -Dpaceman.url
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + this.server.getAddress().getPort();
+    }
+
+    public Map<String, RouteStats> getStats() {
+        return Collections.unmodifiableMap(this.stats);
+    }
+
+    private void handle(String route, HttpExchange exchange) throws IOException {
+        RouteStats routeStats = this.stats.get(route);
+        try {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                FakePaceManServer.respond(exchange, 405, "Method Not Allowed");
+                return;
+            }
+            String body = FakePaceManServer.readBody(exchange.getRequestBody());
+            routeStats.requests.incrementAndGet();
+            routeStats.bytes.addAndGet(body.length());
+
+            long latency = this.latencyMillis + (this.latencyJitterMillis > 0 ? ThreadLocalRandom.current().nextLong(this.latencyJitterMillis + 1) : 0);
+            if (latency > 0) {
+                Thread.sleep(latency);
+            }
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (random.nextDouble() < this.errorRate) {
+                routeStats.errors.incrementAndGet();
+                FakePaceManServer.respond(exchange, 503, "Service Unavailable");
+                return;
+            }
+            if (random.nextDouble() < this.rateLimitRate) {
+                routeStats.rateLimited.incrementAndGet();
+                exchange.getResponseHeaders().add("Retry-After", String.valueOf(this.retryAfterSeconds));
+                FakePaceManServer.respond(exchange, 429, "Too Many Requests");
+                return;
+            }
+
+            JsonObject json;
+            try {
+                json = JsonParser.parseString(body).getAsJsonObject();
+            } catch (RuntimeException e) {
+                routeStats.denied.incrementAndGet();
+                FakePaceManServer.respond(exchange, 400, "Invalid JSON");
+                return;
+            }
+            String accessKey = json.has("accessKey") ? json.get("accessKey").getAsString() : "";
+            if (accessKey.isEmpty() || !(this.validKeys.isEmpty() || this.validKeys.contains(accessKey))) {
+                routeStats.denied.incrementAndGet();
+                FakePaceManServer.respond(exchange, 401, "Invalid access key");
+                return;
+            }
+            if (route.equals(EVENT_ROUTE) && random.nextDouble() < this.denyRate) {
+                routeStats.denied.incrementAndGet();
+                FakePaceManServer.respond(exchange, 400, "Run denied by fake server");
+                return;
+            }
+            routeStats.accepted.incrementAndGet();
+            FakePaceManServer.respond(exchange, 200, "OK");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void respond(HttpExchange exchange, int code, String message) throws IOException {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Parses the shared --port/--latency/--jitter/--error-rate/--rate-limit-rate/--retry-after/--deny-rate/--key options.
+     *
+     * @return the arguments that weren't server options
+     */
+    static Map<String, String> configure(FakePaceManServer server, Map<String, String> options) {
+        Map<String, String> rest = new LinkedHashMap<>();
+        options.forEach((name, value) -> {
+            switch (name) {
+                case "latency":
+                    server.latencyMillis = Long.parseLong(value);
+                    break;
+                case "jitter":
+                    server.latencyJitterMillis = Long.parseLong(value);
+                    break;
+                case "error-rate":
+                    server.errorRate = Double.parseDouble(value);
+                    break;
+                case "rate-limit-rate":
+                    server.rateLimitRate = Double.parseDouble(value);
+                    break;
+                case "retry-after":
+                    server.retryAfterSeconds = Integer.parseInt(value);
+                    break;
+                case "deny-rate":
+                    server.denyRate = Double.parseDouble(value);
+                    break;
+                case "key":
+                    server.validKeys.add(value);
+                    break;
+                default:
+                    rest.put(name, value);
+            }
+        });
+        return rest;
+    }
+
+    /**
+     * @return --name value pairs
+     */
+    static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Expected --name value pairs, got " + args[i]);
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = FakePaceManServer.parseArgs(args);
+        FakePaceManServer server = new FakePaceManServer(Integer.parseInt(options.getOrDefault("port", "0")));
+        options.remove("port");
+        Map<String, String> unknown = FakePaceManServer.configure(server, options);
+        if (!unknown.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options: " + unknown.keySet());
+        }
+        server.start();
+        System.out.println("Fake PaceMan.gg running, start the tracker with -Dpaceman.url=" + server.getUrl());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.getStats().forEach((route, routeStats) -> System.out.println(route + ": " + routeStats));
+            server.stop();
+        }));
+    }
+
+    public static class RouteStats {
+        public final AtomicLong requests = new AtomicLong();
+        public final AtomicLong bytes = new AtomicLong();
+        public final AtomicLong accepted = new AtomicLong();
+        public final AtomicLong denied = new AtomicLong();
+        public final AtomicLong errors = new AtomicLong();
+        public final AtomicLong rateLimited = new AtomicLong();
+
+        public void reset() {
+            this.requests.set(0);
+            this.bytes.set(0);
+            this.accepted.set(0);
+            this.denied.set(0);
+            this.errors.set(0);
+            this.rateLimited.set(0);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d requests (%d bytes), %d accepted, %d denied, %d errors, %d rate limited", this.requests.get(), this.bytes.get(), this.accepted.get(), this.denied.get(), this.errors.get(), this.rateLimited.get());
+        }
+    }
+}
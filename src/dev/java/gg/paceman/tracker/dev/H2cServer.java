@@ -0,0 +1,278 @@
+package gg.paceman.tracker.dev;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * A bare HTTP server on localhost that speaks both HTTP/1.1 and HTTP/2 over cleartext (h2c, reached by the upgrade
+ * java.net.http asks for on http:// URLs), for checking that both of PostUtil's HTTP clients read the same responses.
+ * The JDK's own HttpServer only speaks HTTP/1.1, so it can't stand in for paceman.gg's HTTP/2.
+ * <p>
+ * Every request, whatever its method and path, is answered with what the handler returns for its body. Only what
+ * java.net.http and HttpURLConnection send is handled: request headers aren't decoded past the HTTP/1.1 ones, and
+ * responses are small enough for the default flow control windows and frame size.
+ */
+public class H2cServer {
+    private static final byte[] CLIENT_PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final int FRAME_DATA = 0x0;
+    private static final int FRAME_HEADERS = 0x1;
+    private static final int FRAME_SETTINGS = 0x4;
+    private static final int FRAME_PING = 0x6;
+    private static final int FRAME_GOAWAY = 0x7;
+    private static final int FRAME_WINDOW_UPDATE = 0x8;
+    private static final int FLAG_END_STREAM = 0x1;
+    private static final int FLAG_ACK = 0x1;
+    private static final int FLAG_END_HEADERS = 0x4;
+    private static final int FLAG_PADDED = 0x8;
+
+    private final ServerSocket serverSocket;
+    private final Function<String, Reply> handler;
+    private final Thread acceptThread;
+    public final AtomicLong http1Requests = new AtomicLong();
+    public final AtomicLong http2Requests = new AtomicLong();
+
+    public H2cServer(Function<String, Reply> handler) throws IOException {
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        this.handler = handler;
+        this.acceptThread = new Thread(this::acceptLoop, "h2c-accept");
+        this.acceptThread.setDaemon(true);
+    }
+
+    public void start() {
+        this.acceptThread.start();
+    }
+
+    public void stop() throws IOException {
+        this.serverSocket.close();
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + this.serverSocket.getLocalPort();
+    }
+
+    private void acceptLoop() {
+        while (!this.serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = this.serverSocket.accept();
+            } catch (IOException e) {
+                return;
+            }
+            Thread thread = new Thread(() -> this.serve(socket), "h2c-connection");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket) {
+            DataInputStream in = new DataInputStream(s.getInputStream());
+            OutputStream out = s.getOutputStream();
+            while (true) {
+                Map<String, String> headers = new HashMap<>();
+                if (!H2cServer.readHttp1Headers(in, headers)) {
+                    return;
+                }
+                byte[] body = new byte[Integer.parseInt(headers.getOrDefault("content-length", "0"))];
+                in.readFully(body);
+                Reply reply = this.handler.apply(new String(body, StandardCharsets.UTF_8));
+                if ("h2c".equalsIgnoreCase(headers.get("upgrade"))) {
+                    out.write("HTTP/1.1 101 Switching Protocols\r\nConnection: Upgrade\r\nUpgrade: h2c\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+                    this.serveHttp2(in, out, reply);
+                    return;
+                }
+                this.http1Requests.incrementAndGet();
+                StringBuilder response = new StringBuilder("HTTP/1.1 " + reply.code + " " + reply.reason + "\r\n");
+                for (Map.Entry<String, String> header : reply.getHeaders().entrySet()) {
+                    response.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+                }
+                out.write(response.append("\r\n").toString().getBytes(StandardCharsets.US_ASCII));
+                out.write(reply.body);
+                out.flush();
+            }
+        } catch (IOException ignored) {
+            // Client went away
+        }
+    }
+
+    /**
+     * @return false if the connection closed before another request
+     */
+    private static boolean readHttp1Headers(InputStream in, Map<String, String> headers) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        boolean requestLine = true;
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b != '\n') {
+                if (b != '\r') {
+                    line.write(b);
+                }
+                continue;
+            }
+            String text = line.toString("US-ASCII");
+            line.reset();
+            if (text.isEmpty()) {
+                return !requestLine;
+            }
+            if (!requestLine) {
+                int colon = text.indexOf(':');
+                headers.put(text.substring(0, colon).trim().toLowerCase(Locale.ROOT), text.substring(colon + 1).trim());
+            }
+            requestLine = false;
+        }
+        return false;
+    }
+
+    /**
+     * Answers the upgraded request as stream 1, then every further stream the client opens on the connection.
+     */
+    private void serveHttp2(DataInputStream in, OutputStream out, Reply upgradeReply) throws IOException {
+        H2cServer.writeFrame(out, FRAME_SETTINGS, 0, 0, new byte[0]);
+        byte[] preface = new byte[CLIENT_PREFACE.length];
+        in.readFully(preface);
+        this.http2Requests.incrementAndGet();
+        H2cServer.writeReply(out, 1, upgradeReply);
+
+        Map<Integer, ByteArrayOutputStream> bodies = new HashMap<>();
+        while (true) {
+            int length;
+            try {
+                length = (in.readUnsignedShort() << 8) | in.readUnsignedByte();
+            } catch (EOFException e) {
+                return;
+            }
+            int type = in.readUnsignedByte();
+            int flags = in.readUnsignedByte();
+            int stream = in.readInt() & 0x7fffffff;
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            switch (type) {
+                case FRAME_HEADERS:
+                    // The request headers are HPACK encoded, only whether a body follows matters here
+                    bodies.put(stream, new ByteArrayOutputStream());
+                    break;
+                case FRAME_DATA:
+                    int padding = (flags & FLAG_PADDED) != 0 ? (payload[0] & 0xff) + 1 : 0;
+                    bodies.computeIfAbsent(stream, k -> new ByteArrayOutputStream()).write(payload, padding == 0 ? 0 : 1, length - padding);
+                    if (length > 0) {
+                        // Give the client its connection window back, stream windows end with the stream
+                        H2cServer.writeFrame(out, FRAME_WINDOW_UPDATE, 0, 0, H2cServer.int32(length));
+                    }
+                    break;
+                case FRAME_SETTINGS:
+                    if ((flags & FLAG_ACK) == 0) {
+                        H2cServer.writeFrame(out, FRAME_SETTINGS, FLAG_ACK, 0, new byte[0]);
+                    }
+                    break;
+                case FRAME_PING:
+                    if ((flags & FLAG_ACK) == 0) {
+                        H2cServer.writeFrame(out, FRAME_PING, FLAG_ACK, 0, payload);
+                    }
+                    break;
+                case FRAME_GOAWAY:
+                    return;
+                default:
+                    break;
+            }
+            if ((type == FRAME_HEADERS || type == FRAME_DATA) && (flags & FLAG_END_STREAM) != 0) {
+                ByteArrayOutputStream body = bodies.remove(stream);
+                this.http2Requests.incrementAndGet();
+                H2cServer.writeReply(out, stream, this.handler.apply(body == null ? "" : body.toString("UTF-8")));
+            }
+        }
+    }
+
+    private static void writeReply(OutputStream out, int stream, Reply reply) throws IOException {
+        // Literal header fields without indexing and without Huffman coding, which any HPACK decoder reads
+        ByteArrayOutputStream block = new ByteArrayOutputStream();
+        H2cServer.writeHeader(block, ":status", String.valueOf(reply.code));
+        for (Map.Entry<String, String> header : reply.getHeaders().entrySet()) {
+            H2cServer.writeHeader(block, header.getKey().toLowerCase(Locale.ROOT), header.getValue());
+        }
+        boolean hasBody = reply.body.length > 0;
+        H2cServer.writeFrame(out, FRAME_HEADERS, FLAG_END_HEADERS | (hasBody ? 0 : FLAG_END_STREAM), stream, block.toByteArray());
+        if (hasBody) {
+            H2cServer.writeFrame(out, FRAME_DATA, FLAG_END_STREAM, stream, reply.body);
+        }
+    }
+
+    private static void writeHeader(ByteArrayOutputStream block, String name, String value) {
+        block.write(0);
+        H2cServer.writeString(block, name);
+        H2cServer.writeString(block, value);
+    }
+
+    private static void writeString(ByteArrayOutputStream block, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        // HPACK integer with a 7 bit prefix, the high bit (Huffman) left unset
+        int length = bytes.length;
+        if (length < 127) {
+            block.write(length);
+        } else {
+            block.write(127);
+            length -= 127;
+            while (length >= 128) {
+                block.write((length & 0x7f) | 0x80);
+                length >>>= 7;
+            }
+            block.write(length);
+        }
+        block.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeFrame(OutputStream out, int type, int flags, int stream, byte[] payload) throws IOException {
+        byte[] header = new byte[9];
+        header[0] = (byte) (payload.length >>> 16);
+        header[1] = (byte) (payload.length >>> 8);
+        header[2] = (byte) payload.length;
+        header[3] = (byte) type;
+        header[4] = (byte) flags;
+        System.arraycopy(H2cServer.int32(stream), 0, header, 5, 4);
+        out.write(header);
+        out.write(payload);
+        out.flush();
+    }
+
+    private static byte[] int32(int value) {
+        return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+    }
+
+    public static class Reply {
+        public final int code;
+        public final String reason;
+        public final byte[] body;
+        // Sent as is, null for none
+        public final String retryAfter;
+
+        public Reply(int code, String reason, String body, String retryAfter) {
+            this.code = code;
+            this.reason = reason;
+            this.body = body.getBytes(StandardCharsets.UTF_8);
+            this.retryAfter = retryAfter;
+        }
+
+        private Map<String, String> getHeaders() {
+            Map<String, String> headers = new LinkedHashMap<>();
+            headers.put("Content-Type", "text/plain; charset=utf-8");
+            headers.put("Content-Length", String.valueOf(this.body.length));
+            if (this.retryAfter != null) {
+                headers.put("Retry-After", this.retryAfter);
+            }
+            return headers;
+        }
+    }
+}
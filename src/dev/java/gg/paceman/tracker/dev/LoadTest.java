@@ -0,0 +1,258 @@
+package gg.paceman.tracker.dev;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import gg.paceman.tracker.util.CircuitBreaker;
+import gg.paceman.tracker.util.CircuitOpenException;
+import gg.paceman.tracker.util.PostUtil;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+
+/**
+ * Sends run payloads through {@link PostUtil} to an embedded {@link FakePaceManServer} and reports throughput, tail
+ * latency and how the responses were split. Run with {@code ./gradlew loadTest --args="--requests 2000 --latency 50"}.
+ * <p>
+ * Options: --requests, --concurrency, --route (event, cancel, test or stats), --breaker-capacity and --breaker-rate to
+ * send through a {@link CircuitBreaker}, plus every {@link FakePaceManServer} option.
+ * <p>
+ * With --executor platform or --executor virtual, every request is instead submitted at once as its own task, the way
+ * the tracker hands sends to {@code NetworkExecutor}: platform uses a cached pool like the Java 8 version and virtual
+ * uses a virtual thread per task like the Java 21 version (needs a Java 21+ runtime, see -PloadTestJava). The report
+ * then also shows the peak number of live threads during the burst.
+ */
+public class LoadTest {
+    private static final String ACCESS_KEY = "load-test-key";
+
+    public static void main(String[] args) throws Exception {
+        FakePaceManServer server = new FakePaceManServer(0);
+        Map<String, String> options = FakePaceManServer.configure(server, FakePaceManServer.parseArgs(args));
+        int requests = Integer.parseInt(options.getOrDefault("requests", "1000"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "4"));
+        String route = options.getOrDefault("route", "event");
+        String burstExecutor = options.get("executor");
+        ExecutorService burst = burstExecutor == null ? null : LoadTest.burstExecutor(burstExecutor);
+        server.validKeys.add(ACCESS_KEY);
+        server.start();
+
+        String url;
+        String payload;
+        switch (route) {
+            case "event":
+                url = server.getUrl() + FakePaceManServer.EVENT_ROUTE;
+                payload = LoadTest.eventPayload().toString();
+                break;
+            case "cancel":
+                url = server.getUrl() + FakePaceManServer.EVENT_ROUTE;
+                payload = LoadTest.cancelPayload().toString();
+                break;
+            case "test":
+                url = server.getUrl() + FakePaceManServer.TEST_ROUTE;
+                payload = LoadTest.testPayload().toString();
+                break;
+            case "stats":
+                url = server.getUrl() + FakePaceManServer.STATS_ROUTE;
+                payload = LoadTest.statsPayload().toString();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown route " + route);
+        }
+
+        if (burstExecutor == null) {
+            System.out.printf("Sending %d %s requests with %d threads using %s%n", requests, route, concurrency, PostUtil.getClientName());
+        } else {
+            System.out.printf("Sending a burst of %d %s requests on %s threads using %s%n", requests, route, burstExecutor, PostUtil.getClientName());
+        }
+        // Warm up connections and JIT so the first requests don't dominate the tail
+        for (int i = 0; i < Math.min(50, requests); i++) {
+            try {
+                PostUtil.sendData(url, payload);
+            } catch (IOException ignored) {
+            }
+        }
+        server.getStats().values().forEach(FakePaceManServer.RouteStats::reset);
+        if (options.containsKey("breaker-capacity") || options.containsKey("breaker-rate")) {
+            PostUtil.registerCircuitBreaker(url, new CircuitBreaker(route, Integer.parseInt(options.getOrDefault("breaker-capacity", "10")), Double.parseDouble(options.getOrDefault("breaker-rate", "0.5"))));
+        }
+
+        AtomicLongArray latencies = new AtomicLongArray(requests);
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger success = new AtomicInteger();
+        AtomicInteger denied = new AtomicInteger();
+        AtomicInteger rateLimited = new AtomicInteger();
+        AtomicInteger serverErrors = new AtomicInteger();
+        AtomicInteger sendErrors = new AtomicInteger();
+        AtomicInteger notAttempted = new AtomicInteger();
+
+        IntConsumer send = i -> {
+            long sendStart = System.nanoTime();
+            try {
+                int code = PostUtil.sendData(url, payload).getCode();
+                if (code == 429) {
+                    rateLimited.incrementAndGet();
+                } else if (code >= 500) {
+                    serverErrors.incrementAndGet();
+                } else if (code >= 400) {
+                    denied.incrementAndGet();
+                } else {
+                    success.incrementAndGet();
+                }
+            } catch (CircuitOpenException e) {
+                notAttempted.incrementAndGet();
+                latencies.set(i, -1);
+                return;
+            } catch (IOException e) {
+                sendErrors.incrementAndGet();
+            }
+            latencies.set(i, System.nanoTime() - sendStart);
+        };
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        ExecutorService executor;
+        CountDownLatch done;
+        long start = System.nanoTime();
+        if (burstExecutor == null) {
+            executor = Executors.newFixedThreadPool(concurrency);
+            done = new CountDownLatch(concurrency);
+            for (int t = 0; t < concurrency; t++) {
+                executor.execute(() -> {
+                    int i;
+                    while ((i = next.getAndIncrement()) < requests) {
+                        send.accept(i);
+                    }
+                    done.countDown();
+                });
+            }
+        } else {
+            executor = burst;
+            done = new CountDownLatch(requests);
+            for (int i = 0; i < requests; i++) {
+                int request = i;
+                executor.execute(() -> {
+                    send.accept(request);
+                    done.countDown();
+                });
+            }
+        }
+        done.await();
+        long elapsedNanos = System.nanoTime() - start;
+        int peakThreads = threads.getPeakThreadCount();
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+        server.stop();
+
+        long[] sorted = new long[requests];
+        int attempted = 0;
+        for (int i = 0; i < requests; i++) {
+            if (latencies.get(i) >= 0) {
+                sorted[attempted++] = latencies.get(i);
+            }
+        }
+        sorted = Arrays.copyOf(sorted, attempted);
+        Arrays.sort(sorted);
+
+        System.out.printf("%d requests in %.2fs: %.1f requests/s%n", requests, elapsedNanos / 1e9, requests / (elapsedNanos / 1e9));
+        System.out.printf("%d ok, %d denied, %d rate limited, %d server errors, %d send errors, %d not attempted (circuit breaker)%n", success.get(), denied.get(), rateLimited.get(), serverErrors.get(), sendErrors.get(), notAttempted.get());
+        if (attempted > 0) {
+            System.out.printf("Latency ms: p50 %.1f, p90 %.1f, p99 %.1f, p99.9 %.1f, max %.1f%n", LoadTest.percentile(sorted, 50), LoadTest.percentile(sorted, 90), LoadTest.percentile(sorted, 99), LoadTest.percentile(sorted, 99.9), sorted[attempted - 1] / 1e6);
+        }
+        if (burstExecutor != null) {
+            System.out.printf("Peak live threads: %d%n", peakThreads);
+        }
+        server.getStats().forEach((serverRoute, stats) -> {
+            if (stats.requests.get() > 0) {
+                System.out.println("Server " + serverRoute + ": " + stats);
+            }
+        });
+        System.exit(0);
+    }
+
+    private static ExecutorService burstExecutor(String name) throws ReflectiveOperationException {
+        switch (name) {
+            case "platform":
+                return Executors.newCachedThreadPool();
+            case "virtual":
+                // Looked up reflectively since the dev source set targets Java 8
+                try {
+                    return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                } catch (NoSuchMethodException e) {
+                    throw new IllegalStateException("Virtual threads need a Java 21+ runtime, this is " + System.getProperty("java.version"));
+                }
+            default:
+                throw new IllegalArgumentException("Unknown executor " + name);
+        }
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+
+    /**
+     * Roughly what the tracker sends on the first send of a run: game data and a handful of events.
+     */
+    private static JsonObject eventPayload() {
+        JsonObject gameData = new JsonObject();
+        gameData.addProperty("worldId", "0f1e2d3c4b5a69788796a5b4c3d2e1f00f1e2d3c4b5a69788796a5b4c3d2e1f0");
+        gameData.addProperty("gameVersion", "1.16.1");
+        gameData.addProperty("modVersion", "14.2");
+        gameData.addProperty("category", "ANY");
+        JsonArray mods = new JsonArray();
+        for (String mod : new String[]{"speedrunigt", "seedqueue", "state-output", "sodium", "lithium", "starlight", "atum"}) {
+            mods.add(mod);
+        }
+        gameData.add("modList", mods);
+        gameData.addProperty("trackerVersion", "load-test");
+
+        JsonArray events = new JsonArray();
+        String[] names = {"rsg.enter_nether", "rsg.enter_bastion", "rsg.enter_fortress", "rsg.first_portal", "rsg.enter_stronghold"};
+        for (int i = 0; i < names.length; i++) {
+            events.add(names[i] + " " + (60_000 + i * 45_000) + " " + (58_000 + i * 44_000));
+        }
+
+        JsonObject payload = new JsonObject();
+        payload.addProperty("accessKey", ACCESS_KEY);
+        payload.add("gameData", gameData);
+        payload.add("eventList", events);
+        payload.addProperty("timeSinceRunStart", 300_000);
+        return payload;
+    }
+
+    private static JsonObject cancelPayload() {
+        JsonObject payload = new JsonObject();
+        payload.addProperty("accessKey", ACCESS_KEY);
+        payload.add("eventList", new JsonArray());
+        payload.addProperty("kill", true);
+        return payload;
+    }
+
+    private static JsonObject testPayload() {
+        JsonObject payload = new JsonObject();
+        payload.addProperty("accessKey", ACCESS_KEY);
+        return payload;
+    }
+
+    private static JsonObject statsPayload() {
+        JsonObject payload = new JsonObject();
+        payload.addProperty("gameData", LoadTest.eventPayload().get("gameData").toString());
+        payload.addProperty("accessKey", ACCESS_KEY);
+        payload.addProperty("wallTime", 120_000);
+        payload.addProperty("playTime", 240_000);
+        payload.addProperty("netherTime", 60_000);
+        payload.addProperty("seedsPlayed", 12);
+        payload.addProperty("resets", 150);
+        payload.addProperty("totalResets", 30_000);
+        return payload;
+    }
+}
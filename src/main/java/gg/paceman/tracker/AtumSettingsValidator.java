@@ -0,0 +1,178 @@
+package gg.paceman.tracker;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonSyntaxException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Checks the Atum settings of an instance. Results are cached per instance config folder and reused until the path,
+ * size or modification time of one of the config files changes, so repeated resets on an instance only cost two stat
+ * calls.
+ */
+class AtumSettingsValidator {
+    private static final Gson GSON = new Gson();
+
+    private final Map<Path, Result> cache = new ConcurrentHashMap<>();
+
+    /**
+     * @param worldPath the world being played, inside the instance's saves folder
+     * @return true if the settings are allowed on PaceMan.gg, otherwise logs why they are not
+     */
+    boolean areSettingsGood(Path worldPath) {
+        // .minecraft/saves/x -> .minecraft/saves -> .minecraft/config
+        Path configPath = worldPath.getParent().resolveSibling("config");
+        // .minecraft/config -> .minecraft/config/atum -> .minecraft/config/atum/atum.properties
+        FileStamp oldStamp = FileStamp.of(configPath.resolve("atum").resolve("atum.properties"));
+        // .minecraft/config -> .minecraft/config/mcsr -> .minecraft/config/mcsr/atum.json
+        FileStamp newStamp = FileStamp.of(configPath.resolve("mcsr").resolve("atum.json"));
+
+        Result result = this.cache.get(configPath);
+        if (result == null || !result.oldStamp.equals(oldStamp) || !result.newStamp.equals(newStamp)) {
+            PaceManTracker.logDebug(() -> "Checking Atum settings in " + configPath);
+            result = AtumSettingsValidator.validate(oldStamp, newStamp);
+            this.cache.put(configPath, result);
+        }
+        // Warn on every run start like before, even if nothing was read this time
+        result.warnings.forEach(PaceManTracker::logWarning);
+        return result.warnings.isEmpty();
+    }
+
+    private static Result validate(FileStamp oldStamp, FileStamp newStamp) {
+        List<String> warnings = new ArrayList<>();
+        if (!(oldStamp.exists || newStamp.exists)) {
+            warnings.add("You must use the Atum mod " + oldStamp.path);
+            return new Result(oldStamp, newStamp, warnings); // no settings exist
+        }
+
+        if (oldStamp.exists) {
+            try {
+                if (!AtumSettingsValidator.areOldAtumSettingsGood(oldStamp.path)) {
+                    warnings.add("Illegal Atum settings found in " + oldStamp.path);
+                    warnings.add("Make sure your Atum settings are set to defaults with no set seed and above peaceful difficulty.");
+                    warnings.add("If you are using the newer Atum with more world generation options, you should delete the old config file.");
+                    return new Result(oldStamp, newStamp, warnings); // old settings exist and are bad
+                }
+            } catch (Exception e) {
+                warnings.add("Invalid/Corrupted Atum settings found in " + oldStamp.path);
+                warnings.add("If you are using the newer Atum with more world generation options, you should delete the old config file.");
+                return new Result(oldStamp, newStamp, warnings);
+            }
+        }
+
+        if (newStamp.exists) {
+            try {
+                if (!AtumSettingsValidator.areNewAtumSettingsGood(newStamp.path)) {
+                    warnings.add("Illegal Atum settings found in " + newStamp.path);
+                    warnings.add("Make sure your Atum settings are set to defaults with no set seed and above peaceful difficulty.");
+                    warnings.add("If you are using the older Atum with less world generation options, you should delete the new config file.");
+                    return new Result(oldStamp, newStamp, warnings); // new settings exist and are bad
+                }
+            } catch (Exception e) {
+                warnings.add("Invalid/Corrupted Atum settings found in " + newStamp.path);
+                warnings.add("If you are using the older Atum with less world generation options, you should delete the new config file.");
+                return new Result(oldStamp, newStamp, warnings); // new settings exist and are bad
+            }
+        }
+
+        return new Result(oldStamp, newStamp, Collections.emptyList()); // settings exists, no settings are bad
+    }
+
+    private static boolean areOldAtumSettingsGood(Path atumPropPath) throws IOException {
+        String atumPropText = new String(Files.readAllBytes(atumPropPath));
+        for (String line : atumPropText.split("\n")) {
+            String[] args = line.trim().split("=");
+            if (args.length < 2) {
+                continue;
+            }
+            if (args[0].trim().equals("generatorType") && !args[1].trim().equals("0")) {
+                return false;
+            }
+            if (args[0].trim().equals("bonusChest") && args[1].trim().equals("true")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean areNewAtumSettingsGood(Path atumJsonPath) throws IOException, JsonSyntaxException {
+        String atumJsonText = new String(Files.readAllBytes(atumJsonPath));
+        JsonObject json = GSON.fromJson(atumJsonText, JsonObject.class);
+        return json.has("hasLegalSettings")
+                && json.get("hasLegalSettings").getAsBoolean()
+                && json.has("seed")
+                && json.get("seed").getAsString().isEmpty()
+                && !AtumSettingsValidator.jsonHasPeacefulDifficulty(json);
+    }
+
+    private static boolean jsonHasPeacefulDifficulty(JsonObject json) {
+        if (json.has("difficulty") && json.get("difficulty").getAsString().equalsIgnoreCase("peaceful"))
+            return true;
+        return json.has("worldDifficulty") && json.get("worldDifficulty").getAsString().equalsIgnoreCase("peaceful");
+    }
+
+    private static class Result {
+        private final FileStamp oldStamp;
+        private final FileStamp newStamp;
+        private final List<String> warnings;
+
+        private Result(FileStamp oldStamp, FileStamp newStamp, List<String> warnings) {
+            this.oldStamp = oldStamp;
+            this.newStamp = newStamp;
+            this.warnings = warnings;
+        }
+    }
+
+    /**
+     * The path, size and modification time of a config file, or just the path if it doesn't exist.
+     */
+    private static class FileStamp {
+        private final Path path;
+        private final boolean exists;
+        private final long size;
+        private final long lastModified;
+
+        private FileStamp(Path path, boolean exists, long size, long lastModified) {
+            this.path = path;
+            this.exists = exists;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        private static FileStamp of(Path path) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                return new FileStamp(path, true, attributes.size(), attributes.lastModifiedTime().toMillis());
+            } catch (NoSuchFileException e) {
+                return new FileStamp(path, false, -1, -1);
+            } catch (IOException e) {
+                // Unreadable attributes, never equal to anything so it gets validated (and fails) every time
+                return new FileStamp(path, true, -1, System.nanoTime());
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || this.getClass() != o.getClass()) return false;
+            FileStamp fileStamp = (FileStamp) o;
+            return this.exists == fileStamp.exists && this.size == fileStamp.size && this.lastModified == fileStamp.lastModified && this.path.equals(fileStamp.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.path, this.exists, this.size, this.lastModified);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package gg.paceman.tracker;
+
+/**
+ * Somewhere the tracker delivers run data. Each method gets the JSON body PaceMan.gg expects and is called from a
+ * single thread at a time, in the order the tracker produced the data.
+ * <p>
+ * The primary sink (PaceMan.gg) is called directly with the access key in the body, and its response decides retries
+ * and cancelling the run. Sinks added with {@link PaceManTracker#addEventSink(EventSink)} are secondaries: the access
+ * key is removed from what they get (a sink for a server that needs a key of its own adds it, like
+ * {@link HttpEventSink} does), they have their own queue and thread, so a slow or broken one never holds up the
+ * primary, and their responses are only logged.
+ */
+public interface EventSink {
+    /**
+     * @return a short name for logs
+     */
+    String getName();
+
+    /**
+     * Run header (on the first send of a run), new events and item data.
+     */
+    PaceManTracker.PaceManResponse sendEvents(String payload);
+
+    /**
+     * The run was reset or ended early, so it should be removed.
+     */
+    PaceManTracker.PaceManResponse sendCancel(String payload);
+
+    /**
+     * Reset stats since the last submission, sent once a run gets onto PaceMan.gg.
+     */
+    PaceManTracker.PaceManResponse sendStats(String payload);
+}
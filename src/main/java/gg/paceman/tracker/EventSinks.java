@@ -0,0 +1,175 @@
+package gg.paceman.tracker;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import gg.paceman.tracker.util.ExceptionUtil;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Fans run data out to the primary {@link EventSink} and any secondaries. The primary is called on the calling thread
+ * and its response returned, each secondary gets its own bounded queue and daemon thread (a full queue drops its
+ * oldest send), so sending to the primary never waits on a secondary. Secondaries get the payload without the access
+ * key, which is only for PaceMan.gg.
+ */
+class EventSinks {
+    private static final int QUEUE_SIZE = 256;
+
+    private final TrackerContext context;
+    private final EventSink primary;
+    private final List<Secondary> secondaries = new CopyOnWriteArrayList<>();
+
+    EventSinks(TrackerContext context, EventSink primary) {
+        this.context = context;
+        this.primary = primary;
+    }
+
+    void add(EventSink sink) {
+        Secondary secondary = new Secondary(sink);
+        this.secondaries.add(secondary);
+        secondary.start();
+        PaceManTracker.log("Also sending run data to " + sink.getName());
+    }
+
+    void remove(EventSink sink) {
+        this.secondaries.removeIf(secondary -> {
+            if (secondary.sink != sink) {
+                return false;
+            }
+            secondary.stop(0);
+            return true;
+        });
+    }
+
+    /**
+     * @param toSecondaries false for retries of a send, which the secondaries already have
+     */
+    PaceManTracker.PaceManResponse sendEvents(String payload, boolean toSecondaries) {
+        if (toSecondaries) {
+            this.queue(payload, EventSink::sendEvents);
+        }
+        return this.primary.sendEvents(payload);
+    }
+
+    PaceManTracker.PaceManResponse sendCancel(String payload, boolean toSecondaries) {
+        if (toSecondaries) {
+            this.queue(payload, EventSink::sendCancel);
+        }
+        return this.primary.sendCancel(payload);
+    }
+
+    PaceManTracker.PaceManResponse sendStats(String payload) {
+        this.queue(payload, EventSink::sendStats);
+        return this.primary.sendStats(payload);
+    }
+
+    private void queue(String payload, BiFunction<EventSink, String, PaceManTracker.PaceManResponse> send) {
+        if (this.secondaries.isEmpty()) {
+            return;
+        }
+        // Stripped once here, not by each sink
+        String stripped;
+        try {
+            JsonObject json = JsonParser.parseString(payload).getAsJsonObject();
+            json.remove("accessKey");
+            stripped = json.toString();
+        } catch (RuntimeException e) {
+            PaceManTracker.logDebug(() -> "Not sending a payload that isn't a JSON object to secondary sinks: " + ExceptionUtil.toDetailedString(e));
+            return;
+        }
+        for (Secondary secondary : this.secondaries) {
+            secondary.offer(sink -> send.apply(sink, stripped));
+        }
+    }
+
+    /**
+     * Gives the secondaries until the timeout to deliver what is queued, then stops them.
+     */
+    void stop(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        this.secondaries.forEach(secondary -> secondary.stop(Math.max(0, deadline - System.currentTimeMillis())));
+        this.secondaries.clear();
+    }
+
+    private class Secondary {
+        private final EventSink sink;
+        private final ArrayBlockingQueue<Function<EventSink, PaceManTracker.PaceManResponse>> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        private final AtomicInteger dropped = new AtomicInteger(0);
+        private final Thread thread;
+        private volatile boolean running = true;
+        private boolean failing = false;
+
+        private Secondary(EventSink sink) {
+            this.sink = sink;
+            this.thread = new Thread(this::run, "paceman-sink");
+            this.thread.setDaemon(true);
+        }
+
+        private void start() {
+            this.thread.start();
+        }
+
+        private void stop(long drainMillis) {
+            this.running = false;
+            try {
+                this.thread.join(drainMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.thread.interrupt();
+        }
+
+        private void offer(Function<EventSink, PaceManTracker.PaceManResponse> send) {
+            while (!this.queue.offer(send)) {
+                if (this.queue.poll() != null) {
+                    this.dropped.incrementAndGet();
+                }
+            }
+        }
+
+        private void run() {
+            // Keeps going until stopped and everything queued is delivered
+            while (this.running || !this.queue.isEmpty()) {
+                Function<EventSink, PaceManTracker.PaceManResponse> send;
+                try {
+                    send = this.queue.poll(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                int droppedCount = this.dropped.getAndSet(0);
+                if (droppedCount > 0) {
+                    PaceManTracker.logWarning("Dropped " + droppedCount + " sends to " + this.sink.getName() + " that it couldn't keep up with");
+                }
+                if (send != null) {
+                    this.deliver(send);
+                }
+            }
+        }
+
+        private void deliver(Function<EventSink, PaceManTracker.PaceManResponse> send) {
+            PaceManTracker.PaceManResponse response;
+            try {
+                response = send.apply(this.sink);
+            } catch (Throwable t) {
+                // A broken sink should not kill its thread
+                response = new PaceManTracker.PaceManResponse(t);
+            }
+            // Log when a sink starts and stops failing rather than every send
+            boolean failed = response.getType() != PaceManTracker.PaceManResponse.Type.SUCCESS;
+            if (failed && !this.failing) {
+                String accessKey = EventSinks.this.context.getOptions().accessKey;
+                String message = String.valueOf(response.getMessage());
+                PaceManTracker.logWarning("Sending to " + this.sink.getName() + " failed: " + (accessKey.isEmpty() ? message : message.replace(accessKey, "KEY_HIDDEN")));
+            } else if (!failed && this.failing) {
+                PaceManTracker.log("Sending to " + this.sink.getName() + " works again");
+            }
+            this.failing = failed;
+        }
+    }
+}
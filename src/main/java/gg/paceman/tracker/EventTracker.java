@@ -3,29 +3,43 @@ package gg.paceman.tracker;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonSyntaxException;
+import gg.paceman.tracker.util.FileIdentity;
 import gg.paceman.tracker.util.SleepUtil;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
 public class EventTracker {
+    private static final Gson GSON = new Gson();
+    // The most bytes of events.log read in one pass, the rest is read on the following ticks
+    private static final int MAX_READ_BYTES = 1 << 20; // 1 MiB
+    private static final int INITIAL_READ_BUFFER_SIZE = 8192;
+
     private final Path globalFile;
+    private final Runnable onActivity;
     private Path eventLogPath = null;
     private Path worldPath = null;
 
     private long lastMod = -1;
     private long readProgress = 0;
+    private FileIdentity eventLogIdentity = null;
+    private boolean hasUnreadLines = false;
+    private byte[] readBuffer = new byte[INITIAL_READ_BUFFER_SIZE];
     private long runStartTime = -1;
     private String currentHeader = "";
+    private byte[] currentHeaderBytes = new byte[0];
+    private JsonObject currentHeaderJson = null;
     private String srIGTVersion = "";
     private String gameVersion = "";
     private String category = "";
@@ -34,8 +48,16 @@ public class EventTracker {
 
     private int failuresInARow = 0;
 
-    public EventTracker(Path globalFile) {
+    private TrackerCheckpoint.EventLogState resumeFrom = null;
+    private boolean resumed = false;
+
+    /**
+     * @param globalFile SpeedRunIGT's latest_world.json, world paths in it are resolved on its file system
+     * @param onActivity called when the game writes to latest_world.json
+     */
+    public EventTracker(Path globalFile, Runnable onActivity) {
         this.globalFile = globalFile;
+        this.onActivity = onActivity;
     }
 
     public String getCurrentWorldName() {
@@ -50,8 +72,11 @@ public class EventTracker {
         return this.gameVersion;
     }
 
+    /**
+     * @return the time the run started (the last event's modification time minus its realtime), or -1 until events.log
+     * was read to its end
+     */
     public long getRunStartTime() {
-        // Returns the first event time minus its stored realtime, giving the run start time
         return this.runStartTime;
     }
 
@@ -63,6 +88,13 @@ public class EventTracker {
         return this.currentHeader;
     }
 
+    /**
+     * @return the parsed current header, shared with the caller so the header is only parsed once per change
+     */
+    public JsonObject getCurrentHeaderJson() {
+        return this.currentHeaderJson;
+    }
+
     public boolean hasHeaderChanged() {
         if (this.headerChanged) {
             this.headerChanged = false;
@@ -71,15 +103,98 @@ public class EventTracker {
         return false;
     }
 
+    /**
+     * Continues from a checkpoint if the next loaded header is the checkpointed one and its events.log is still the same
+     * file, at least as long as when the checkpoint was made.
+     */
+    void resumeFrom(TrackerCheckpoint.EventLogState checkpoint) {
+        this.resumeFrom = checkpoint;
+    }
+
+    /**
+     * @return true if the current header's events.log reading continued from a checkpoint
+     */
+    boolean wasResumed() {
+        return this.resumed;
+    }
+
+    @Nullable
+    TrackerCheckpoint.EventLogState createCheckpoint() throws IOException {
+        if (this.eventLogPath == null || this.readProgress == 0) {
+            return null;
+        }
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(this.eventLogPath, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        TrackerCheckpoint.EventLogState checkpoint = new TrackerCheckpoint.EventLogState();
+        checkpoint.header = this.currentHeader;
+        checkpoint.identity = FileIdentity.of(attributes);
+        checkpoint.readProgress = this.readProgress;
+        checkpoint.runStartTime = this.runStartTime;
+        return checkpoint;
+    }
+
+    private boolean tryResume(TrackerCheckpoint.EventLogState checkpoint) throws IOException {
+        if (!this.currentHeader.equals(checkpoint.header) || checkpoint.readProgress <= 0) {
+            return false;
+        }
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(this.eventLogPath, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        if (!FileIdentity.of(attributes).isSameFile(checkpoint.identity)) {
+            PaceManTracker.logDebug("Not resuming from checkpoint, events.log was replaced");
+            return false;
+        }
+        if (attributes.size() < checkpoint.readProgress) {
+            PaceManTracker.logDebug("Not resuming from checkpoint, events.log was truncated");
+            return false;
+        }
+        // The checkpointed offset is always right after a full line
+        try (SeekableByteChannel channel = Files.newByteChannel(this.eventLogPath)) {
+            ByteBuffer lastByte = ByteBuffer.allocate(1);
+            EventTracker.seek(channel, checkpoint.readProgress - 1);
+            if (channel.read(lastByte) != 1 || lastByte.get(0) != '\n') {
+                PaceManTracker.logDebug("Not resuming from checkpoint, events.log was rewritten");
+                return false;
+            }
+        }
+        this.readProgress = checkpoint.readProgress;
+        this.eventLogIdentity = checkpoint.identity;
+        this.runStartTime = checkpoint.runStartTime;
+        PaceManTracker.logDebug(() -> "Resuming events.log from checkpoint at byte " + this.readProgress);
+        return true;
+    }
+
+    public Path getGlobalFile() {
+        return this.globalFile;
+    }
+
     public boolean update() throws IOException {
-        if (!Files.exists(this.globalFile)) {
+        long newLM;
+        try {
+            // A single stat call covers both the existence check and the modification time
+            newLM = Files.getLastModifiedTime(this.globalFile).toMillis();
+        } catch (NoSuchFileException e) {
             return false;
         }
-        long newLM = Files.getLastModifiedTime(this.globalFile).toMillis();
         if (newLM == this.lastMod) {
-            return false;
+            if (!this.hasUnreadLines || this.eventLogPath == null) {
+                return false;
+            }
+            // Continue a read that was cut off by the per-pass cap
+            while (!this.tryUpdateNewLines()) {
+                SleepUtil.sleep(5);
+            }
+            return true;
         }
         this.lastMod = newLM;
+        this.onActivity.run();
         while (!this.tryCheckHeader()) {
             SleepUtil.sleep(5);
         }
@@ -93,67 +208,131 @@ public class EventTracker {
     }
 
     private boolean tryUpdateNewLines() throws IOException {
-        String newContents;
-        try (InputStream inputStream = Files.newInputStream(this.eventLogPath)) {
-            inputStream.skip(this.readProgress);
-            long newReadProgress = this.readProgress;
-            List<Byte> byteList = new ArrayList<>();
-            int next;
-            int lastChar = '\n';
-            while ((next = inputStream.read()) != -1) {
-                byteList.add((byte) next);
-                newReadProgress++;
-                lastChar = next;
-            }
-            if (newReadProgress == this.readProgress) {
-                // No bytes read
-                return true;
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(this.eventLogPath, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return true;
+        }
+        FileIdentity identity = FileIdentity.of(attributes);
+        if (this.readProgress > 0 && !identity.isSameFile(this.eventLogIdentity)) {
+            PaceManTracker.logDebug("events.log was replaced, reading it from the start as a new run");
+            this.restartEventLog();
+        } else if (attributes.size() < this.readProgress) {
+            PaceManTracker.logDebug("events.log was truncated, reading it from the start as a new run");
+            this.restartEventLog();
+        }
+        this.eventLogIdentity = identity;
+
+        long available = attributes.size() - this.readProgress;
+        this.hasUnreadLines = false;
+        if (available <= 0) {
+            // No bytes to read
+            this.latestNewLines = Collections.emptyList();
+            return true;
+        }
+        boolean capped = available > MAX_READ_BYTES;
+        int toRead = (int) Math.min(available, MAX_READ_BYTES);
+        if (this.readBuffer.length < toRead) {
+            this.readBuffer = new byte[toRead];
+        }
+        int read = 0;
+        try (SeekableByteChannel channel = Files.newByteChannel(this.eventLogPath)) {
+            EventTracker.seek(channel, this.readProgress);
+            ByteBuffer buffer = ByteBuffer.wrap(this.readBuffer, 0, toRead);
+            int n;
+            while (buffer.hasRemaining() && (n = channel.read(buffer)) != -1) {
+                read += n;
             }
-            if (lastChar != '\n') {
+        }
+        int end = read;
+        while (end > 0 && this.readBuffer[end - 1] != '\n') {
+            end--;
+        }
+        if (end == 0) {
+            if (!capped) {
                 // Out of new bytes, it didn't end with a newline
                 return false;
             }
-            this.readProgress = newReadProgress;
-            byte[] bytes = new byte[byteList.size()];
-            for (int i = 0; i < bytes.length; i++) {
-                bytes[i] = byteList.get(i);
-            }
-            newContents = new String(bytes);
+            // A single line longer than the cap can't be an event, skip past it
+            PaceManTracker.logWarning("Skipping " + read + " bytes of events.log without a line break.");
+            this.readProgress += read;
+            this.latestNewLines = Collections.emptyList();
+            this.hasUnreadLines = true;
+            return true;
         }
+        if (end < read && !capped) {
+            // The last line is still being written
+            return false;
+        }
+        this.readProgress += end;
+        this.hasUnreadLines = capped;
+        String newContents = new String(this.readBuffer, 0, end, StandardCharsets.UTF_8);
         // For each string split between newlines, trim, filter out empties, and collect to list.
         this.latestNewLines = Arrays.stream(newContents.split("\n")).map(String::trim).filter(s -> !s.isEmpty()).collect(Collectors.toList());
-        if (this.runStartTime == -1 && !this.latestNewLines.isEmpty()) {
-            BasicFileAttributes eventsLogAttributes = Files.readAttributes(this.eventLogPath, BasicFileAttributes.class);
-            long eventsLogLastMTime = eventsLogAttributes.lastModifiedTime().toMillis();
+        if (this.runStartTime == -1 && !this.latestNewLines.isEmpty() && !capped) {
+            // Only valid when the last line read is the last line of the file, written at its modification time
+            long eventsLogLastMTime = attributes.lastModifiedTime().toMillis();
             long lastEventRT = Long.parseLong(this.latestNewLines.get(this.latestNewLines.size() - 1).split(" ")[1]);
             this.runStartTime = eventsLogLastMTime - lastEventRT;
         }
+        if (this.readBuffer.length > INITIAL_READ_BUFFER_SIZE && !capped) {
+            // Don't hold on to a large buffer after catching up
+            this.readBuffer = new byte[INITIAL_READ_BUFFER_SIZE];
+        }
         return true;
     }
 
+    /**
+     * Moves a freshly opened channel to the position, reading up to it where the file system's channels can't seek
+     * (zip file systems before Java 9).
+     */
+    private static void seek(SeekableByteChannel channel, long position) throws IOException {
+        try {
+            channel.position(position);
+            return;
+        } catch (UnsupportedOperationException ignored) {
+        }
+        ByteBuffer skipped = ByteBuffer.allocate((int) Math.min(position, 8192));
+        long remaining = position;
+        while (remaining > 0) {
+            skipped.clear();
+            skipped.limit((int) Math.min(remaining, skipped.capacity()));
+            int n = channel.read(skipped);
+            if (n == -1) {
+                return;
+            }
+            remaining -= n;
+        }
+    }
+
     private boolean tryCheckHeader() throws IOException {
-        String newHeader = new String(Files.readAllBytes(this.globalFile));
-        if (!newHeader.endsWith("\n")) {
+        byte[] newHeaderBytes = Files.readAllBytes(this.globalFile);
+        if (newHeaderBytes.length == 0 || newHeaderBytes[newHeaderBytes.length - 1] != '\n') {
             return false;
         }
-        newHeader = newHeader.trim();
-        if (!newHeader.equals(this.currentHeader)) {
-            this.tryLoadNewHeader(newHeader);
+        // Touched but not rewritten, skip decoding the header again
+        if (Arrays.equals(newHeaderBytes, this.currentHeaderBytes)) {
+            return true;
+        }
+        String newHeader = new String(newHeaderBytes).trim();
+        if (newHeader.equals(this.currentHeader) || this.tryLoadNewHeader(newHeader)) {
+            this.currentHeaderBytes = newHeaderBytes;
         }
         return true;
     }
 
-    private void tryLoadNewHeader(String newHeader) {
+    private boolean tryLoadNewHeader(String newHeader) throws IOException {
         JsonObject json;
         try {
-            json = new Gson().fromJson(newHeader, JsonObject.class);
+            json = GSON.fromJson(newHeader, JsonObject.class);
         } catch (JsonSyntaxException e) {
             if (++this.failuresInARow > 2) {
                 PaceManTracker.logError("Error converting global file to json: " + e);
                 this.eventLogPath = null;
                 this.worldPath = null;
             }
-            return;
+            return false;
         }
 
         this.srIGTVersion = json.has("mod_version") ? (json.get("mod_version").getAsString().split("\\+")[0]) : "14.0";
@@ -161,11 +340,35 @@ public class EventTracker {
         this.category = json.get("category").getAsString();
         this.failuresInARow = 0;
         this.currentHeader = newHeader;
+        this.currentHeaderJson = json;
         this.headerChanged = true;
-        this.worldPath = Paths.get(json.get("world_path").getAsString());
+        this.worldPath = this.globalFile.getFileSystem().getPath(json.get("world_path").getAsString());
         this.eventLogPath = this.worldPath.resolve("speedrunigt").resolve("events.log");
+        this.resetEventLogProgress();
+        if (this.resumeFrom != null) {
+            // Only the first header after starting can be resumed
+            TrackerCheckpoint.EventLogState checkpoint = this.resumeFrom;
+            this.resumeFrom = null;
+            this.resumed = this.tryResume(checkpoint);
+        }
+        return true;
+    }
+
+    private void resetEventLogProgress() {
         this.readProgress = 0;
+        this.eventLogIdentity = null;
+        this.hasUnreadLines = false;
         this.runStartTime = -1;
+        this.resumed = false;
+    }
+
+    /**
+     * The header stayed the same but its events.log started over, so it is a new run: reported as a header change so
+     * the tracker drops (and cancels) the old run before the new lines come in.
+     */
+    private void restartEventLog() {
+        this.resetEventLogProgress();
+        this.headerChanged = true;
     }
 
     public Path getWorldPath() {
@@ -0,0 +1,127 @@
+package gg.paceman.tracker;
+
+import gg.paceman.tracker.util.ExceptionUtil;
+import gg.paceman.tracker.util.ProcessUtil;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Puts all scheduled tracker work to sleep when no game activity has been seen for a while, e.g. when Minecraft is
+ * closed on a PC left running overnight. While hibernating, a single thread waits on file system watch events in the
+ * SpeedRunIGT and instance folders (and checks for a game process if the runtime can) and wakes everything back up.
+ */
+public class Hibernation {
+    private static final long HIBERNATE_AFTER_MILLIS = 10 * 60_000; // 10 minutes
+    private static final long WAKE_CHECK_MILLIS = 5000;
+
+    private final Runnable onHibernate;
+    private final Runnable onWake;
+    private final Supplier<Collection<Path>> foldersToWatch;
+
+    private volatile long lastActivity = System.currentTimeMillis();
+    private volatile boolean hibernating = false;
+    private long hibernateStart = 0;
+    private long totalHibernatedMillis = 0;
+
+    /**
+     * @param onHibernate    stops all scheduled work
+     * @param onWake         reschedules all work
+     * @param foldersToWatch folders where any change counts as game activity
+     */
+    public Hibernation(Runnable onHibernate, Runnable onWake, Supplier<Collection<Path>> foldersToWatch) {
+        this.onHibernate = onHibernate;
+        this.onWake = onWake;
+        this.foldersToWatch = foldersToWatch;
+    }
+
+    /**
+     * Records game activity (a changed game file or a host event), waking up if hibernating.
+     */
+    public void markActivity() {
+        this.lastActivity = System.currentTimeMillis();
+        if (this.hibernating) {
+            this.wake("host activity");
+        }
+    }
+
+    /**
+     * Hibernates if there was no activity for long enough and no game process is running.
+     */
+    public void checkIdle() {
+        if (this.hibernating || System.currentTimeMillis() - this.lastActivity < HIBERNATE_AFTER_MILLIS) {
+            return;
+        }
+        if (ProcessUtil.isGameRunning()) {
+            // Probably AFK in game, check again after another full period
+            this.lastActivity = System.currentTimeMillis();
+            return;
+        }
+        this.hibernate();
+    }
+
+    public boolean isHibernating() {
+        return this.hibernating;
+    }
+
+    /**
+     * @return the total time spent hibernating this session, including the current hibernation
+     */
+    public synchronized long getTotalHibernatedMillis() {
+        return this.totalHibernatedMillis + (this.hibernating ? System.currentTimeMillis() - this.hibernateStart : 0);
+    }
+
+    private synchronized void hibernate() {
+        if (this.hibernating) {
+            return;
+        }
+        PaceManTracker.log("No game activity for " + TimeUnit.MILLISECONDS.toMinutes(HIBERNATE_AFTER_MILLIS) + " minutes, hibernating until the game is used again.");
+        this.hibernating = true;
+        this.hibernateStart = System.currentTimeMillis();
+        this.onHibernate.run();
+        Thread thread = new Thread(this::waitForActivity, "paceman-hibernation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private synchronized void wake(String reason) {
+        if (!this.hibernating) {
+            return;
+        }
+        long hibernatedFor = System.currentTimeMillis() - this.hibernateStart;
+        this.totalHibernatedMillis += hibernatedFor;
+        this.hibernating = false;
+        this.lastActivity = System.currentTimeMillis();
+        PaceManTracker.log("Waking up from hibernation (" + reason + ") after " + TimeUnit.MILLISECONDS.toMinutes(hibernatedFor) + " minutes.");
+        this.onWake.run();
+    }
+
+    private void waitForActivity() {
+        Collection<Path> folders = this.foldersToWatch.get();
+        // The tracker's folders are all on one file system, which isn't always the default one
+        FileSystem fileSystem = folders.isEmpty() ? FileSystems.getDefault() : folders.iterator().next().getFileSystem();
+        try (WatchService watchService = fileSystem.newWatchService()) {
+            for (Path folder : folders) {
+                if (folder.getFileSystem() == fileSystem && Files.isDirectory(folder)) {
+                    folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+                }
+            }
+            while (this.hibernating) {
+                WatchKey key = watchService.poll(WAKE_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    this.wake("game files changed");
+                } else if (ProcessUtil.isGameRunning()) {
+                    this.wake("game process found");
+                }
+            }
+        } catch (InterruptedException ignored) {
+        } catch (IOException | RuntimeException e) {
+            // Can't watch for activity, so don't stay asleep
+            PaceManTracker.logWarning("Failed to watch for game activity while hibernating: " + ExceptionUtil.toDetailedString(e));
+            this.wake("watch failed");
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package gg.paceman.tracker;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import gg.paceman.tracker.util.CircuitBreaker;
+import gg.paceman.tracker.util.PostUtil;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+
+/**
+ * Sends to the PaceMan.gg HTTP API, or anything at another URL speaking the same API (like the dev source set's
+ * FakePaceManServer). Requests go through the circuit breakers of the tracker's context when sending to its server,
+ * and otherwise through any registered with {@link PostUtil} for the URL. As a secondary sink it gets payloads without
+ * the PaceMan.gg access key, so another server is sent its own key if it was given one.
+ */
+public class HttpEventSink implements EventSink {
+    public static final String EVENT_PATH = "/api/sendevent";
+    public static final String STATS_PATH = "/stats/api/submitStats/";
+    private static final int MIN_DENY_CODE = 400;
+
+    private final String name;
+    private final String eventUrl;
+    private final String statsUrl;
+    @Nullable
+    private final String accessKey;
+    @Nullable
+    private final CircuitBreaker eventCircuitBreaker;
+    @Nullable
+    private final CircuitBreaker statsCircuitBreaker;
+
+    /**
+     * @param baseUrl   e.g. https://paceman.gg
+     * @param accessKey the key to put in every payload, or null to send them as they are
+     */
+    public HttpEventSink(String name, String baseUrl, @Nullable String accessKey) {
+        this(name, baseUrl, accessKey, null, null);
+    }
+
+    /**
+     * Sends to the context's server through its circuit breakers.
+     */
+    HttpEventSink(String name, TrackerContext context) {
+        this(name, context.getUrl(), null, context.getEventCircuitBreaker(), context.getStatsCircuitBreaker());
+    }
+
+    private HttpEventSink(String name, String baseUrl, @Nullable String accessKey, @Nullable CircuitBreaker eventCircuitBreaker, @Nullable CircuitBreaker statsCircuitBreaker) {
+        this.name = name;
+        String base = baseUrl.replaceAll("/+$", "");
+        this.eventUrl = base + EVENT_PATH;
+        this.statsUrl = base + STATS_PATH;
+        this.accessKey = accessKey;
+        this.eventCircuitBreaker = eventCircuitBreaker;
+        this.statsCircuitBreaker = statsCircuitBreaker;
+    }
+
+    /**
+     * @param baseUrl e.g. https://paceman.gg
+     */
+    public HttpEventSink(String name, String baseUrl) {
+        this(name, baseUrl, null);
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public PaceManTracker.PaceManResponse sendEvents(String payload) {
+        return HttpEventSink.post(this.eventUrl, this.withAccessKey(payload), this.eventCircuitBreaker);
+    }
+
+    @Override
+    public PaceManTracker.PaceManResponse sendCancel(String payload) {
+        return HttpEventSink.post(this.eventUrl, this.withAccessKey(payload), this.eventCircuitBreaker);
+    }
+
+    @Override
+    public PaceManTracker.PaceManResponse sendStats(String payload) {
+        return HttpEventSink.post(this.statsUrl, this.withAccessKey(payload), this.statsCircuitBreaker);
+    }
+
+    private String withAccessKey(String payload) {
+        if (this.accessKey == null) {
+            return payload;
+        }
+        JsonObject json = JsonParser.parseString(payload).getAsJsonObject();
+        json.addProperty("accessKey", this.accessKey);
+        return json.toString();
+    }
+
+    private static PaceManTracker.PaceManResponse post(String url, String payload, @Nullable CircuitBreaker breaker) {
+        PostUtil.PostResponse response;
+        try {
+            response = breaker == null ? PostUtil.sendData(url, payload) : PostUtil.sendData(url, payload, breaker);
+        } catch (IOException e) {
+            return new PaceManTracker.PaceManResponse(e);
+        }
+
+        if (response.code < MIN_DENY_CODE) {
+            return new PaceManTracker.PaceManResponse(PaceManTracker.PaceManResponse.Type.SUCCESS, response.message);
+        } else {
+            return new PaceManTracker.PaceManResponse(PaceManTracker.PaceManResponse.Type.DENIED, response.message);
+        }
+    }
+}
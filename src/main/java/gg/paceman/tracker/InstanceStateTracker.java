@@ -0,0 +1,314 @@
+package gg.paceman.tracker;
+
+import gg.paceman.tracker.util.SleepUtil;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+/**
+ * Reset stats state for a single instance (.minecraft folder), owned and ticked by {@link StateTracker}.
+ * <p>
+ * All methods must be called from the state tracker's thread.
+ */
+class InstanceStateTracker {
+    private static final int BREAK_THRESHOLD = 5000;
+    // cap each overworld segment to at most 10 minutes in case of afk
+    static final int MAX_PLAY_TIME = 1000 * 60 * 10;
+    // reset stats after no state changes for 1 hour
+    static final int MAX_AFK_TIME = 1000 * 60 * 60;
+
+    private final PaceManTracker tracker;
+    private final Path instPath;
+    private final Path statePath;
+    private final Path resetsPath;
+    private boolean hasStateFile = false;
+    private long stateLastMod = -1;
+    private StateTracker.State currentState = StateTracker.State.UNKNOWN;
+
+    private boolean hasResetsFile = false;
+    private long resetsLastMod = -1;
+    private int resets = 0;
+    private int lastResets = 0;
+    private long lastWallReset = 0;
+
+    boolean isPracticing = false;
+    private boolean isNether = false;
+
+    private int seedsPlayed = 0;
+    private long playingStart = 0;
+    private long playTime = 0;
+    private long wallTime = 0;
+    private long pauseStart = 0;
+    private long pauseTime = 0;
+    private long netherStart = 0;
+    private long netherTime = 0;
+
+    // When the state or resets file last changed (or when this instance was first seen), for forgetting idle instances
+    private long lastActivity = System.currentTimeMillis();
+
+    InstanceStateTracker(PaceManTracker tracker, Path instPath) {
+        this.tracker = tracker;
+        this.instPath = instPath;
+        this.statePath = tracker.getPaths().getStateFile(instPath);
+        this.resetsPath = tracker.getPaths().getResetsFile(instPath);
+    }
+
+    Path getInstPath() {
+        return this.instPath;
+    }
+
+    long getLastActivity() {
+        return this.lastActivity;
+    }
+
+    void reset() {
+        this.resets = 0;
+        this.lastResets = 0;
+        this.lastWallReset = 0;
+        this.seedsPlayed = 0;
+        this.playingStart = 0;
+        this.playTime = 0;
+        this.wallTime = 0;
+        this.pauseStart = 0;
+        this.pauseTime = 0;
+        this.netherStart = 0;
+        this.netherTime = 0;
+        this.stateLastMod = -1;
+        this.resetsLastMod = -1;
+    }
+
+    /**
+     * Checks which of the instance's state and resets files exist.
+     */
+    void refreshFiles() {
+        this.hasStateFile = Files.exists(this.statePath);
+        this.hasResetsFile = Files.exists(this.resetsPath);
+    }
+
+    private static boolean isPlaying(StateTracker.State state) {
+        return state == StateTracker.State.PLAYING || state == StateTracker.State.PAUSED;
+    }
+
+    void tick() throws IOException {
+        if (!this.hasStateFile) {
+            return;
+        }
+        long newLM;
+        try {
+            newLM = Files.getLastModifiedTime(this.statePath).toMillis();
+        } catch (NoSuchFileException e) {
+            // Briefly missing while being rewritten, try again next tick
+            return;
+        }
+        if (newLM == this.stateLastMod) {
+            return;
+        }
+        long diff = newLM - this.stateLastMod;
+        if (this.stateLastMod != -1 && diff > MAX_AFK_TIME) {
+            PaceManTracker.logDebug(() -> "AFK for " + diff + "ms on " + this.instPath + ", resetting stats");
+            this.reset();
+        }
+        if (this.stateLastMod != -1) {
+            this.tracker.getHibernation().markActivity();
+        }
+        this.stateLastMod = newLM;
+        this.lastActivity = System.currentTimeMillis();
+
+        StateTracker.State oldState = this.currentState;
+        StateTracker.State newState = StateTracker.State.UNKNOWN;
+        String state = "";
+        for (int i = 0; i < 5; i++) {
+            state = new String(Files.readAllBytes(this.statePath), StandardCharsets.UTF_8);
+            String[] parts = state.split(",");
+            switch (parts[0]) {
+                case "wall":
+                case "previewing":
+                    newState = StateTracker.State.WALL;
+                    break;
+                case "inworld":
+                    if (parts[1].equals("paused")) {
+                        newState = StateTracker.State.PAUSED;
+                    } else {
+                        newState = StateTracker.State.PLAYING;
+                    }
+                    break;
+                case "generating":
+                case "waiting":
+                    newState = StateTracker.State.LOADING;
+                    break;
+                case "title":
+                    newState = StateTracker.State.IDLE;
+                    break;
+                default:
+                    SleepUtil.sleep(5);
+                    continue;
+            }
+            break;
+        }
+        if (newState == StateTracker.State.UNKNOWN) {
+            PaceManTracker.logWarning("State cannot be determined after 3 attempts: " + state);
+            return;
+        }
+
+        if (newState == StateTracker.State.PAUSED) {
+            this.pauseStart = newLM;
+        } else if (oldState == StateTracker.State.PAUSED) {
+            this.pauseTime = newLM - this.pauseStart;
+        }
+
+        // joined instance
+        if (!isPlaying(oldState) && isPlaying(newState)) {
+            this.playingStart = newLM;
+            if (oldState != StateTracker.State.UNKNOWN) {
+                // don't increment seeds played counter when tracker is restarted while in a world
+                this.seedsPlayed++;
+                this.tracker.getResetAnalytics().onSeedPlayed(newLM);
+            }
+        }
+
+        // left instance
+        if (isPlaying(oldState) && !isPlaying(newState)) {
+            if (!this.isPracticing && !this.isNether) {
+                // commit playtime
+                long playDiff = Math.min(MAX_PLAY_TIME, newLM - this.playingStart);
+                this.playTime += playDiff - this.pauseTime;
+                this.tracker.getResetAnalytics().onPlayTime(playDiff - this.pauseTime, newLM);
+                this.pauseTime = 0;
+            }
+            this.isPracticing = false;
+            if (this.isNether) {
+                this.netherTime += newLM - this.netherStart;
+            }
+            this.isNether = false;
+        }
+
+        if (newState != oldState) {
+            this.tracker.onStateChange(this.instPath, oldState, newState);
+        }
+        this.currentState = newState;
+    }
+
+    void tickResets() throws IOException {
+        if (!this.hasResetsFile) {
+            return;
+        }
+        long newLM;
+        try {
+            newLM = Files.getLastModifiedTime(this.resetsPath).toMillis();
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        if (newLM == this.resetsLastMod) {
+            return;
+        }
+        this.resetsLastMod = newLM;
+        this.lastActivity = System.currentTimeMillis();
+
+        int resets = 0;
+        for (int i = 0; i < 5; i++) {
+            String contents = new String(Files.readAllBytes(this.resetsPath), StandardCharsets.UTF_8);
+            if (contents.isEmpty()) {
+                SleepUtil.sleep(5);
+                continue;
+            }
+            resets = Integer.parseInt(contents);
+            break;
+        }
+
+        if (this.resets != 0 && resets > this.resets) {
+            this.tracker.getResetAnalytics().onResets(resets - this.resets, newLM);
+        }
+        this.resets = resets;
+        if (this.lastResets == 0) {
+            this.lastResets = this.resets;
+        }
+
+        if (this.currentState != StateTracker.State.WALL) {
+            return;
+        }
+
+        // first wall reset
+        if (this.lastWallReset == 0) {
+            this.lastWallReset = newLM;
+            return;
+        }
+
+        long wallDiff = newLM - this.lastWallReset;
+        this.lastWallReset = newLM;
+        if (wallDiff < BREAK_THRESHOLD) {
+            this.wallTime += wallDiff;
+            this.tracker.getResetAnalytics().onWallTime(wallDiff, newLM);
+        }
+    }
+
+    /**
+     * Adds the overworld time (capped) spent in the current run to playTime, used when the run is sent to PaceMan.
+     */
+    void commitCurrentRunPlayTime(long now) {
+        long playDiff = Math.min(MAX_PLAY_TIME, now - this.playingStart);
+        this.playTime += playDiff;
+        this.tracker.getResetAnalytics().onPlayTime(playDiff, now);
+    }
+
+    /**
+     * Marks the current run as a nether enter, so time from here until leaving the world is counted as nether time.
+     */
+    void startNether(long now) {
+        this.isNether = true;
+        this.netherStart = now;
+    }
+
+    /**
+     * Adds this instance's stats since the last dump to the totals and zeroes them.
+     */
+    void drainStatsInto(StatTotals totals) {
+        totals.wallTime += this.wallTime;
+        totals.playTime += this.playTime;
+        totals.netherTime += this.netherTime;
+        totals.seedsPlayed += this.seedsPlayed;
+        totals.newResets += this.resets - this.lastResets;
+        totals.totalResets += this.resets;
+
+        this.lastResets = this.resets;
+        this.playTime = 0;
+        this.wallTime = 0;
+        this.seedsPlayed = 0;
+        this.netherTime = 0;
+    }
+
+    TrackerCheckpoint.InstanceStats snapshotStats() {
+        TrackerCheckpoint.InstanceStats stats = new TrackerCheckpoint.InstanceStats();
+        stats.wallTime = this.wallTime;
+        stats.playTime = this.playTime;
+        stats.netherTime = this.netherTime;
+        stats.seedsPlayed = this.seedsPlayed;
+        stats.lastResets = this.lastResets;
+        return stats;
+    }
+
+    /**
+     * Continues from the unsubmitted stats of a previous tracker session.
+     */
+    void restoreStats(TrackerCheckpoint.InstanceStats stats) {
+        this.wallTime = stats.wallTime;
+        this.playTime = stats.playTime;
+        this.netherTime = stats.netherTime;
+        this.seedsPlayed = stats.seedsPlayed;
+        this.lastResets = stats.lastResets;
+    }
+
+    /**
+     * Reset stats summed over every instance of the session.
+     */
+    static class StatTotals {
+        long wallTime = 0;
+        long playTime = 0;
+        long netherTime = 0;
+        int seedsPlayed = 0;
+        int newResets = 0;
+        int totalResets = 0;
+    }
+}
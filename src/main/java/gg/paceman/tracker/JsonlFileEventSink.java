@@ -0,0 +1,63 @@
+package gg.paceman.tracker;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends everything sent to a local JSON lines file, one {@code {"time", "type", "data"}} object per send, for
+ * keeping a local copy of runs or feeding other tools. Like every secondary sink it never sees the access key.
+ */
+public class JsonlFileEventSink implements EventSink {
+    private final Path path;
+
+    public JsonlFileEventSink(Path path) {
+        this.path = path;
+    }
+
+    @Override
+    public String getName() {
+        return "file " + this.path;
+    }
+
+    @Override
+    public PaceManTracker.PaceManResponse sendEvents(String payload) {
+        return this.append("events", payload);
+    }
+
+    @Override
+    public PaceManTracker.PaceManResponse sendCancel(String payload) {
+        return this.append("cancel", payload);
+    }
+
+    @Override
+    public PaceManTracker.PaceManResponse sendStats(String payload) {
+        return this.append("stats", payload);
+    }
+
+    private PaceManTracker.PaceManResponse append(String type, String payload) {
+        JsonObject line = new JsonObject();
+        line.addProperty("time", System.currentTimeMillis());
+        line.addProperty("type", type);
+        try {
+            line.add("data", JsonParser.parseString(payload).getAsJsonObject());
+        } catch (JsonSyntaxException | IllegalStateException e) {
+            return new PaceManTracker.PaceManResponse(PaceManTracker.PaceManResponse.Type.DENIED, "Not a JSON object: " + e);
+        }
+        try {
+            if (this.path.getParent() != null) {
+                Files.createDirectories(this.path.getParent());
+            }
+            Files.write(this.path, (line + "\n").getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            return new PaceManTracker.PaceManResponse(e);
+        }
+        return new PaceManTracker.PaceManResponse(PaceManTracker.PaceManResponse.Type.SUCCESS, "OK");
+    }
+}
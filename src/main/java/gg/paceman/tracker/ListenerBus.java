@@ -0,0 +1,112 @@
+package gg.paceman.tracker;
+
+import gg.paceman.tracker.util.ExceptionUtil;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Delivers notifications to {@link PaceManTrackerListener}s. Every listener gets its own bounded queue and daemon
+ * thread, and a full queue drops its oldest notification, so firing never blocks.
+ */
+class ListenerBus {
+    private static final int QUEUE_SIZE = 1024;
+
+    private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+
+    void add(PaceManTrackerListener listener) {
+        Registration registration = new Registration(listener);
+        this.registrations.add(registration);
+        registration.start();
+    }
+
+    void remove(PaceManTrackerListener listener) {
+        this.registrations.removeIf(registration -> {
+            if (registration.listener != listener) {
+                return false;
+            }
+            registration.stop();
+            return true;
+        });
+    }
+
+    boolean hasListeners() {
+        return !this.registrations.isEmpty();
+    }
+
+    /**
+     * Queues a notification for every listener, never blocks.
+     */
+    void fire(Consumer<PaceManTrackerListener> notification) {
+        for (Registration registration : this.registrations) {
+            registration.offer(notification);
+        }
+    }
+
+    void stop() {
+        this.registrations.forEach(Registration::stop);
+        this.registrations.clear();
+    }
+
+    private static class Registration {
+        private final PaceManTrackerListener listener;
+        private final ArrayBlockingQueue<Consumer<PaceManTrackerListener>> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        private final AtomicInteger dropped = new AtomicInteger(0);
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        private Registration(PaceManTrackerListener listener) {
+            this.listener = listener;
+            this.thread = new Thread(this::run, "paceman-listener");
+            this.thread.setDaemon(true);
+        }
+
+        private void start() {
+            this.thread.start();
+        }
+
+        private void stop() {
+            this.running = false;
+            this.thread.interrupt();
+        }
+
+        private void offer(Consumer<PaceManTrackerListener> notification) {
+            while (!this.queue.offer(notification)) {
+                if (this.queue.poll() != null) {
+                    this.dropped.incrementAndGet();
+                }
+            }
+        }
+
+        private void run() {
+            while (this.running) {
+                Consumer<PaceManTrackerListener> notification;
+                try {
+                    notification = this.queue.poll(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                int droppedCount = this.dropped.getAndSet(0);
+                if (droppedCount > 0) {
+                    this.deliver(l -> l.onDropped(droppedCount));
+                }
+                if (notification != null) {
+                    this.deliver(notification);
+                }
+            }
+        }
+
+        private void deliver(Consumer<PaceManTrackerListener> notification) {
+            try {
+                notification.accept(this.listener);
+            } catch (Throwable t) {
+                // A broken listener should not kill its thread
+                PaceManTracker.logWarning("PaceMan Tracker listener " + this.listener.getClass().getName() + " failed: " + ExceptionUtil.toDetailedString(t));
+            }
+        }
+    }
+}
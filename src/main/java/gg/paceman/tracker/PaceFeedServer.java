@@ -0,0 +1,271 @@
+package gg.paceman.tracker;
+
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import gg.paceman.tracker.util.ExceptionUtil;
+import gg.paceman.tracker.util.NetworkExecutor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * An opt-in server-sent events feed on localhost for overlays and other local tools, so they don't have to read the
+ * game files the tracker already reads. Enabled by setting paceFeedPort in the options, clients connect to
+ * {@code http://localhost:<port>/events}. Fed through the tracker's {@link PaceManTrackerListener} API.
+ * <p>
+ * Every event is serialized once and offered to each client's own bounded queue. A client that doesn't keep up loses
+ * its oldest queued events (and is told how many with a {@code dropped} event) instead of slowing down the tracker or
+ * other clients.
+ * <p>
+ * Each connected client holds a network executor thread for as long as it stays connected (a platform thread before
+ * Java 21), so at most {@link #MAX_CLIENTS} can connect at once and the rest get a 503. A client that goes away
+ * without closing the connection is only noticed when heartbeats fail to write, which frees its slot within a couple
+ * of heartbeats. Browsers only get the feed on pages served from localhost: other origins are refused, so a web page
+ * can't read the feed or take up client slots.
+ */
+public class PaceFeedServer implements PaceManTrackerListener {
+    private static final int CLIENT_QUEUE_SIZE = 256;
+    static final int MAX_CLIENTS = 8;
+    private static final long HEARTBEAT_MILLIS = 5_000;
+    // Replayed to new clients so they start with the current state
+    private static final List<String> REPLAYED_EVENTS = Arrays.asList("header", "runProgress", "itemData");
+    private static final Pattern LOOPBACK_IPV4 = Pattern.compile("127\\.\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}");
+
+    private final int port;
+    private final List<Client> clients = new CopyOnWriteArrayList<>();
+    private final AtomicInteger connections = new AtomicInteger(0);
+    private final Map<String, String> lastFrames = new ConcurrentHashMap<>();
+    private HttpServer server = null;
+
+    public PaceFeedServer(int port) {
+        this.port = port;
+    }
+
+    public void start() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), this.port), 0);
+        this.server.createContext("/events", this::handle);
+        this.server.setExecutor(NetworkExecutor.get());
+        this.server.start();
+        PaceManTracker.log("Pace feed available at http://localhost:" + this.getPort() + "/events");
+    }
+
+    /**
+     * @return the port the feed listens on, which differs from the configured one if that was 0
+     */
+    int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    public void stop() {
+        this.clients.forEach(Client::close);
+        if (this.server != null) {
+            this.server.stop(0);
+        }
+    }
+
+    @Override
+    public void onHeaderChange(Path worldPath, String gameVersion, String category) {
+        JsonObject data = new JsonObject();
+        data.addProperty("worldPath", worldPath.toString());
+        data.addProperty("gameVersion", gameVersion);
+        data.addProperty("category", category);
+        this.publish("header", data);
+        this.lastFrames.remove("itemData");
+    }
+
+    @Override
+    public void onEvent(String name, long rta, long igt) {
+        JsonObject data = new JsonObject();
+        data.addProperty("name", name);
+        if (rta != -1) {
+            data.addProperty("rta", rta);
+            data.addProperty("igt", igt);
+        }
+        this.publish("event", data);
+    }
+
+    @Override
+    public void onRunProgress(PaceManTracker.RunProgress runProgress) {
+        JsonObject data = new JsonObject();
+        data.addProperty("progress", runProgress.name());
+        this.publish("runProgress", data);
+    }
+
+    @Override
+    public void onItemData(JsonObject itemData) {
+        this.publish("itemData", itemData);
+    }
+
+    @Override
+    public void onStateChange(Path instancePath, StateTracker.State from, StateTracker.State to) {
+        JsonObject data = new JsonObject();
+        data.addProperty("instance", instancePath.toString());
+        data.addProperty("from", from.name());
+        data.addProperty("to", to.name());
+        this.publish("state", data);
+    }
+
+    @Override
+    public void onDropped(int count) {
+        JsonObject data = new JsonObject();
+        data.addProperty("count", count);
+        this.publish("dropped", data);
+    }
+
+    /**
+     * Sends an event to every connected client. Never blocks.
+     */
+    void publish(String event, JsonObject data) {
+        String frame = "event: " + event + "\ndata: " + data + "\n\n";
+        if (REPLAYED_EVENTS.contains(event)) {
+            this.lastFrames.put(event, frame);
+        }
+        for (Client client : this.clients) {
+            client.offer(frame);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(405, -1);
+            exchange.close();
+            return;
+        }
+        // Browsers send an Origin for cross-origin requests, other tools usually don't send one at all
+        String origin = exchange.getRequestHeaders().getFirst("Origin");
+        if (origin != null && !PaceFeedServer.isLocalOrigin(origin)) {
+            PaceManTracker.logDebug(() -> "Refused pace feed client from origin " + origin);
+            exchange.sendResponseHeaders(403, -1);
+            exchange.close();
+            return;
+        }
+        if (this.connections.incrementAndGet() > MAX_CLIENTS) {
+            this.connections.decrementAndGet();
+            PaceManTracker.logDebug("Refused pace feed client, already " + MAX_CLIENTS + " connected");
+            exchange.getResponseHeaders().set("Retry-After", "10");
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+            return;
+        }
+        try {
+            this.serve(exchange, origin);
+        } finally {
+            this.connections.decrementAndGet();
+        }
+    }
+
+    private void serve(HttpExchange exchange, String origin) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        if (origin != null) {
+            exchange.getResponseHeaders().set("Access-Control-Allow-Origin", origin);
+            exchange.getResponseHeaders().set("Vary", "Origin");
+        }
+        exchange.sendResponseHeaders(200, 0);
+
+        Client client = new Client();
+        for (String event : REPLAYED_EVENTS) {
+            String frame = this.lastFrames.get(event);
+            if (frame != null) {
+                client.offer(frame);
+            }
+        }
+        this.clients.add(client);
+        PaceManTracker.logDebug(() -> "Pace feed client connected, " + this.clients.size() + " connected");
+        try (OutputStream out = exchange.getResponseBody()) {
+            client.writeUntilClosed(out);
+        } catch (IOException e) {
+            // Client disconnected
+        } catch (Exception e) {
+            PaceManTracker.logDebug(() -> "Pace feed client failed: " + ExceptionUtil.toDetailedString(e));
+        } finally {
+            this.clients.remove(client);
+            exchange.close();
+            PaceManTracker.logDebug(() -> "Pace feed client disconnected, " + this.clients.size() + " connected");
+        }
+    }
+
+    /**
+     * @return true for http(s) pages served from this machine, never for "null" (sandboxed frames and local files)
+     */
+    static boolean isLocalOrigin(String origin) {
+        URI uri;
+        try {
+            uri = new URI(origin);
+        } catch (URISyntaxException e) {
+            return false;
+        }
+        String host = uri.getHost();
+        if (host == null || !("http".equals(uri.getScheme()) || "https".equals(uri.getScheme()))) {
+            return false;
+        }
+        return host.equalsIgnoreCase("localhost") || host.equals("[::1]") || LOOPBACK_IPV4.matcher(host).matches();
+    }
+
+    private static class Client {
+        private static final String CLOSE = "";
+
+        private final ArrayBlockingQueue<String> queue = new ArrayBlockingQueue<>(CLIENT_QUEUE_SIZE);
+        private final AtomicInteger dropped = new AtomicInteger(0);
+
+        private void offer(String frame) {
+            while (!this.queue.offer(frame)) {
+                if (this.queue.poll() != null) {
+                    this.dropped.incrementAndGet();
+                }
+            }
+        }
+
+        private void close() {
+            this.queue.clear();
+            this.offer(CLOSE);
+        }
+
+        private void writeDropped(OutputStream out) throws IOException {
+            int droppedCount = this.dropped.getAndSet(0);
+            if (droppedCount > 0) {
+                out.write(("event: dropped\ndata: {\"count\":" + droppedCount + "}\n\n").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        private void writeUntilClosed(OutputStream out) throws IOException, InterruptedException {
+            // Tells EventSource clients to wait a bit before reconnecting
+            out.write("retry: 2000\n\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            while (true) {
+                String frame = this.queue.poll(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+                if (frame == CLOSE) {
+                    return;
+                }
+                this.writeDropped(out);
+                // A comment line keeps idle connections open and notices disconnected clients
+                out.write((frame == null ? ":\n\n" : frame).getBytes(StandardCharsets.UTF_8));
+                // Send everything already queued in one flush, events can be dropped while a write blocks
+                while ((frame = this.queue.poll()) != null && frame != CLOSE) {
+                    this.writeDropped(out);
+                    out.write(frame.getBytes(StandardCharsets.UTF_8));
+                }
+                out.flush();
+                if (frame == CLOSE) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -1,28 +1,43 @@
 package gg.paceman.tracker;
 
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonWriter;
+import gg.paceman.tracker.util.CircuitBreaker;
+import gg.paceman.tracker.util.EventBuffer;
 import gg.paceman.tracker.util.ExceptionUtil;
+import gg.paceman.tracker.util.LogQueue;
+import gg.paceman.tracker.util.NetworkExecutor;
 import gg.paceman.tracker.util.PostUtil;
-import gg.paceman.tracker.util.SleepUtil;
 import gg.paceman.tracker.util.VersionUtil;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -31,7 +46,9 @@ import java.util.regex.Pattern;
  */
 public class PaceManTracker {
     public static String VERSION = "Unknown"; // To be set dependent on launch method
-    private static final PaceManTracker INSTANCE = new PaceManTracker();
+    // The default context's, see TrackerContext
+    public static final String PACEMANGG_URL = TrackerContext.getDefault().getUrl();
+    private static final PaceManTracker INSTANCE = new PaceManTracker(TrackerPaths.getDefault());
 
     // If any end events are reached and no events have been sent for the current run, then prevent sending anything.
     // If events have already been sent for this run, then send the end event and then send no more events
@@ -55,6 +72,10 @@ public class PaceManTracker {
 
     private static final long RUN_TOO_LONG_MILLIS = 3_600_000; // 1 hour
     private static final long EVENT_RECENT_ENOUGH_MILLIS = 60_000; // 1 minute
+    private static final long CHECKPOINT_INTERVAL_MILLIS = 10_000; // 10 seconds
+    private static final long SHUTDOWN_DEADLINE_MILLIS = 5_000;
+    private static final long SHUTDOWN_TICK_WAIT_MILLIS = 1_500;
+    private static final long SHUTDOWN_CANCEL_TIMEOUT_MILLIS = 2_000;
 
     public static final Queue<Runnable> MAIN_THREAD_TODO = new ConcurrentLinkedQueue<>(); // wtf did I want this for?
 
@@ -62,13 +83,30 @@ public class PaceManTracker {
     public static Consumer<String> debugConsumer = System.out::println;
     public static Consumer<String> errorConsumer = System.out::println;
     public static Consumer<String> warningConsumer = System.out::println;
+    // Debug messages are only built and queued while this is true. Follows showDebug in the options, the Julti and
+    // Jingle plugins replace it with the host's own debug setting.
+    public static BooleanSupplier debugEnabled = () -> {
+        PaceManTrackerOptions options = PaceManTrackerOptions.getInstance();
+        return options != null && options.showDebug;
+    };
+
+    // Same output as JsonElement.toString()
+    private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+    private static final LogQueue LOG_QUEUE = new LogQueue(1024, m -> warningConsumer.accept(m));
 
     public static Runnable jingleQABRefresh = () -> {
     };
 
-    public static final String PACEMANGG_EVENT_ENDPOINT = "https://paceman.gg/api/sendevent";
-    private static final String PACEMANGG_TEST_ENDPOINT = "https://paceman.gg/api/test";
-    private static final int MIN_DENY_CODE = 400;
+    // What to do when the tracker crashes while running standalone, the GUI launcher replaces this with a crash dialog
+    public static BiConsumer<Throwable, String> crashHandler = (t, message) -> {
+        PaceManTracker.logError(message + "\n" + ExceptionUtil.toDetailedString(t));
+        PaceManTracker.flushLogs();
+        System.exit(1);
+    };
+
+    public static final String PACEMANGG_EVENT_ENDPOINT = TrackerContext.getDefault().getEventEndpoint();
+    private static final long MIN_RETRY_DELAY_MILLIS = 5000;
+    private static final long MAX_RETRY_DELAY_MILLIS = 30_000;
 
     static {
         START_EVENTS_MAP.put(8, new HashSet<>(Arrays.asList("rsg.enter_nether", "rsg.trade"))); // 1.8
@@ -76,133 +114,117 @@ public class PaceManTracker {
         START_EVENTS_MAP.put(15, new HashSet<>(Arrays.asList("rsg.enter_nether", "rsg.trade", "rsg.obtain_gold_block"))); // 1.15
     }
 
-    private final EventTracker eventTracker = new EventTracker(Paths.get(System.getProperty("user.home")).resolve("speedrunigt").resolve("latest_world.json").toAbsolutePath());
+    private final TrackerPaths paths;
+    private final TrackerContext context;
+    private final EventTracker eventTracker;
     private final ItemTracker itemTracker = new ItemTracker();
-    private final StateTracker stateTracker = new StateTracker();
-    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private final StateTracker stateTracker = new StateTracker(this);
+    private final AtumSettingsValidator atumSettingsValidator = new AtumSettingsValidator();
+    private final RunHistory runHistory;
+    private final ResetAnalytics resetAnalytics;
+    // Named once through the factory, so ticks don't have to rename the thread every time they run
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "paceman-tracker"));
+    private final Hibernation hibernation = new Hibernation(this::pauseTicking, this::resumeTicking, this::getFoldersToWatch);
+    private ScheduledFuture<?> tickFuture = null;
     private boolean asPlugin;
+    // Set first thing in stop(), a tick still running then must not send or checkpoint anything more
+    private volatile boolean stopping = false;
 
-    private String headerToSend = null;
+    private JsonObject headerToSend = null;
+    private boolean isRandomSpeedrunWorld = false;
+    private String warnedSRIGTVersion = null;
     private boolean runOnPaceMan = false;
+    // Set once any of the current run got onto PaceMan.gg, sent events are no longer in eventsToSend after that
+    private boolean runSent = false;
     private RunProgress runProgress = RunProgress.NONE;
-    private final List<String> eventsToSend = new ArrayList<>();
+    private final EventBuffer eventsToSend = new EventBuffer();
     private String worldUniquifier = "";
+    private CompletableFuture<Void> pendingCancel = CompletableFuture.completedFuture(null);
+    private TrackerCheckpoint.RunState runToResume = null;
+    // A failed dump is retried by a later tick once this time is reached (-1 when none is due), instead of holding up
+    // the tick thread while waiting
+    private long dumpRetryTime = -1;
+    private int dumpTries = 0;
+    // Set when the run's end event is still being sent, the run ends once it got through or was given up on
+    private boolean endRunAfterDump = false;
+    private final ListenerBus listeners = new ListenerBus();
+    private final EventSinks eventSinks;
+    // Kept to be removed again on stop, a method reference is a new object each time
+    private final BiConsumer<PaceManTrackerOptions, PaceManTrackerOptions> optionsListener = this::onOptionsChange;
+    private PaceFeedServer paceFeed = null;
+    private String lastItemData = null;
+    private long lastCheckpoint = 0;
+
+    /**
+     * A tracker that reads and writes all its files through the given paths, e.g. on an in-memory file system for
+     * tests and benchmarks, with the global options and circuit breakers. The launchers and plugins use
+     * {@link #getInstance()}.
+     */
+    public PaceManTracker(TrackerPaths paths) {
+        this(paths, TrackerContext.getDefault());
+    }
+
+    /**
+     * A tracker with its own options and server too, so that trackers on isolated contexts can run side by side in one
+     * JVM. Logging is still shared.
+     */
+    public PaceManTracker(TrackerPaths paths, TrackerContext context) {
+        this.paths = paths;
+        this.context = context;
+        this.eventSinks = new EventSinks(context, new HttpEventSink("PaceMan.gg", context));
+        this.eventTracker = new EventTracker(paths.getLatestWorldFile(), () -> this.hibernation.markActivity());
+        this.runHistory = new RunHistory(paths.getHistoryDir());
+        this.resetAnalytics = new ResetAnalytics(paths.getResetAnalyticsFile());
+    }
 
     public static PaceManTracker getInstance() {
         return INSTANCE;
     }
 
-    public static void log(String message) {
-        logConsumer.accept(message);
+    public TrackerPaths getPaths() {
+        return this.paths;
     }
 
-    public static void logDebug(String message) {
-        debugConsumer.accept(message);
+    public TrackerContext getContext() {
+        return this.context;
     }
 
-    public static void logError(String error) {
-        errorConsumer.accept(error);
+    public static void log(String message) {
+        LOG_QUEUE.submit(() -> logConsumer, message);
     }
 
-    public static void logWarning(String error) {
-        warningConsumer.accept(error);
+    public static boolean isDebugEnabled() {
+        return debugEnabled.getAsBoolean();
     }
 
-    private static boolean areAtumSettingsGood(Path worldPath) {
-        // .minecraft/saves/x -> .minecraft/saves -> .minecraft/config
-        Path configPath = worldPath.getParent().resolveSibling("config");
-        // .minecraft/config -> .minecraft/config/atum -> .minecraft/config/atum/atum.properties
-        Path oldAtumPropPath = configPath.resolve("atum").resolve("atum.properties");
-        // .minecraft/config -> .minecraft/config/mcsr -> .minecraft/config/mcsr/atum.json
-        Path newAtumJsonPath = configPath.resolve("mcsr").resolve("atum.json");
-
-        boolean oldExists = Files.exists(oldAtumPropPath);
-        boolean newExists = Files.exists(newAtumJsonPath);
-        if (!(oldExists || newExists)) {
-            PaceManTracker.logWarning("You must use the Atum mod " + oldAtumPropPath);
-            return false; // no settings exist
-        }
-
-        if (oldExists) {
-            try {
-                if (!PaceManTracker.areOldAtumSettingsGood(oldAtumPropPath)) {
-                    PaceManTracker.logWarning("Illegal Atum settings found in " + oldAtumPropPath);
-                    PaceManTracker.logWarning("Make sure your Atum settings are set to defaults with no set seed and above peaceful difficulty.");
-                    PaceManTracker.logWarning("If you are using the newer Atum with more world generation options, you should delete the old config file.");
-                    return false; // old settings exist and are bad
-                }
-            } catch (Exception e) {
-                PaceManTracker.logWarning("Invalid/Corrupted Atum settings found in " + oldAtumPropPath);
-                PaceManTracker.logWarning("If you are using the newer Atum with more world generation options, you should delete the old config file.");
-                return false;
-            }
-        }
-
-        if (newExists) {
-            try {
-                if (!PaceManTracker.areNewAtumSettingsGood(newAtumJsonPath)) {
-                    PaceManTracker.logWarning("Illegal Atum settings found in " + newAtumJsonPath);
-                    PaceManTracker.logWarning("Make sure your Atum settings are set to defaults with no set seed and above peaceful difficulty.");
-                    PaceManTracker.logWarning("If you are using the older Atum with less world generation options, you should delete the new config file.");
-                    return false; // new settings exist and are bad
-                }
-            } catch (Exception e) {
-                PaceManTracker.logWarning("Invalid/Corrupted Atum settings found in " + newAtumJsonPath);
-                PaceManTracker.logWarning("If you are using the older Atum with less world generation options, you should delete the new config file.");
-                return false; // new settings exist and are bad
-            }
+    public static void logDebug(String message) {
+        if (PaceManTracker.isDebugEnabled()) {
+            LOG_QUEUE.submit(() -> debugConsumer, message);
         }
-
-        return true; // settings exists, no settings are bad
     }
 
-    private static boolean areOldAtumSettingsGood(Path atumPropPath) throws IOException {
-        String atumPropText = new String(Files.readAllBytes(atumPropPath));
-        for (String line : atumPropText.split("\n")) {
-            String[] args = line.trim().split("=");
-            if (args.length < 2) {
-                continue;
-            }
-            if (args[0].trim().equals("generatorType") && !args[1].trim().equals("0")) {
-                return false;
-            }
-            if (args[0].trim().equals("bonusChest") && args[1].trim().equals("true")) {
-                return false;
-            }
+    /**
+     * Logs a debug message that is only built if debug output is enabled.
+     */
+    public static void logDebug(Supplier<String> message) {
+        if (PaceManTracker.isDebugEnabled()) {
+            LOG_QUEUE.submit(() -> debugConsumer, message.get());
         }
-        return true;
     }
 
-
-    private static boolean areNewAtumSettingsGood(Path atumJsonPath) throws IOException, JsonSyntaxException {
-        String atumJsonText = new String(Files.readAllBytes(atumJsonPath));
-        JsonObject json = new Gson().fromJson(atumJsonText, JsonObject.class);
-        return json.has("hasLegalSettings")
-                && json.get("hasLegalSettings").getAsBoolean()
-                && json.has("seed")
-                && json.get("seed").getAsString().isEmpty()
-                && !PaceManTracker.jsonHasPeacefulDifficulty(json);
+    public static void logError(String error) {
+        LOG_QUEUE.submit(() -> errorConsumer, error);
     }
 
-    private static boolean jsonHasPeacefulDifficulty(JsonObject json) {
-        if (json.has("difficulty") && json.get("difficulty").getAsString().equalsIgnoreCase("peaceful"))
-            return true;
-        return json.has("worldDifficulty") && json.get("worldDifficulty").getAsString().equalsIgnoreCase("peaceful");
+    public static void logWarning(String error) {
+        LOG_QUEUE.submit(() -> warningConsumer, error);
     }
 
-    private static PaceManResponse sendToPacemanGG(String toSend) {
-        PostUtil.PostResponse response;
-        try {
-            response = PostUtil.sendData(PACEMANGG_EVENT_ENDPOINT, toSend);
-        } catch (IOException e) {
-            return new PaceManResponse(e);
-        }
-
-        if (response.code < MIN_DENY_CODE) {
-            return new PaceManResponse(PaceManResponse.Type.SUCCESS, response.message);
-        } else {
-            return new PaceManResponse(PaceManResponse.Type.DENIED, response.message);
-        }
+    /**
+     * Waits a short time for queued log messages to reach their consumers, used before shutting down.
+     */
+    public static void flushLogs() {
+        LOG_QUEUE.flush(1000);
     }
 
     private static String sha256Hash(String input) {
@@ -226,60 +248,71 @@ public class PaceManTracker {
     public static PostUtil.PostResponse testAccessKey(String accessKey) {
         JsonObject testModelInput = new JsonObject();
         testModelInput.addProperty("accessKey", accessKey);
+        TrackerContext context = TrackerContext.getDefault();
         try {
-            return PostUtil.sendData(PACEMANGG_TEST_ENDPOINT, testModelInput.toString());
+            return PostUtil.sendData(context.getTestEndpoint(), testModelInput.toString(), context.getTestCircuitBreaker());
         } catch (IOException e) {
             return null;
         }
     }
 
-    private PaceManResponse sendEventsToPacemanGG() {
-        PaceManTrackerOptions options = PaceManTrackerOptions.getInstance();
-
-        JsonObject eventModelInput = new JsonObject();
-        eventModelInput.addProperty("accessKey", options.accessKey);
+    /**
+     * @param firstTry false for retries, which only go to the primary sink
+     */
+    private PaceManResponse sendEventsToPacemanGG(boolean firstTry) {
+        PaceManTrackerOptions options = this.context.getOptions();
 
+        JsonObject gameData = null;
         if (this.headerToSend != null) {
-            JsonObject latestWorldJson = new Gson().fromJson(this.headerToSend, JsonObject.class);
+            JsonObject latestWorldJson = this.headerToSend;
             JsonArray mods = latestWorldJson.getAsJsonArray("mods");
             String worldId = PaceManTracker.sha256Hash(latestWorldJson.get("world_path").getAsString() + this.worldUniquifier);
             String gameVersion = latestWorldJson.get("version").getAsString();
             String srIGTVersion = latestWorldJson.has("mod_version") ? (latestWorldJson.get("mod_version").getAsString().split("\\+")[0]) : "14.0";
             String category = latestWorldJson.get("category").getAsString();
 
-            JsonObject gameData = new JsonObject();
+            gameData = new JsonObject();
             gameData.addProperty("worldId", worldId);
             gameData.addProperty("gameVersion", gameVersion);
             gameData.addProperty("modVersion", srIGTVersion);
             gameData.addProperty("category", category);
             gameData.add("modList", mods);
             gameData.addProperty("trackerVersion", VERSION);
-
-            eventModelInput.add("gameData", gameData);
         }
 
-        JsonArray eventList = new JsonArray();
-        this.eventsToSend.forEach(eventList::add);
-        eventModelInput.add("eventList", eventList);
-
-        eventModelInput.addProperty("timeSinceRunStart", this.getTimeSinceRunStart());
+        Optional<JsonObject> itemData = this.constructItemData().filter(data -> !data.keySet().isEmpty());
 
-        Optional<JsonObject> itemDataOpt = this.constructItemData();
-        itemDataOpt.ifPresent(itemData -> {
-            if (!itemData.keySet().isEmpty()) {
-                eventModelInput.add("itemData", itemData);
+        // Written directly instead of building a JsonObject, so the events go from the buffer straight into the payload
+        StringWriter payload = new StringWriter();
+        try (JsonWriter writer = new JsonWriter(payload)) {
+            writer.beginObject();
+            writer.name("accessKey").value(options.accessKey);
+            if (gameData != null) {
+                writer.name("gameData");
+                GSON.toJson(gameData, writer);
             }
-        });
+            writer.name("eventList");
+            this.eventsToSend.writeJsonArray(writer);
+            writer.name("timeSinceRunStart").value(this.getTimeSinceRunStart());
+            if (itemData.isPresent()) {
+                writer.name("itemData");
+                GSON.toJson(itemData.get(), writer);
+            }
+            writer.endObject();
+        } catch (IOException e) {
+            // Can't happen when writing to a StringWriter
+            throw new RuntimeException(e);
+        }
 
-        String toSend = eventModelInput.toString();
-        PaceManTracker.logDebug("Sending exactly: " + toSend.replace(options.accessKey, "KEY_HIDDEN"));
+        String toSend = payload.toString();
+        PaceManTracker.logDebug(() -> "Sending exactly: " + toSend.replace(options.accessKey, "KEY_HIDDEN"));
 
-        PaceManResponse response = PaceManTracker.sendToPacemanGG(toSend);
+        PaceManResponse response = this.eventSinks.sendEvents(toSend, firstTry);
 
-        if (response.type == PaceManResponse.Type.SUCCESS && !this.runOnPaceMan && this.headerToSend != null) {
+        if (response.type == PaceManResponse.Type.SUCCESS && !this.runOnPaceMan && gameData != null && !this.stopping) {
             PaceManTracker.logDebug("Submitting reset stats");
             try {
-                this.stateTracker.dumpStats(eventModelInput);
+                this.stateTracker.dumpStats(gameData, options.accessKey);
             } catch (Throwable t) {
                 String detailedString = ExceptionUtil.toDetailedString(t);
                 PaceManTracker.logWarning("Error while submitting stats: " + detailedString);
@@ -299,19 +332,22 @@ public class PaceManTracker {
         return Optional.empty();
     }
 
-    private PaceManResponse sendCancelToPacemanGG() {
+    /**
+     * @param firstTry false for retries, which only go to the primary sink
+     */
+    private PaceManResponse sendCancelToPacemanGG(String accessKey, boolean firstTry) {
         JsonObject eventModelInput = new JsonObject();
         // Access Key
-        eventModelInput.addProperty("accessKey", PaceManTrackerOptions.getInstance().accessKey);
+        eventModelInput.addProperty("accessKey", accessKey);
         // Empty Event List
         eventModelInput.add("eventList", new JsonArray());
         // Kill flag
         eventModelInput.addProperty("kill", true);
-        return PaceManTracker.sendToPacemanGG(eventModelInput.toString());
+        return this.eventSinks.sendCancel(eventModelInput.toString(), firstTry);
     }
 
     public boolean shouldRun() {
-        PaceManTrackerOptions options = PaceManTrackerOptions.getInstance();
+        PaceManTrackerOptions options = this.context.getOptions();
         if (options.accessKey.isEmpty()) {
             return false;
         }
@@ -320,18 +356,115 @@ public class PaceManTracker {
 
     public void start(boolean asPlugin) {
         this.asPlugin = asPlugin;
+        PaceManTracker.logDebug(() -> "Using " + PostUtil.getClientName() + " for PaceMan.gg requests on " + (NetworkExecutor.usesVirtualThreads() ? "virtual" : "platform") + " threads");
+        if (!this.context.getUrl().equals("https://paceman.gg")) {
+            PaceManTracker.logWarning("Sending to " + this.context.getUrl() + " instead of PaceMan.gg");
+        }
+        int paceFeedPort = this.context.getOptions().paceFeedPort;
+        if (paceFeedPort > 0) {
+            PaceFeedServer paceFeed = new PaceFeedServer(paceFeedPort);
+            try {
+                paceFeed.start();
+                this.paceFeed = paceFeed;
+                this.addListener(paceFeed);
+            } catch (IOException e) {
+                PaceManTracker.logWarning("Could not start the pace feed on port " + paceFeedPort + ": " + e);
+            }
+        }
+        // -Dpaceman.sink.file=<path> and -Dpaceman.sink.url=<url> send a copy of everything to a JSON lines file or
+        // another server speaking the PaceMan.gg API, which gets -Dpaceman.sink.key as its access key
+        String sinkFile = System.getProperty("paceman.sink.file");
+        if (sinkFile != null && !sinkFile.isEmpty()) {
+            this.addEventSink(new JsonlFileEventSink(Paths.get(sinkFile).toAbsolutePath()));
+        }
+        String sinkUrl = System.getProperty("paceman.sink.url");
+        if (sinkUrl != null && !sinkUrl.isEmpty()) {
+            URI uri = null;
+            try {
+                uri = new URI(sinkUrl);
+            } catch (URISyntaxException ignored) {
+            }
+            if (uri == null || uri.getHost() == null || !("http".equals(uri.getScheme()) || "https".equals(uri.getScheme()))) {
+                PaceManTracker.logWarning("Not sending run data to paceman.sink.url, it is not an http(s) URL");
+            } else {
+                String sinkKey = System.getProperty("paceman.sink.key");
+                if (sinkKey == null || sinkKey.isEmpty()) {
+                    sinkKey = null;
+                    PaceManTracker.logWarning("No paceman.sink.key given, a server at paceman.sink.url that checks access keys will deny every send");
+                }
+                // Named without the path, query or user info of the URL, which may hold secrets
+                this.addEventSink(new HttpEventSink("server " + uri.getHost() + (uri.getPort() == -1 ? "" : ":" + uri.getPort()), sinkUrl, sinkKey));
+            }
+        }
+        this.context.addOptionsListener(this.optionsListener);
+        this.context.startWatchingOptions();
+        this.resetAnalytics.load();
+        TrackerCheckpoint checkpoint = TrackerCheckpoint.load(this.paths.getCheckpointFile());
+        if (checkpoint != null) {
+            if (checkpoint.eventLog != null) {
+                this.eventTracker.resumeFrom(checkpoint.eventLog);
+                this.runToResume = checkpoint.run;
+            }
+            this.stateTracker.restoreStats(checkpoint);
+            this.runHistory.restoreRun(checkpoint.historyRun);
+            if (checkpoint.cancelPending) {
+                // The last session stopped before it could cancel its run on PaceMan.gg
+                this.sendCancel();
+            }
+        }
+        this.resumeTicking();
+    }
+
+    private void onOptionsChange(PaceManTrackerOptions oldOptions, PaceManTrackerOptions newOptions) {
+        PaceManTracker.logDebug("Options changed");
+        if (oldOptions.paceFeedPort != newOptions.paceFeedPort) {
+            PaceManTracker.log("The pace feed port will change after restarting the tracker.");
+        }
+        // Options are read on the tick threads, make sure they are running to pick these up
+        this.hibernation.markActivity();
+        this.stateTracker.onOptionsChange();
+        PaceManTracker.jingleQABRefresh.run();
+    }
+
+    private synchronized void resumeTicking() {
+        if (this.tickFuture != null || this.executor.isShutdown()) {
+            return;
+        }
         // Run tick every 1 second
-        this.executor.scheduleAtFixedRate(this::tryTick, 0, 1, TimeUnit.SECONDS);
+        this.tickFuture = this.executor.scheduleAtFixedRate(this::tryTick, 0, 1, TimeUnit.SECONDS);
         this.stateTracker.start();
     }
 
+    private synchronized void pauseTicking() {
+        if (this.tickFuture != null) {
+            this.tickFuture.cancel(false);
+            this.tickFuture = null;
+        }
+        this.stateTracker.pause();
+    }
+
+    private List<Path> getFoldersToWatch() {
+        List<Path> folders = new ArrayList<>();
+        folders.add(this.eventTracker.getGlobalFile().getParent());
+        folders.addAll(this.stateTracker.getInstanceFolders());
+        return folders;
+    }
+
     private void tryTick() {
         try {
-            Thread.currentThread().setName("paceman-tracker");
             this.tick();
+            this.hibernation.checkIdle();
+            if (!this.stopping && System.currentTimeMillis() - this.lastCheckpoint >= CHECKPOINT_INTERVAL_MILLIS) {
+                this.saveCheckpoint(false, !this.pendingCancel.isDone(), true);
+            }
         } catch (Throwable t) {
+            if (this.stopping) {
+                // Interrupted by stop(), e.g. while waiting for a file, that's no crash
+                PaceManTracker.logDebug(() -> "Tracker thread stopped during a tick: " + t);
+                return;
+            }
             if (!this.asPlugin) {
-                ExceptionUtil.showExceptionAndExit(t, "PaceMan Tracker has crashed! Please report this bug to the developers.\n" + t);
+                crashHandler.accept(t, "PaceMan Tracker has crashed! Please report this bug to the developers.\n" + t);
             } else {
                 String detailedString = ExceptionUtil.toDetailedString(t);
                 PaceManTracker.logError("PaceMan Tracker has crashed! Please report this bug to the developers. " + detailedString);
@@ -342,12 +475,73 @@ public class PaceManTracker {
     }
 
     private void setRunProgress(RunProgress runProgress) {
-        PaceManTracker.logDebug("Run Progress set to " + runProgress);
+        PaceManTracker.logDebug(() -> "Run Progress set to " + runProgress);
         this.runProgress = runProgress;
+        this.listeners.fire(l -> l.onRunProgress(runProgress));
     }
 
-    private void tick() {
-        PaceManTrackerOptions options = PaceManTrackerOptions.getInstance();
+    /**
+     * Called by the state tracker's instances when their state changes, from the state tracker thread.
+     */
+    void onStateChange(Path instPath, StateTracker.State oldState, StateTracker.State newState) {
+        this.listeners.fire(l -> l.onStateChange(instPath, oldState, newState));
+    }
+
+    private void fireNewLines(List<String> lines) {
+        for (String line : lines) {
+            String[] parts = line.split(" ");
+            long rta = -1;
+            long igt = -1;
+            if (parts.length >= 3) {
+                try {
+                    rta = Long.parseLong(parts[1]);
+                    igt = Long.parseLong(parts[2]);
+                } catch (NumberFormatException ignored) {
+                }
+            }
+            if (parts[0].equals("rsg.enter_nether")) {
+                this.resetAnalytics.onNether(System.currentTimeMillis());
+            }
+            long finalRta = rta;
+            long finalIgt = igt;
+            this.listeners.fire(l -> l.onEvent(parts[0], finalRta, finalIgt));
+        }
+    }
+
+    /**
+     * Registers a listener for what the tracker sees. See {@link PaceManTrackerListener} for how it is called.
+     */
+    public void addListener(PaceManTrackerListener listener) {
+        this.listeners.add(listener);
+    }
+
+    public void removeListener(PaceManTrackerListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Also sends run data, cancels and reset stats to this sink, alongside PaceMan.gg. See {@link EventSink}.
+     */
+    public void addEventSink(EventSink sink) {
+        this.eventSinks.add(sink);
+    }
+
+    public void removeEventSink(EventSink sink) {
+        this.eventSinks.remove(sink);
+    }
+
+    /**
+     * Sends reset stats to every sink, returning the response of PaceMan.gg.
+     */
+    PaceManResponse sendStats(String payload) {
+        return this.eventSinks.sendStats(payload);
+    }
+
+    /**
+     * One pass of the tracker thread. Package-private so the dev source set's checks can drive single ticks.
+     */
+    void tick() {
+        PaceManTrackerOptions options = this.context.getOptions();
 
         while (!MAIN_THREAD_TODO.isEmpty()) {
             MAIN_THREAD_TODO.remove().run();
@@ -357,6 +551,10 @@ public class PaceManTracker {
             return;
         }
 
+        if (this.dumpRetryTime != -1 && System.currentTimeMillis() >= this.dumpRetryTime) {
+            this.dumpToPacemanGG();
+        }
+
         try {
             if (!this.eventTracker.update()) {
                 return;
@@ -370,38 +568,64 @@ public class PaceManTracker {
             if (this.runOnPaceMan) {
                 this.sendCancel();
             }
-            this.headerToSend = this.eventTracker.getCurrentHeader();
-            PaceManTracker.logDebug("New Header: " + this.headerToSend);
+            this.headerToSend = this.eventTracker.getCurrentHeaderJson();
+            PaceManTracker.logDebug(() -> "New Header: " + this.eventTracker.getCurrentHeader());
+            this.runHistory.startRun(this.headerToSend, this.eventTracker.wasResumed());
+            Path worldPath = this.eventTracker.getWorldPath();
+            String gameVersion = this.eventTracker.getGameVersion();
+            String category = this.eventTracker.getCategory();
+            this.listeners.fire(l -> l.onHeaderChange(worldPath, gameVersion, category));
+            this.lastItemData = null;
             this.eventsToSend.clear();
             this.runOnPaceMan = false;
+            this.runSent = false;
+            this.clearDumpRetry();
             this.setRunProgress(RunProgress.STARTING);
 
-            boolean isRandomSpeedrunWorld = RANDOM_WORLD_PATTERN.matcher(this.eventTracker.getCurrentWorldName()).matches();
-            if (!options.allowAnyWorldName && !isRandomSpeedrunWorld) {
+            // Only cheap checks here, most worlds are reset long before a start event. Atum settings are checked once
+            // a start event is reached.
+            this.isRandomSpeedrunWorld = RANDOM_WORLD_PATTERN.matcher(this.eventTracker.getCurrentWorldName()).matches();
+            if (!options.allowAnyWorldName && !this.isRandomSpeedrunWorld) {
                 PaceManTracker.logWarning("World name is not \"Random Speedrun #...\" so this run will not be on PaceMan.gg (this prevents practice maps and tourney worlds). If you want to play manually created worlds (New World) or you are Couriway then you can edit the allowAnyWorldName option in " + PaceManTrackerOptions.SAVE_PATH);
                 this.setRunProgress(RunProgress.ENDED);
             }
 
-            if (isRandomSpeedrunWorld && !PaceManTracker.areAtumSettingsGood(this.eventTracker.getWorldPath())) {
-                this.setRunProgress(RunProgress.ENDED);
+            // If 14.2 is a newer version than the current one, warn once per version instead of every reset
+            String srIGTVersion = this.eventTracker.getSRIGTVersion();
+            if (!srIGTVersion.equals(this.warnedSRIGTVersion) && VersionUtil.tryCompare("14.2", srIGTVersion, 0) > 0) {
+                this.warnedSRIGTVersion = srIGTVersion;
+                PaceManTracker.logWarning("Your SpeedRunIGT version is " + srIGTVersion + "! This means some tracking features will be missing, consider updating SpeedRunIGT to the latest version.");
             }
 
-            // If 14.2 is a newer version than the current one
-            if (VersionUtil.tryCompare("14.2", this.eventTracker.getSRIGTVersion(), 0) > 0) {
-                PaceManTracker.logWarning("Your SpeedRunIGT version is " + this.eventTracker.getSRIGTVersion() + "! This means some tracking features will be missing, consider updating SpeedRunIGT to the latest version.");
+            if (this.eventTracker.wasResumed() && this.runToResume != null) {
+                this.resumeRun(this.runToResume);
             }
+            this.runToResume = null;
         }
 
         if (this.eventTracker.getGameVersion().equals("1.16.1") || this.eventTracker.getGameVersion().equals("1.15.2")) {
             this.itemTracker.tryUpdate(this.eventTracker.getWorldPath());
         }
+        if (this.listeners.hasListeners()) {
+            this.constructItemData().filter(data -> !data.keySet().isEmpty()).ifPresent(itemData -> {
+                String itemDataString = itemData.toString();
+                if (!itemDataString.equals(this.lastItemData)) {
+                    this.lastItemData = itemDataString;
+                    this.listeners.fire(l -> l.onItemData(itemData));
+                }
+            });
+        }
 
         List<String> latestNewLines = this.eventTracker.getLatestNewLines();
         if (!latestNewLines.isEmpty()) {
-            PaceManTracker.logDebug("New Lines: " + latestNewLines);
+            PaceManTracker.logDebug(() -> "New Lines: " + latestNewLines);
+            this.runHistory.addEvents(latestNewLines, this.eventTracker.getRunStartTime());
+            this.fireNewLines(latestNewLines);
         }
 
-        if (this.getTimeSinceRunStart() > RUN_TOO_LONG_MILLIS) {
+        // The start time is only known once events.log was read to its end, which takes several ticks for a log larger
+        // than one read, so an unknown start doesn't count as too long ago
+        if (this.eventTracker.getRunStartTime() != -1 && this.getTimeSinceRunStart() > RUN_TOO_LONG_MILLIS) {
             PaceManTracker.logDebug("Run started too long ago, this run won't be sent to PaceMan.gg");
             this.endRun();
         }
@@ -431,16 +655,26 @@ public class PaceManTracker {
             String eventName = parts[0];
             if (END_EVENTS.contains(eventName)) {
                 if (this.runOnPaceMan) {
-                    // This run is already on PaceMan, so we need to dump this last end event before ending
-                    this.dumpToPacemanGG();
+                    // This run is already on PaceMan, so we need to dump this last end event before ending. The dump
+                    // ends the run, or a retry of it does, which also carries this event if one is due already.
+                    this.endRunAfterDump = true;
+                    if (this.dumpRetryTime == -1) {
+                        this.dumpToPacemanGG();
+                    }
                 } else {
                     this.eventsToSend.clear();
+                    this.endRun();
                 }
-                this.endRun();
                 shouldDump = false;
                 break;
             } else if (this.runProgress != RunProgress.PACING && startEvents.contains(eventName)) {
                 PaceManTracker.logDebug("PaceMan Tracker start event reached!");
+                if (this.isRandomSpeedrunWorld && !this.atumSettingsValidator.areSettingsGood(this.eventTracker.getWorldPath())) {
+                    this.eventsToSend.clear();
+                    this.endRun();
+                    shouldDump = false;
+                    break;
+                }
                 switch (parts.length) {
                     case 3: // should always be this
                         this.worldUniquifier = ";" + eventName + ";" + parts[1] + ";" + parts[2];
@@ -463,15 +697,82 @@ public class PaceManTracker {
                     shouldDump = true;
                     PaceManTracker.log("Run will now be sent to PaceMan.gg!");
                 } else {
-                    PaceManTracker.logDebug(String.format("Event %s happened %d milliseconds ago (not recent enough).", eventName, timeDiff));
+                    PaceManTracker.logDebug(() -> String.format("Event %s happened %d milliseconds ago (not recent enough).", eventName, timeDiff));
                 }
             }
         }
-        if (shouldDump) {
+        // While a retry is due, new events wait to be sent with it
+        if (shouldDump && this.dumpRetryTime == -1) {
             this.dumpToPacemanGG();
         }
     }
 
+    /**
+     * Continues a run from a checkpoint of the previous session. Only runs that never got onto PaceMan.gg are
+     * checkpointed (see {@link #saveCheckpoint(boolean, boolean, boolean)}), so the saved events are every event read
+     * so far, and the run is sent with them once a recent event comes in, just like when re-reading the whole
+     * events.log.
+     */
+    private void resumeRun(TrackerCheckpoint.RunState run) {
+        if (this.runProgress != RunProgress.ENDED) {
+            try {
+                this.setRunProgress(RunProgress.valueOf(run.runProgress));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                return;
+            }
+        }
+        this.worldUniquifier = run.worldUniquifier == null ? "" : run.worldUniquifier;
+        if (run.events != null) {
+            this.eventsToSend.addAll(run.events);
+        }
+    }
+
+    /**
+     * Writes a checkpoint of the current progress, from the tick thread or once it stopped.
+     *
+     * @param now           true to wait for the state tracker's stats and write it before returning, for shutting down
+     * @param cancelPending true if a cancel hasn't reached PaceMan.gg yet, so it is sent on the next start if this is
+     *                      the last checkpoint
+     * @param withRun       false to leave out the events.log progress and run, when the tick thread may still be
+     *                      changing them. The next session then reads the whole events.log again.
+     */
+    private void saveCheckpoint(boolean now, boolean cancelPending, boolean withRun) {
+        this.lastCheckpoint = System.currentTimeMillis();
+        this.resetAnalytics.saveIfChanged();
+        TrackerCheckpoint checkpoint = new TrackerCheckpoint();
+        checkpoint.cancelPending = cancelPending;
+        // Events already sent are gone from eventsToSend, so a run that got onto PaceMan.gg (and was cancelled when
+        // stopping) isn't checkpointed, the next session re-reads its whole events.log to send it in full again
+        if (withRun && !this.runSent) {
+            try {
+                checkpoint.eventLog = this.eventTracker.createCheckpoint();
+            } catch (IOException e) {
+                PaceManTracker.logDebug(() -> "Failed to checkpoint events.log progress: " + e);
+            }
+        }
+        if (checkpoint.eventLog != null) {
+            checkpoint.run = new TrackerCheckpoint.RunState();
+            checkpoint.run.runProgress = this.runProgress.name();
+            checkpoint.run.worldUniquifier = this.worldUniquifier;
+            checkpoint.run.events = this.eventsToSend.toList();
+        }
+        checkpoint.historyRun = this.runHistory.snapshotRun();
+        CompletableFuture<Map<String, TrackerCheckpoint.InstanceStats>> stats = this.stateTracker.snapshotStats();
+        if (now) {
+            try {
+                checkpoint.instances = stats.get(1, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                PaceManTracker.logDebug(() -> "Failed to checkpoint reset stats: " + e);
+            }
+            TrackerCheckpoint.save(this.paths.getCheckpointFile(), checkpoint);
+            return;
+        }
+        stats.thenAcceptAsync(instances -> {
+            checkpoint.instances = instances;
+            TrackerCheckpoint.save(this.paths.getCheckpointFile(), checkpoint);
+        }, this.executor);
+    }
+
     @Nullable
     private Set<String> getStartEvents() {
         Matcher matcher = GAME_VERSION_PATTERN.matcher(this.eventTracker.getGameVersion());
@@ -482,105 +783,316 @@ public class PaceManTracker {
         return START_EVENTS_MAP.getOrDefault(mcMajorRelease, DEFAULT_START_EVENTS);
     }
 
+    /**
+     * Tells PaceMan.gg to cancel the run on the network executor, so the tick thread can move on to the new run.
+     */
     private void sendCancel() {
         PaceManTracker.logDebug("Telling Paceman to cancel the run.");
+        String accessKey = this.context.getOptions().accessKey;
+        CompletableFuture<Void> previousCancel = this.pendingCancel;
+        this.pendingCancel = previousCancel.exceptionally(t -> null).thenRunAsync(() -> this.sendCancelWithRetries(accessKey), NetworkExecutor.get());
+        // If the response was a denial (400+ response code), it is probably because there is no run to cancel, so we have succeeded anyway.
+        this.runOnPaceMan = false;
+    }
+
+    /**
+     * Waits for any cancel still in progress, so that it can't reach PaceMan.gg after data for a newer run.
+     *
+     * @return false if interrupted by {@link #stop()}, nothing more should be sent then
+     */
+    private boolean awaitPendingCancel() {
+        try {
+            this.pendingCancel.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            PaceManTracker.logError("Error while cancelling the previous run: " + ExceptionUtil.toDetailedString(e.getCause()));
+        }
+        return true;
+    }
+
+    /**
+     * @return how long to wait before retrying a failed send: at least 5 seconds, longer while the event circuit
+     * breaker is open (up to 30 seconds, after which the retry is rejected without a request if it's still open)
+     */
+    private long getRetryDelayMillis() {
+        return Math.max(MIN_RETRY_DELAY_MILLIS, Math.min(MAX_RETRY_DELAY_MILLIS, this.context.getEventCircuitBreaker().getMillisUntilPermitted()));
+    }
+
+    /**
+     * @return the state of the default context's circuit breakers guarding PaceMan.gg requests, for the GUI
+     */
+    public static List<CircuitBreaker> getCircuitBreakers() {
+        return TrackerContext.getDefault().getCircuitBreakers();
+    }
+
+    private void sendCancelWithRetries(String accessKey) {
         int tries = 0;
         // While sending gives back an error
         while (PaceManResponse.Type.SEND_ERROR == (
-                this.sendCancelToPacemanGG()
+                this.sendCancelToPacemanGG(accessKey, tries == 0)
         ).type) {
-            if (++tries < 5) {
-                // Wait 5 seconds on failure before retry.
-                PaceManTracker.logError("Failed to tell PaceMan.gg to cancel the run, retrying in 5 seconds...");
-                SleepUtil.sleep(5000);
+            // Once stopping, the shutdown cancel or the next start takes over
+            if (++tries < 5 && !this.stopping) {
+                long delay = this.getRetryDelayMillis();
+                PaceManTracker.logError("Failed to tell PaceMan.gg to cancel the run, retrying in " + delay / 1000 + " seconds...");
+                try {
+                    TimeUnit.MILLISECONDS.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (this.stopping) {
+                    return;
+                }
             } else {
                 break;
             }
         }
-        // If the response was a denial (400+ response code), it is probably because there is no run to cancel, so we have succeeded anyway.
-        this.runOnPaceMan = false;
     }
 
     private long getTimeSinceRunStart() {
         return Math.abs(System.currentTimeMillis() - this.eventTracker.getRunStartTime());
     }
 
+    /**
+     * Sends the events so far. A send that gives back an error is tried again by a later tick, up to 5 tries, so the
+     * tick thread doesn't sit waiting for PaceMan.gg to come back.
+     */
     private void dumpToPacemanGG() {
+        if (!this.awaitPendingCancel() || this.stopping) {
+            return;
+        }
         PaceManTracker.logDebug("Dumping to paceman");
-        PaceManResponse response;
-        int tries = 0;
-        // While sending gives back an error
-        while (PaceManResponse.Type.SEND_ERROR == (response = this.sendEventsToPacemanGG()).type) {
-            if (++tries < 5) {
-                // Wait 5 seconds on failure before retry.
-                PaceManTracker.logError("Failed to send to PaceMan.gg, retrying in 5 seconds...");
-                SleepUtil.sleep(5000);
-            } else {
-                break;
-            }
+        PaceManResponse response = this.sendEventsToPacemanGG(this.dumpTries == 0);
+        if (this.stopping) {
+            // Whatever the result, stop() already decided on the cancel and checkpoint without it
+            return;
         }
+        if (response.type == PaceManResponse.Type.SEND_ERROR && ++this.dumpTries < 5) {
+            long delay = this.getRetryDelayMillis();
+            PaceManTracker.logError("Failed to send to PaceMan.gg, retrying in " + delay / 1000 + " seconds...");
+            this.dumpRetryTime = System.currentTimeMillis() + delay;
+            return;
+        }
+        this.dumpRetryTime = -1;
+        this.dumpTries = 0;
         if (response.type == PaceManResponse.Type.DENIED) {
             // Deny response = cancel the run
             PaceManTracker.logError("PaceMan.gg denied run data, no more data will be sent for this run.");
-            PaceManTracker.logError("Deny message: " + response.message.replace(PaceManTrackerOptions.getInstance().accessKey, "KEY_HIDDEN"));
+            PaceManTracker.logError("Deny message: " + response.message.replace(this.context.getOptions().accessKey, "KEY_HIDDEN"));
             this.endRun();
         } else if (response.type == PaceManResponse.Type.SEND_ERROR) {
             PaceManTracker.logError("Failed to send to PaceMan.gg after a couple tries, no more data will be sent for this run.");
-            PaceManTracker.logError("Error message: " + response.message.replace(PaceManTrackerOptions.getInstance().accessKey, "KEY_HIDDEN"));
+            PaceManTracker.logError("Error message: " + response.message.replace(this.context.getOptions().accessKey, "KEY_HIDDEN"));
             this.endRun();
         } else {
             PaceManTracker.logDebug("Successfully sent to PaceMan.gg");
             this.headerToSend = null;
             this.eventsToSend.clear();
             this.runOnPaceMan = true;
+            this.runSent = true;
+        }
+        PaceManResponse.Type result = response.type;
+        String message = response.message == null ? "" : response.message.replace(this.context.getOptions().accessKey, "KEY_HIDDEN");
+        this.listeners.fire(l -> l.onSendResult(result, message));
+        if (this.endRunAfterDump) {
+            this.endRun();
         }
     }
 
+    private void clearDumpRetry() {
+        this.dumpRetryTime = -1;
+        this.dumpTries = 0;
+        this.endRunAfterDump = false;
+    }
+
     public Path getWorldPath() {
         return this.eventTracker.getWorldPath();
     }
 
+    public StateTracker getStateTracker() {
+        return this.stateTracker;
+    }
+
+    public ResetAnalytics getResetAnalytics() {
+        return this.resetAnalytics;
+    }
+
+    public RunHistory getRunHistory() {
+        return this.runHistory;
+    }
+
+    public Hibernation getHibernation() {
+        return this.hibernation;
+    }
+
     private void endRun() {
         this.setRunProgress(RunProgress.ENDED);
+        this.eventsToSend.clear();
         this.runOnPaceMan = false;
+        this.clearDumpRetry();
     }
 
+    /**
+     * Stops every part of the tracker in parallel, within {@link #SHUTDOWN_DEADLINE_MILLIS} overall so that closing
+     * the jar or a Julti/Jingle shutdown isn't held up by a slow network or disk. A run still on PaceMan.gg gets a
+     * single cancel attempt, if that doesn't get through in time the cancel is recorded in the checkpoint and sent on
+     * the next start.
+     */
     public void stop() {
+        long start = System.currentTimeMillis();
+        long deadline = start + SHUTDOWN_DEADLINE_MILLIS;
+
+        // The tick thread should be done before its state is checkpointed, but don't let a stuck send eat the deadline.
+        // Called from the tick thread itself, it's stopped already as far as the checkpoint is concerned.
+        this.stopping = true;
+        this.executor.shutdownNow();
+        boolean tickStopped = true;
+        if (!Thread.currentThread().getName().equals("paceman-tracker")) {
+            try {
+                tickStopped = this.executor.awaitTermination(SHUTDOWN_TICK_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                tickStopped = false;
+                Thread.currentThread().interrupt();
+            }
+            if (!tickStopped) {
+                PaceManTracker.logWarning("Tracker thread did not stop in time, shutting down without checkpointing the run");
+            }
+        }
+        boolean checkpointRun = tickStopped;
+
+        PaceManTracker.log("Resets in the " + this.resetAnalytics.getSummary(ResetAnalytics.Window.HOUR));
+        PaceManTracker.log("Resets in the " + this.resetAnalytics.getSummary(ResetAnalytics.Window.DAY));
+        this.context.getCircuitBreakers().forEach(breaker -> PaceManTracker.logDebug(() -> "PaceMan.gg requests, " + breaker.describe()));
+
+        this.context.removeOptionsListener(this.optionsListener);
+        this.context.stopWatchingOptions();
+        ExecutorService shutdownExecutor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "paceman-shutdown");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Map<String, CompletableFuture<?>> tasks = new LinkedHashMap<>();
+
+        boolean cancelNeeded = this.runOnPaceMan || !this.pendingCancel.isDone();
+        CompletableFuture<Boolean> cancel = cancelNeeded ? this.sendShutdownCancel() : CompletableFuture.completedFuture(true);
+        this.runOnPaceMan = false;
+        tasks.put("cancel", cancel);
+
+        // Saved right away as if the cancel won't make it, then again once it did, so that being killed while waiting
+        // still leaves the cancel for the next start
+        CompletableFuture<Void> checkpoint = CompletableFuture.runAsync(() -> this.saveCheckpoint(true, cancelNeeded, checkpointRun), shutdownExecutor);
+        if (cancelNeeded) {
+            checkpoint = checkpoint.thenCombineAsync(cancel, (v, delivered) -> {
+                if (delivered) {
+                    this.saveCheckpoint(true, false, checkpointRun);
+                }
+                return null;
+            }, shutdownExecutor);
+        }
+        tasks.put("checkpoint", checkpoint);
+        // Stats are snapshotted on the state tracker thread, so it is stopped after the first save
+        tasks.put("state tracker", checkpoint.handleAsync((v, t) -> {
+            this.stateTracker.stop(Math.max(0, deadline - System.currentTimeMillis()));
+            return null;
+        }, shutdownExecutor));
+        tasks.put("run history", CompletableFuture.runAsync(() -> this.runHistory.stop(Math.max(0, deadline - System.currentTimeMillis())), shutdownExecutor));
+        if (this.paceFeed != null) {
+            tasks.put("pace feed", CompletableFuture.runAsync(this.paceFeed::stop, shutdownExecutor));
+        }
+        tasks.put("listeners", CompletableFuture.runAsync(this.listeners::stop, shutdownExecutor));
+        // After the cancel, so the secondary sinks get it too
+        tasks.put("event sinks", cancel.handleAsync((delivered, t) -> {
+            this.eventSinks.stop(Math.max(0, deadline - System.currentTimeMillis()));
+            return null;
+        }, shutdownExecutor));
+
         try {
-            // Wait for and shutdown executor
-            this.executor.shutdownNow();
-            this.executor.awaitTermination(10, TimeUnit.SECONDS);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+            CompletableFuture.allOf(tasks.values().toArray(new CompletableFuture<?>[0])).get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            tasks.forEach((name, task) -> {
+                if (!task.isDone()) {
+                    PaceManTracker.logWarning("Shutdown of " + name + " did not finish in time");
+                }
+            });
+        } catch (ExecutionException e) {
+            PaceManTracker.logError("Error while shutting down: " + ExceptionUtil.toDetailedString(e.getCause()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+        shutdownExecutor.shutdownNow();
+
+        long took = System.currentTimeMillis() - start;
+        PaceManTracker.logDebug(() -> "Shut down in " + took + "ms");
+        PaceManTracker.flushLogs();
+    }
 
-        // Do cleanup
-        if (this.runOnPaceMan) {
-            this.sendCancel();
+    /**
+     * A single attempt at cancelling the run, waiting at most {@link #SHUTDOWN_CANCEL_TIMEOUT_MILLIS}.
+     *
+     * @return a future of whether PaceMan.gg got the cancel (a denial means there was nothing to cancel)
+     */
+    private CompletableFuture<Boolean> sendShutdownCancel() {
+        PaceManTracker.logDebug("Telling Paceman to cancel the run before shutting down.");
+        String accessKey = this.context.getOptions().accessKey;
+        CompletableFuture<Boolean> cancel = new CompletableFuture<>();
+        try {
+            NetworkExecutor.get().execute(() -> cancel.complete(this.sendCancelToPacemanGG(accessKey, true).type != PaceManResponse.Type.SEND_ERROR));
+        } catch (RejectedExecutionException e) {
+            cancel.complete(false);
         }
-        this.stateTracker.stop();
+        return cancel.applyToEither(PaceManTracker.completeAfter(false, SHUTDOWN_CANCEL_TIMEOUT_MILLIS), delivered -> {
+            if (!delivered) {
+                PaceManTracker.logWarning("Could not tell PaceMan.gg to cancel the run, it will be cancelled on the next start.");
+            }
+            return delivered;
+        });
+    }
+
+    private static <T> CompletableFuture<T> completeAfter(T value, long millis) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Thread timer = new Thread(() -> {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException ignored) {
+            }
+            future.complete(value);
+        }, "paceman-shutdown-timer");
+        timer.setDaemon(true);
+        timer.start();
+        return future;
     }
 
-    private enum RunProgress {
+    public enum RunProgress {
         NONE, STARTING, PACING, ENDED
     }
 
     @SuppressWarnings("")
-    static class PaceManResponse {
+    public static class PaceManResponse {
         Type type;
         String message;
 
-        PaceManResponse(Type type, String message) {
+        public PaceManResponse(Type type, String message) {
             this.type = type;
             this.message = message;
         }
 
-        PaceManResponse(Throwable t) {
+        public PaceManResponse(Throwable t) {
             this.type = Type.SEND_ERROR;
             this.message = ExceptionUtil.toDetailedString(t);
         }
 
-        enum Type {
+        public Type getType() {
+            return this.type;
+        }
+
+        public String getMessage() {
+            return this.message;
+        }
+
+        public enum Type {
             SUCCESS, // < 400 response
             DENIED, // >= 400 response
             SEND_ERROR // error while trying to send
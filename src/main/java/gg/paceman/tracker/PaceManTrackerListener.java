@@ -0,0 +1,54 @@
+package gg.paceman.tracker;
+
+import com.google.gson.JsonObject;
+
+import java.nio.file.Path;
+
+/**
+ * Receives what the tracker sees, for Julti/Jingle plugins and other code running in the same JVM. Register with
+ * {@link PaceManTracker#addListener(PaceManTrackerListener)}.
+ * <p>
+ * Calls come from a thread owned by the listener's registration, in the order they happened. Each listener has its own
+ * bounded queue, so a slow listener never holds up the tracker or other listeners, it instead misses its oldest
+ * notifications and is told how many with {@link #onDropped(int)}.
+ */
+public interface PaceManTrackerListener {
+    /**
+     * A new world was loaded (latest_world.json changed).
+     */
+    default void onHeaderChange(Path worldPath, String gameVersion, String category) {
+    }
+
+    /**
+     * A new SpeedRunIGT event of the current world, RTA and IGT are -1 if the event line did not have them.
+     */
+    default void onEvent(String name, long rta, long igt) {
+    }
+
+    default void onRunProgress(PaceManTracker.RunProgress runProgress) {
+    }
+
+    /**
+     * The tracked item counts of the current run changed.
+     */
+    default void onItemData(JsonObject itemData) {
+    }
+
+    /**
+     * The result of sending the run to PaceMan.gg, after any retries.
+     */
+    default void onSendResult(PaceManTracker.PaceManResponse.Type result, String message) {
+    }
+
+    /**
+     * An instance's state changed, only while reset stats are tracked.
+     */
+    default void onStateChange(Path instancePath, StateTracker.State from, StateTracker.State to) {
+    }
+
+    /**
+     * This listener fell behind and the given amount of older notifications were skipped.
+     */
+    default void onDropped(int count) {
+    }
+}
@@ -6,40 +6,76 @@ import com.google.gson.JsonSyntaxException;
 import gg.paceman.tracker.util.ExceptionUtil;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
 
 /**
- * Handles the save options for the tracker
+ * Handles the save options for the tracker.
+ * <p>
+ * Options are immutable snapshots: {@link #getInstance()} is safe to call from any thread without locking, and a
+ * snapshot never changes once read. Changes go through {@link #update(UnaryOperator)}, and edits to options.json made
+ * while the tracker runs are picked up by {@link #startWatching()}. Either way, change listeners are told right away.
  */
 public class PaceManTrackerOptions {
     public static final Path OLD_SAVE_PATH = Paths.get(System.getProperty("user.home")).resolve(".PaceMan").resolve("options.json").toAbsolutePath();
     public static final Path SAVE_PATH = PaceManTrackerOptions.getPaceManDir().resolve("options.json").toAbsolutePath();
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
-    private static PaceManTrackerOptions instance;
+    private static final AtomicReference<PaceManTrackerOptions> INSTANCE = new AtomicReference<>();
+    private static final List<BiConsumer<PaceManTrackerOptions, PaceManTrackerOptions>> CHANGE_LISTENERS = new CopyOnWriteArrayList<>();
+    // Held while writing options.json and publishing, so a reload never sees a file older than the current options
+    private static final Object WRITE_LOCK = new Object();
+    private static Thread watchThread = null;
+    // Trackers that called startWatching() and haven't stopped watching yet
+    private static int watchers = 0;
+    private static String lastReloadError = null;
 
-    public String accessKey = "";
-    public boolean enabledForPlugin = false;
-    public boolean allowAnyWorldName = false;
-    public boolean resetStatsEnabled = true;
+    // Set in the constructors rather than initialized here, so that javac doesn't inline them as constants
+    public final String accessKey;
+    public final boolean enabledForPlugin;
+    public final boolean allowAnyWorldName;
+    public final boolean resetStatsEnabled;
+    public final int paceFeedPort; // 0 = disabled
+    public final boolean showDebug;
+
+    /**
+     * The defaults, also used by Gson for options missing from the file.
+     */
+    private PaceManTrackerOptions() {
+        this("", false, false, true, 0, false);
+    }
+
+    private PaceManTrackerOptions(String accessKey, boolean enabledForPlugin, boolean allowAnyWorldName, boolean resetStatsEnabled, int paceFeedPort, boolean showDebug) {
+        this.accessKey = accessKey;
+        this.enabledForPlugin = enabledForPlugin;
+        this.allowAnyWorldName = allowAnyWorldName;
+        this.resetStatsEnabled = resetStatsEnabled;
+        this.paceFeedPort = paceFeedPort;
+        this.showDebug = showDebug;
+    }
 
     /**
      * Load and return the options file
      */
     public static PaceManTrackerOptions load() throws IOException, JsonSyntaxException {
+        PaceManTrackerOptions options;
         if (Files.exists(SAVE_PATH)) {
-            instance = GSON.fromJson(new String(Files.readAllBytes(SAVE_PATH)), PaceManTrackerOptions.class);
+            options = PaceManTrackerOptions.read(SAVE_PATH);
         } else if (Files.exists(OLD_SAVE_PATH)) {
             PaceManTracker.logWarning("Loaded options from old location '" + OLD_SAVE_PATH + "'! It will now save to a new location: '" + SAVE_PATH + "'.");
-            instance = GSON.fromJson(new String(Files.readAllBytes(OLD_SAVE_PATH)), PaceManTrackerOptions.class);
+            options = PaceManTrackerOptions.read(OLD_SAVE_PATH);
         } else {
-            instance = new PaceManTrackerOptions();
+            options = new PaceManTrackerOptions();
         }
-        return instance;
+        PaceManTrackerOptions.publish(options);
+        return options;
     }
 
     public static PaceManTrackerOptions tryLoad() {
@@ -48,11 +84,139 @@ public class PaceManTrackerOptions {
         } catch (Exception e) {
             PaceManTracker.logError("Failed to load PaceMan Tracker options.json! Access key is now lost!\n" + ExceptionUtil.toDetailedString(e));
         }
-        return (instance = new PaceManTrackerOptions());
+        PaceManTrackerOptions options = new PaceManTrackerOptions();
+        PaceManTrackerOptions.publish(options);
+        return options;
+    }
+
+    private static PaceManTrackerOptions read(Path path) throws IOException, JsonSyntaxException {
+        PaceManTrackerOptions options = GSON.fromJson(new String(Files.readAllBytes(path), StandardCharsets.UTF_8), PaceManTrackerOptions.class);
+        if (options == null) {
+            throw new JsonSyntaxException("Empty options file");
+        }
+        return options;
     }
 
+    /**
+     * @return the options a new install starts with, e.g. for an isolated {@link TrackerContext}
+     */
+    public static PaceManTrackerOptions getDefaults() {
+        return new PaceManTrackerOptions();
+    }
+
+    /**
+     * @return the current options, never changes after being returned
+     */
     public static PaceManTrackerOptions getInstance() {
-        return instance;
+        return INSTANCE.get();
+    }
+
+    /**
+     * Applies a change to the current options, saves them and tells the change listeners.
+     *
+     * @param change returns the new options, e.g. {@code options -> options.withAccessKey(key)}
+     * @return the new options
+     */
+    public static PaceManTrackerOptions update(UnaryOperator<PaceManTrackerOptions> change) throws IOException {
+        synchronized (WRITE_LOCK) {
+            PaceManTrackerOptions options = change.apply(INSTANCE.get());
+            options.save();
+            PaceManTrackerOptions.publish(options);
+            return options;
+        }
+    }
+
+    /**
+     * Adds a listener called with the old and new options whenever they change, on the thread that changed them (the
+     * GUI, a plugin host or the options file watcher), so it should return quickly.
+     */
+    public static void addChangeListener(BiConsumer<PaceManTrackerOptions, PaceManTrackerOptions> listener) {
+        CHANGE_LISTENERS.add(listener);
+    }
+
+    public static void removeChangeListener(BiConsumer<PaceManTrackerOptions, PaceManTrackerOptions> listener) {
+        CHANGE_LISTENERS.remove(listener);
+    }
+
+    private static void publish(PaceManTrackerOptions options) {
+        PaceManTrackerOptions old = INSTANCE.getAndSet(options);
+        if (old == null || old.equals(options)) {
+            return;
+        }
+        for (BiConsumer<PaceManTrackerOptions, PaceManTrackerOptions> listener : CHANGE_LISTENERS) {
+            try {
+                listener.accept(old, options);
+            } catch (Throwable t) {
+                PaceManTracker.logError("Error in options change listener: " + ExceptionUtil.toDetailedString(t));
+            }
+        }
+    }
+
+    /**
+     * Starts reloading the options whenever options.json is edited. Every call needs its own {@link #stopWatching()},
+     * watching only stops once the last tracker watching has stopped.
+     */
+    public static synchronized void startWatching() {
+        watchers++;
+        if (watchThread != null) {
+            return;
+        }
+        watchThread = new Thread(PaceManTrackerOptions::watchLoop, "paceman-options-watch");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    public static synchronized void stopWatching() {
+        if (watchers == 0 || --watchers > 0) {
+            return;
+        }
+        if (watchThread != null) {
+            watchThread.interrupt();
+            watchThread = null;
+        }
+    }
+
+    private static void watchLoop() {
+        PaceManTrackerOptions.ensurePaceManDir();
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            SAVE_PATH.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.take();
+                boolean changed = key.pollEvents().stream().anyMatch(event -> SAVE_PATH.getFileName().equals(event.context()));
+                key.reset();
+                if (changed) {
+                    // Editors can write in several steps, give them a moment to finish
+                    Thread.sleep(100);
+                    PaceManTrackerOptions.reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+        } catch (IOException e) {
+            PaceManTracker.logWarning("Can't watch options.json for changes, edits will need a restart: " + e);
+        }
+    }
+
+    private static void reload() {
+        synchronized (WRITE_LOCK) {
+            PaceManTrackerOptions options;
+            try {
+                options = PaceManTrackerOptions.read(SAVE_PATH);
+            } catch (NoSuchFileException e) {
+                return;
+            } catch (IOException | JsonSyntaxException e) {
+                // One edit usually fires several watch events, only warn once
+                if (!String.valueOf(e.getMessage()).equals(lastReloadError)) {
+                    PaceManTracker.logWarning("Ignoring invalid options.json edit: " + e.getMessage());
+                }
+                lastReloadError = String.valueOf(e.getMessage());
+                return;
+            }
+            lastReloadError = null;
+            if (!options.equals(INSTANCE.get())) {
+                PaceManTracker.log("Reloaded options from " + SAVE_PATH);
+                PaceManTrackerOptions.publish(options);
+            }
+        }
     }
 
     public static void ensurePaceManDir() {
@@ -67,10 +231,56 @@ public class PaceManTrackerOptions {
         return Optional.ofNullable(System.getenv("XDG_CONFIG_HOME")).orElse(System.getProperty("user.home") + "/.config/");
     }
 
+    public PaceManTrackerOptions withAccessKey(String accessKey) {
+        return new PaceManTrackerOptions(accessKey, this.enabledForPlugin, this.allowAnyWorldName, this.resetStatsEnabled, this.paceFeedPort, this.showDebug);
+    }
+
+    public PaceManTrackerOptions withEnabledForPlugin(boolean enabledForPlugin) {
+        return new PaceManTrackerOptions(this.accessKey, enabledForPlugin, this.allowAnyWorldName, this.resetStatsEnabled, this.paceFeedPort, this.showDebug);
+    }
+
+    public PaceManTrackerOptions withAllowAnyWorldName(boolean allowAnyWorldName) {
+        return new PaceManTrackerOptions(this.accessKey, this.enabledForPlugin, allowAnyWorldName, this.resetStatsEnabled, this.paceFeedPort, this.showDebug);
+    }
+
+    public PaceManTrackerOptions withResetStatsEnabled(boolean resetStatsEnabled) {
+        return new PaceManTrackerOptions(this.accessKey, this.enabledForPlugin, this.allowAnyWorldName, resetStatsEnabled, this.paceFeedPort, this.showDebug);
+    }
+
+    public PaceManTrackerOptions withPaceFeedPort(int paceFeedPort) {
+        return new PaceManTrackerOptions(this.accessKey, this.enabledForPlugin, this.allowAnyWorldName, this.resetStatsEnabled, paceFeedPort, this.showDebug);
+    }
+
+    public PaceManTrackerOptions withShowDebug(boolean showDebug) {
+        return new PaceManTrackerOptions(this.accessKey, this.enabledForPlugin, this.allowAnyWorldName, this.resetStatsEnabled, this.paceFeedPort, showDebug);
+    }
+
+    /**
+     * Writes these options to options.json, replacing it atomically so a crash can't leave a half written file.
+     */
     public void save() throws IOException {
-        PaceManTrackerOptions.ensurePaceManDir();
-        FileWriter writer = new FileWriter(SAVE_PATH.toFile());
-        GSON.toJson(this, writer);
-        writer.close();
+        synchronized (WRITE_LOCK) {
+            PaceManTrackerOptions.ensurePaceManDir();
+            Path tmp = SAVE_PATH.resolveSibling(SAVE_PATH.getFileName() + ".tmp");
+            Files.write(tmp, GSON.toJson(this).getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, SAVE_PATH, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || this.getClass() != o.getClass()) {
+            return false;
+        }
+        PaceManTrackerOptions that = (PaceManTrackerOptions) o;
+        return this.enabledForPlugin == that.enabledForPlugin && this.allowAnyWorldName == that.allowAnyWorldName && this.resetStatsEnabled == that.resetStatsEnabled && this.paceFeedPort == that.paceFeedPort && this.showDebug == that.showDebug && Objects.equals(this.accessKey, that.accessKey);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.accessKey, this.enabledForPlugin, this.allowAnyWorldName, this.resetStatsEnabled, this.paceFeedPort, this.showDebug);
     }
 }
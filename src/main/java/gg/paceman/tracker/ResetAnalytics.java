@@ -0,0 +1,271 @@
+package gg.paceman.tracker;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local reset efficiency stats (resets and nethers per hour, wall time per reset and play time per seed) over the last
+ * hour and day, kept across sessions.
+ * <p>
+ * Everything is counted into one-minute buckets of a ring buffer covering a day, with a running total per window, so
+ * recording is O(1) and so is reading a window. When the clock moves to a new minute, the buckets that leave each
+ * window are subtracted from its total. The buckets are saved to a small binary file in the PaceMan dir, only storing
+ * minutes that had activity.
+ */
+public class ResetAnalytics {
+    private static final int MAGIC = 0x504d5241; // PMRA
+    private static final short FORMAT_VERSION = 1;
+    private static final int BUCKETS = 24 * 60;
+
+    private static final int RESETS = 0;
+    private static final int NETHERS = 1;
+    private static final int SEEDS = 2;
+    private static final int WALL_MILLIS = 3;
+    private static final int PLAY_MILLIS = 4;
+    private static final int FIELDS = 5;
+
+    private final Path savePath;
+    private final int[][] buckets = new int[BUCKETS][FIELDS];
+    private final long[][] totals = new long[Window.values().length][FIELDS];
+    private long currentMinute = -1;
+    private long firstMinute = -1;
+    private boolean changed = false;
+
+    public ResetAnalytics(Path savePath) {
+        this.savePath = savePath;
+    }
+
+    public synchronized void onResets(int count, long now) {
+        this.add(RESETS, count, now);
+    }
+
+    public synchronized void onNether(long now) {
+        this.add(NETHERS, 1, now);
+    }
+
+    public synchronized void onSeedPlayed(long now) {
+        this.add(SEEDS, 1, now);
+    }
+
+    public synchronized void onWallTime(long millis, long now) {
+        this.add(WALL_MILLIS, millis, now);
+    }
+
+    public synchronized void onPlayTime(long millis, long now) {
+        this.add(PLAY_MILLIS, millis, now);
+    }
+
+    public synchronized Summary getSummary(Window window) {
+        long now = System.currentTimeMillis();
+        this.advanceTo(TimeUnit.MILLISECONDS.toMinutes(now));
+        long[] total = this.totals[window.ordinal()];
+        // Only count the time since tracking started, a fresh install shouldn't show a day's worth of dilution
+        long minutes = this.firstMinute == -1 ? 0 : Math.min(window.minutes, this.currentMinute - this.firstMinute + 1);
+        return new Summary(
+                window,
+                minutes,
+                total[RESETS],
+                total[NETHERS],
+                minutes == 0 ? 0 : total[RESETS] * 60.0 / minutes,
+                minutes == 0 ? 0 : total[NETHERS] * 60.0 / minutes,
+                total[RESETS] == 0 ? 0 : total[WALL_MILLIS] / (double) total[RESETS],
+                total[SEEDS] == 0 ? 0 : total[PLAY_MILLIS] / (double) total[SEEDS]
+        );
+    }
+
+    private void add(int field, long amount, long now) {
+        if (amount <= 0) {
+            return;
+        }
+        long minute = TimeUnit.MILLISECONDS.toMinutes(now);
+        this.advanceTo(minute);
+        if (this.firstMinute == -1) {
+            this.firstMinute = this.currentMinute;
+        }
+        int[] bucket = this.buckets[(int) (this.currentMinute % BUCKETS)];
+        bucket[field] = (int) Math.min(Integer.MAX_VALUE, bucket[field] + amount);
+        for (long[] total : this.totals) {
+            total[field] += amount;
+        }
+        this.changed = true;
+    }
+
+    /**
+     * Moves the ring buffer forward to the given minute, removing the minutes leaving each window from its total.
+     */
+    private void advanceTo(long minute) {
+        if (this.currentMinute == -1) {
+            this.currentMinute = minute;
+            return;
+        }
+        if (minute <= this.currentMinute) {
+            // Clock went backwards, keep counting into the current minute
+            return;
+        }
+        if (minute - this.currentMinute >= BUCKETS) {
+            // Everything expired
+            for (int[] bucket : this.buckets) {
+                Arrays.fill(bucket, 0);
+            }
+            for (long[] total : this.totals) {
+                Arrays.fill(total, 0);
+            }
+            this.currentMinute = minute;
+            return;
+        }
+        for (long m = this.currentMinute + 1; m <= minute; m++) {
+            for (Window window : Window.values()) {
+                int[] leaving = this.buckets[(int) ((m - window.minutes) % BUCKETS)];
+                long[] total = this.totals[window.ordinal()];
+                for (int field = 0; field < FIELDS; field++) {
+                    total[field] -= leaving[field];
+                }
+            }
+            Arrays.fill(this.buckets[(int) (m % BUCKETS)], 0);
+        }
+        this.currentMinute = minute;
+    }
+
+    public synchronized void load() {
+        if (!Files.exists(this.savePath)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.savePath)))) {
+            if (in.readInt() != MAGIC || in.readShort() != FORMAT_VERSION) {
+                PaceManTracker.logWarning("Ignoring reset analytics file with an unknown format: " + this.savePath);
+                return;
+            }
+            long savedMinute = in.readLong();
+            long firstMinute = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long minute = savedMinute - in.readUnsignedShort();
+                int[] bucket = this.buckets[(int) (minute % BUCKETS)];
+                for (int field = 0; field < FIELDS; field++) {
+                    bucket[field] = in.readInt();
+                }
+                for (Window window : Window.values()) {
+                    if (savedMinute - minute < window.minutes) {
+                        for (int field = 0; field < FIELDS; field++) {
+                            this.totals[window.ordinal()][field] += bucket[field];
+                        }
+                    }
+                }
+            }
+            this.currentMinute = savedMinute;
+            this.firstMinute = firstMinute;
+            this.advanceTo(TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis()));
+        } catch (IOException | RuntimeException e) {
+            PaceManTracker.logWarning("Failed to load reset analytics, starting fresh: " + e);
+            this.clear();
+        }
+    }
+
+    public synchronized void saveIfChanged() {
+        if (!this.changed || this.currentMinute == -1) {
+            return;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeShort(FORMAT_VERSION);
+            out.writeLong(this.currentMinute);
+            out.writeLong(this.firstMinute);
+            int count = 0;
+            for (int[] bucket : this.buckets) {
+                if (!isEmpty(bucket)) {
+                    count++;
+                }
+            }
+            out.writeInt(count);
+            for (int age = 0; age < BUCKETS; age++) {
+                long minute = this.currentMinute - age;
+                if (minute < 0) {
+                    break;
+                }
+                int[] bucket = this.buckets[(int) (minute % BUCKETS)];
+                if (isEmpty(bucket)) {
+                    continue;
+                }
+                out.writeShort(age);
+                for (int value : bucket) {
+                    out.writeInt(value);
+                }
+            }
+            out.flush();
+            Files.createDirectories(this.savePath.getParent());
+            Path tmp = this.savePath.resolveSibling(this.savePath.getFileName() + ".tmp");
+            Files.write(tmp, bytes.toByteArray());
+            Files.move(tmp, this.savePath, StandardCopyOption.REPLACE_EXISTING);
+            this.changed = false;
+        } catch (IOException e) {
+            PaceManTracker.logDebug(() -> "Failed to save reset analytics: " + e);
+        }
+    }
+
+    private void clear() {
+        for (int[] bucket : this.buckets) {
+            Arrays.fill(bucket, 0);
+        }
+        for (long[] total : this.totals) {
+            Arrays.fill(total, 0);
+        }
+        this.currentMinute = -1;
+        this.firstMinute = -1;
+    }
+
+    private static boolean isEmpty(int[] bucket) {
+        for (int value : bucket) {
+            if (value != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public enum Window {
+        HOUR(60), DAY(BUCKETS);
+
+        private final int minutes;
+
+        Window(int minutes) {
+            this.minutes = minutes;
+        }
+    }
+
+    /**
+     * Reset efficiency over a window. Rates are per hour over the part of the window that was tracked, times are
+     * averages in milliseconds.
+     */
+    public static class Summary {
+        public final Window window;
+        public final long trackedMinutes;
+        public final long resets;
+        public final long nethers;
+        public final double resetsPerHour;
+        public final double nethersPerHour;
+        public final double wallMillisPerReset;
+        public final double playMillisPerSeed;
+
+        private Summary(Window window, long trackedMinutes, long resets, long nethers, double resetsPerHour, double nethersPerHour, double wallMillisPerReset, double playMillisPerSeed) {
+            this.window = window;
+            this.trackedMinutes = trackedMinutes;
+            this.resets = resets;
+            this.nethers = nethers;
+            this.resetsPerHour = resetsPerHour;
+            this.nethersPerHour = nethersPerHour;
+            this.wallMillisPerReset = wallMillisPerReset;
+            this.playMillisPerSeed = playMillisPerSeed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("last %s: %d resets (%.1f/h), %d nethers (%.2f/h), %.0fms wall per reset, %.0fms played per seed", this.window.name().toLowerCase(), this.resets, this.resetsPerHour, this.nethers, this.nethersPerHour, this.wallMillisPerReset, this.playMillisPerSeed);
+        }
+    }
+}
@@ -0,0 +1,486 @@
+package gg.paceman.tracker;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import gg.paceman.tracker.util.ExceptionUtil;
+
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A local history of every run seen by the tracker, kept in the PaceMan dir so stats like split percentiles can be
+ * answered without reading through the saves folders.
+ * <ul>
+ *     <li>{@code runs.jsonl}: one JSON record per run with its world, version, category, start time and typed events.</li>
+ *     <li>{@code event-types.txt}: the event type dictionary, the line number of a type is its id.</li>
+ *     <li>{@code splits.idx}: fixed size binary records (type id, run number, run start, RTA, IGT) for every event,
+ *     loaded into per event type arrays on the first query.</li>
+ * </ul>
+ * All files are only appended to. A record cut short by a crash is ignored and doesn't count as a run, and the index
+ * is rebuilt from {@code runs.jsonl} if it is missing or does not match.
+ * <p>
+ * The tracker thread collects the events of the current world, finished runs are written (and the history loaded on
+ * the first write) on a background thread, and queries can come from any thread. The world being played when the
+ * tracker stops isn't recorded yet: it goes into the checkpoint, and the next session records it once another world is
+ * loaded, or keeps collecting its events if it continues where the last one stopped.
+ */
+public class RunHistory {
+    private static final Gson GSON = new Gson();
+    private static final int INDEX_RECORD_BYTES = 4 + 4 + 8 + 4 + 4;
+
+    private final Path runsPath;
+    private final Path typesPath;
+    private final Path indexPath;
+
+    // Loaded lazily, guarded by this
+    private boolean loaded = false;
+    private final List<String> types = new ArrayList<>();
+    private final Map<String, Integer> typeIds = new HashMap<>();
+    private final List<SplitIndex> indexes = new ArrayList<>();
+    private int runCount = 0;
+
+    private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "paceman-history");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Set from the tracker thread, guarded by currentRunLock since checkpoints can be taken while shutting down
+    private final Object currentRunLock = new Object();
+    private JsonObject currentRun = null;
+    private final List<ParsedEvent> currentEvents = new ArrayList<>();
+    // The current run of the last session, from its checkpoint
+    private JsonObject savedRun = null;
+
+    public RunHistory(Path folder) {
+        this.runsPath = folder.resolve("runs.jsonl");
+        this.typesPath = folder.resolve("event-types.txt");
+        this.indexPath = folder.resolve("splits.idx");
+    }
+
+    /**
+     * Starts collecting the events of a new world, recording the previous one if it had any events.
+     *
+     * @param resumed true if the tracker continued reading the world's events.log from a checkpoint, so the events read
+     *                before the checkpoint only come from the saved run
+     */
+    void startRun(JsonObject header, boolean resumed) {
+        synchronized (this.currentRunLock) {
+            String worldPath = header.get("world_path").getAsString();
+            JsonObject savedRun = this.savedRun;
+            this.savedRun = null;
+            if (savedRun != null && savedRun.get("worldPath").getAsString().equals(worldPath)) {
+                if (resumed) {
+                    this.currentEvents.clear();
+                    this.currentEvents.addAll(RunHistory.parseEvents(savedRun.remove("events").getAsJsonArray()));
+                    this.currentRun = savedRun;
+                    return;
+                }
+                // events.log is read from the start again, which brings back all of its events
+                savedRun = null;
+            }
+            this.finishRun();
+            if (savedRun != null) {
+                // Finished while the tracker wasn't running
+                this.queueAppend(savedRun, RunHistory.parseEvents(savedRun.remove("events").getAsJsonArray()));
+            }
+            this.currentRun = new JsonObject();
+            this.currentRun.addProperty("worldPath", worldPath);
+            this.currentRun.addProperty("gameVersion", header.get("version").getAsString());
+            this.currentRun.addProperty("category", header.get("category").getAsString());
+        }
+    }
+
+    void addEvents(List<String> lines, long runStartTime) {
+        synchronized (this.currentRunLock) {
+            if (this.currentRun == null) {
+                return;
+            }
+            if (!this.currentRun.has("startTime") && runStartTime != -1) {
+                this.currentRun.addProperty("startTime", runStartTime);
+            }
+            for (String line : lines) {
+                String[] parts = line.split(" ");
+                if (parts.length < 3) {
+                    continue;
+                }
+                try {
+                    this.currentEvents.add(new ParsedEvent(parts[0], Integer.parseInt(parts[1]), Integer.parseInt(parts[2])));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the current run with its events so far (as in runs.jsonl, without a run number) for the checkpoint, or
+     * null if it has no events yet
+     */
+    @Nullable
+    JsonObject snapshotRun() {
+        synchronized (this.currentRunLock) {
+            if (this.currentRun == null || this.currentEvents.isEmpty()) {
+                // Not started on a world yet, keep the last session's run for the next one
+                return this.savedRun == null ? null : this.savedRun.deepCopy();
+            }
+            JsonObject run = this.currentRun.deepCopy();
+            run.add("events", RunHistory.toJson(this.currentEvents));
+            return run;
+        }
+    }
+
+    /**
+     * Takes over the current run of the last session, see {@link #startRun(JsonObject, boolean)}. Must be called before
+     * the first run is started.
+     */
+    void restoreRun(@Nullable JsonObject run) {
+        if (run == null || !run.has("worldPath") || !run.has("events")) {
+            return;
+        }
+        synchronized (this.currentRunLock) {
+            this.savedRun = run;
+        }
+    }
+
+    /**
+     * Queues the current run to be recorded if it had any events.
+     */
+    private void finishRun() {
+        JsonObject run = this.currentRun;
+        this.currentRun = null;
+        if (run == null || this.currentEvents.isEmpty()) {
+            this.currentEvents.clear();
+            return;
+        }
+        List<ParsedEvent> events = new ArrayList<>(this.currentEvents);
+        this.currentEvents.clear();
+        this.queueAppend(run, events);
+    }
+
+    private void queueAppend(JsonObject run, List<ParsedEvent> events) {
+        try {
+            this.writeExecutor.execute(() -> {
+                try {
+                    this.append(run, events);
+                } catch (Exception e) {
+                    PaceManTracker.logWarning("Failed to save run to history: " + ExceptionUtil.toDetailedString(e));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            PaceManTracker.logDebug("Run history is stopped, not saving run");
+        }
+    }
+
+    /**
+     * Finishes writing the runs already queued. The current run is left for the checkpoint.
+     *
+     * @param timeoutMillis how long to wait for the writes
+     */
+    void stop(long timeoutMillis) {
+        this.writeExecutor.shutdown();
+        try {
+            if (!this.writeExecutor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                PaceManTracker.logWarning("Run history did not finish writing in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static List<ParsedEvent> parseEvents(JsonArray eventArray) {
+        List<ParsedEvent> events = new ArrayList<>(eventArray.size());
+        eventArray.forEach(element -> {
+            JsonArray event = element.getAsJsonArray();
+            events.add(new ParsedEvent(event.get(0).getAsString(), event.get(1).getAsInt(), event.get(2).getAsInt()));
+        });
+        return events;
+    }
+
+    private static JsonArray toJson(List<ParsedEvent> events) {
+        JsonArray eventArray = new JsonArray();
+        for (ParsedEvent event : events) {
+            JsonArray eventJson = new JsonArray();
+            eventJson.add(event.type);
+            eventJson.add(event.rta);
+            eventJson.add(event.igt);
+            eventArray.add(eventJson);
+        }
+        return eventArray;
+    }
+
+    /**
+     * @param eventType  an event name such as rsg.enter_nether
+     * @param percentile between 0 and 100
+     * @param since      only count runs started at or after this time (epoch millis), 0 for all
+     * @return the RTA of the event at the given percentile, or empty if no run since then has the event
+     */
+    public synchronized OptionalLong getSplitPercentile(String eventType, double percentile, long since) throws IOException {
+        int[] rtas = this.getSplits(eventType, since);
+        if (rtas.length == 0) {
+            return OptionalLong.empty();
+        }
+        Arrays.sort(rtas);
+        int rank = (int) Math.ceil(Math.max(0, Math.min(100, percentile)) / 100 * rtas.length) - 1;
+        return OptionalLong.of(rtas[Math.max(0, rank)]);
+    }
+
+    /**
+     * @return how many runs started at or after the given time (epoch millis) have the event
+     */
+    public synchronized int getSplitCount(String eventType, long since) throws IOException {
+        return this.getSplits(eventType, since).length;
+    }
+
+    public synchronized int getRunCount() throws IOException {
+        this.ensureLoaded();
+        return this.runCount;
+    }
+
+    private int[] getSplits(String eventType, long since) throws IOException {
+        this.ensureLoaded();
+        Integer typeId = this.typeIds.get(eventType);
+        if (typeId == null) {
+            return new int[0];
+        }
+        SplitIndex index = this.indexes.get(typeId);
+        int[] out = new int[index.size];
+        int count = 0;
+        for (int i = 0; i < index.size; i++) {
+            if (index.runStarts[i] >= since) {
+                out[count++] = index.rtas[i];
+            }
+        }
+        return Arrays.copyOf(out, count);
+    }
+
+    private synchronized void append(JsonObject run, List<ParsedEvent> events) throws IOException {
+        this.ensureLoaded();
+        if (!run.has("startTime")) {
+            // Stored, so a rebuilt index has the same start time
+            run.addProperty("startTime", System.currentTimeMillis());
+        }
+        long startTime = run.get("startTime").getAsLong();
+        int runNumber = this.runCount;
+
+        ByteBuffer indexRecords = ByteBuffer.allocate(events.size() * INDEX_RECORD_BYTES);
+        List<String> newTypes = new ArrayList<>();
+        for (ParsedEvent event : events) {
+            int typeId = this.getOrCreateTypeId(event.type, newTypes);
+            indexRecords.putInt(typeId).putInt(runNumber).putLong(startTime).putInt(event.rta).putInt(event.igt);
+            this.indexes.get(typeId).add(startTime, event.rta);
+        }
+        run.addProperty("run", runNumber);
+        run.add("events", RunHistory.toJson(events));
+
+        Files.createDirectories(this.runsPath.getParent());
+        if (!newTypes.isEmpty()) {
+            Files.write(this.typesPath, newTypes, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        // The run record goes first, so a crash in between leaves an index that gets rebuilt rather than index entries
+        // for a missing run
+        Files.write(this.runsPath, (GSON.toJson(run) + "\n").getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        Files.write(this.indexPath, indexRecords.array(), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        this.runCount++;
+    }
+
+    private int getOrCreateTypeId(String type, List<String> newTypes) {
+        Integer typeId = this.typeIds.get(type);
+        if (typeId != null) {
+            return typeId;
+        }
+        typeId = this.types.size();
+        this.types.add(type);
+        this.typeIds.put(type, typeId);
+        this.indexes.add(new SplitIndex());
+        newTypes.add(type);
+        return typeId;
+    }
+
+    private void ensureLoaded() throws IOException {
+        if (this.loaded) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        if (Files.exists(this.typesPath)) {
+            for (String type : Files.readAllLines(this.typesPath, StandardCharsets.UTF_8)) {
+                if (!type.isEmpty()) {
+                    this.getOrCreateTypeId(type, new ArrayList<>());
+                }
+            }
+        }
+        int runsInFile = this.countRuns();
+        if (!this.loadIndex(runsInFile)) {
+            this.rebuildIndex();
+        }
+        this.runCount = runsInFile;
+        this.loaded = true;
+        PaceManTracker.logDebug(() -> "Loaded run history of " + this.runCount + " runs in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    private int countRuns() throws IOException {
+        if (!Files.exists(this.runsPath)) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(this.runsPath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer lastByte = ByteBuffer.allocate(1);
+            if (channel.size() > 0 && channel.read(lastByte, channel.size() - 1) == 1 && lastByte.get(0) != '\n') {
+                // End a record cut short by a crash, so the next one starts on its own line
+                channel.write(ByteBuffer.wrap(new byte[]{'\n'}), channel.size());
+            }
+        }
+        int count = 0;
+        try (BufferedReader reader = Files.newBufferedReader(this.runsPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (RunHistory.parseRun(line) != null) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the run of a runs.jsonl line, or null for an empty line or a record cut short by a crash, which don't
+     * count as runs or get run numbers
+     */
+    @Nullable
+    private static JsonObject parseRun(String line) {
+        if (line.isEmpty()) {
+            return null;
+        }
+        try {
+            JsonObject run = GSON.fromJson(line, JsonObject.class);
+            return run != null && run.has("events") && run.get("events").isJsonArray() ? run : null;
+        } catch (JsonParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return false if the index is missing or does not match runs.jsonl
+     */
+    private boolean loadIndex(int runsInFile) throws IOException {
+        if (!Files.exists(this.indexPath)) {
+            return runsInFile == 0;
+        }
+        try (FileChannel channel = FileChannel.open(this.indexPath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            long usable = size - size % INDEX_RECORD_BYTES;
+            if (usable != size) {
+                // Cut short by a crash
+                channel.truncate(usable);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) usable);
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) ;
+            // Through Buffer, so jars built on a newer JDK don't link to the covariant override missing on Java 8
+            ((Buffer) buffer).flip();
+            int maxRun = -1;
+            while (buffer.remaining() >= INDEX_RECORD_BYTES) {
+                int typeId = buffer.getInt();
+                int run = buffer.getInt();
+                long runStart = buffer.getLong();
+                int rta = buffer.getInt();
+                buffer.getInt(); // IGT
+                if (typeId < 0 || typeId >= this.indexes.size()) {
+                    this.indexes.forEach(SplitIndex::clear);
+                    return false;
+                }
+                this.indexes.get(typeId).add(runStart, rta);
+                maxRun = Math.max(maxRun, run);
+            }
+            if (maxRun + 1 != runsInFile) {
+                this.indexes.forEach(SplitIndex::clear);
+                return false;
+            }
+            return true;
+        }
+    }
+
+    private void rebuildIndex() throws IOException {
+        PaceManTracker.logDebug("Rebuilding run history index");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        List<String> newTypes = new ArrayList<>();
+        if (Files.exists(this.runsPath)) {
+            try (BufferedReader reader = Files.newBufferedReader(this.runsPath, StandardCharsets.UTF_8)) {
+                String line;
+                int runNumber = 0;
+                while ((line = reader.readLine()) != null) {
+                    JsonObject run = RunHistory.parseRun(line);
+                    if (run == null) {
+                        continue;
+                    }
+                    long startTime = run.has("startTime") ? run.get("startTime").getAsLong() : 0;
+                    ByteBuffer records = ByteBuffer.allocate(run.getAsJsonArray("events").size() * INDEX_RECORD_BYTES);
+                    run.getAsJsonArray("events").forEach(element -> {
+                        JsonArray event = element.getAsJsonArray();
+                        int typeId = this.getOrCreateTypeId(event.get(0).getAsString(), newTypes);
+                        int rta = event.get(1).getAsInt();
+                        records.putInt(typeId).putInt(0).putLong(startTime).putInt(rta).putInt(event.get(2).getAsInt());
+                        this.indexes.get(typeId).add(startTime, rta);
+                    });
+                    for (int i = 0; i < records.capacity(); i += INDEX_RECORD_BYTES) {
+                        records.putInt(i + 4, runNumber);
+                    }
+                    out.write(records.array());
+                    runNumber++;
+                }
+            }
+        }
+        if (!newTypes.isEmpty()) {
+            Files.write(this.typesPath, newTypes, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        Files.createDirectories(this.indexPath.getParent());
+        Files.write(this.indexPath, out.toByteArray());
+    }
+
+    private static class ParsedEvent {
+        private final String type;
+        private final int rta;
+        private final int igt;
+
+        private ParsedEvent(String type, int rta, int igt) {
+            this.type = type;
+            this.rta = rta;
+            this.igt = igt;
+        }
+    }
+
+    /**
+     * The run start and RTA of every occurrence of one event type, in the order the runs were recorded.
+     */
+    private static class SplitIndex {
+        private long[] runStarts = new long[16];
+        private int[] rtas = new int[16];
+        private int size = 0;
+
+        private void add(long runStart, int rta) {
+            if (this.size == this.rtas.length) {
+                this.runStarts = Arrays.copyOf(this.runStarts, this.size * 2);
+                this.rtas = Arrays.copyOf(this.rtas, this.size * 2);
+            }
+            this.runStarts[this.size] = runStart;
+            this.rtas[this.size++] = rta;
+        }
+
+        private void clear() {
+            this.size = 0;
+        }
+    }
+}
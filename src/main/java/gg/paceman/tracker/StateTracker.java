@@ -2,330 +2,323 @@ package gg.paceman.tracker;
 
 import com.google.gson.JsonObject;
 import gg.paceman.tracker.util.ExceptionUtil;
-import gg.paceman.tracker.util.PostUtil;
-import gg.paceman.tracker.util.SleepUtil;
+import gg.paceman.tracker.util.NetworkExecutor;
 
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
-
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Tracks reset stats for every instance played this session. Each instance (.minecraft folder) gets its own
+ * {@link InstanceStateTracker}, all of them are ticked on this tracker's single thread, and the stats of all instances
+ * are summed when submitted. Switching between instances on a multi-instance wall or SeedQueue setup no longer wipes
+ * the stats.
+ * <p>
+ * Only the instance being played is polled every 25ms, the others are polled once a second, and instances with no state
+ * changes for {@link InstanceStateTracker#MAX_AFK_TIME} are forgotten until they are played again.
+ */
 public class StateTracker {
 
-    private static final String SUBMIT_STATS_ENDPOINT = "https://paceman.gg/stats/api/submitStats/";
-    private final int breakThreshold = 5000;
-    // cap each overworld segment to at most 10 minutes in case of afk
-    private final int maxPlayTime = 1000 * 60 * 10;
-    // reset stats after no state changes for 1 hour
-    private final int maxAFKTime = 1000 * 60 * 60;
-
-    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    // How often state files are polled when a host (Julti/Jingle) tells us about state changes
+    private static final long HOST_FALLBACK_POLL_MILLIS = 1000;
+    // How often the instances other than the one being played are polled
+    private static final long INACTIVE_POLL_MILLIS = 1000;
+
+    private final PaceManTracker tracker;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "state-tracker"));
+    // Only accessed from the executor thread
+    private final Map<Path, InstanceStateTracker> instances = new LinkedHashMap<>();
+    // Copy of the instance folders readable from any thread, for hibernation to watch
+    private final List<Path> instanceFolders = new CopyOnWriteArrayList<>();
+    private final List<ScheduledFuture<?>> scheduledTicks = new ArrayList<>();
+    // Stats from the last session's checkpoint, restored when their instance is seen again
+    private final Map<Path, TrackerCheckpoint.InstanceStats> statsToRestore = new ConcurrentHashMap<>();
+    private InstanceStateTracker activeInstance = null;
     private Path lastWorldPath;
-    private Path instPath;
-    private Path statePath;
-    private boolean hasStateFile = false;
-    private long stateLastMod = -1;
-    private State currentState = State.UNKNOWN;
-
-    private Path resetsPath;
-    private boolean hasResetsFile = false;
-    private long resetsLastMod = -1;
-    private int resets = 0;
-    private int lastResets = 0;
-    private long lastWallReset = 0;
-
-    private boolean isPracticing = false;
-    private boolean isNether = false;
+
     private boolean isEnabled = false;
+    private volatile boolean hostDriven = false;
 
-    private int seedsPlayed = 0;
-    private long playingStart = 0;
-    private long playTime = 0;
-    private long wallTime = 0;
-    private long pauseStart = 0;
-    private long pauseTime = 0;
-    private long netherStart = 0;
-    private long netherTime = 0;
-
-    public void start() {
-        this.executor.scheduleAtFixedRate(this::tickResetCheck, 0, 3, TimeUnit.SECONDS);
-        this.executor.scheduleAtFixedRate(this::tickInstPath, 0, 1, TimeUnit.SECONDS);
-        this.executor.scheduleAtFixedRate(this::tryTick, 0, 25, TimeUnit.MILLISECONDS);
+    StateTracker(PaceManTracker tracker) {
+        this.tracker = tracker;
     }
 
-    public void reset() {
-        this.resets = 0;
-        this.lastResets = 0;
-        this.lastWallReset = 0;
-        this.seedsPlayed = 0;
-        this.playingStart = 0;
-        this.playTime = 0;
-        this.wallTime = 0;
-        this.pauseStart = 0;
-        this.pauseTime = 0;
-        this.netherStart = 0;
-        this.netherTime = 0;
-        this.stateLastMod = -1;
-        this.resetsLastMod = -1;
+    public synchronized void start() {
+        if (!this.scheduledTicks.isEmpty() || this.executor.isShutdown()) {
+            return;
+        }
+        this.scheduledTicks.add(this.executor.scheduleAtFixedRate(this::tickResetCheck, 0, 3, TimeUnit.SECONDS));
+        this.scheduledTicks.add(this.executor.scheduleAtFixedRate(this::tickInstPath, 0, 1, TimeUnit.SECONDS));
+        this.scheduledTicks.add(this.executor.scheduleAtFixedRate(this::tryTick, 0, this.hostDriven ? HOST_FALLBACK_POLL_MILLIS : 25, TimeUnit.MILLISECONDS));
+        this.scheduledTicks.add(this.executor.scheduleAtFixedRate(this::tickInactive, 0, INACTIVE_POLL_MILLIS, TimeUnit.MILLISECONDS));
     }
 
-    public void tickResetCheck() {
-        Thread.currentThread().setName("state-tick-reset");
-        PaceManTrackerOptions options = PaceManTrackerOptions.getInstance();
+    /**
+     * Stops polling until {@link #start()} is called again, used while hibernating. Host events are still handled.
+     */
+    public synchronized void pause() {
+        this.scheduledTicks.forEach(future -> future.cancel(false));
+        this.scheduledTicks.clear();
+    }
 
-        boolean wasEnabled = this.isEnabled;
-        this.isEnabled = options.resetStatsEnabled && PaceManTracker.getInstance().shouldRun();
+    /**
+     * @return the instance folders seen this session
+     */
+    public List<Path> getInstanceFolders() {
+        return Collections.unmodifiableList(this.instanceFolders);
+    }
 
-        if (this.isEnabled && !wasEnabled) {
-            PaceManTracker.logDebug("Reset stats enabled");
-            this.reset();
-        } else if (!this.isEnabled && wasEnabled) {
-            PaceManTracker.logDebug("Reset stats disabled");
-        }
+    /**
+     * Used by the Julti/Jingle plugins before starting, for hosts that already track instance state. State changes then
+     * come from {@link #onHostStateChange(Path)}, and the state files are only polled once a second as a fallback instead
+     * of every 25ms.
+     */
+    public void useHostStateEvents() {
+        this.hostDriven = true;
     }
 
-    public void tickInstPath() {
-        Thread.currentThread().setName("state-tick-inst");
-        Path worldPath = PaceManTracker.getInstance().getWorldPath();
-        if (worldPath == null || worldPath.equals(this.lastWorldPath)) {
+    /**
+     * Called by the host when an instance changed state (or became the main instance), reads that instance's state
+     * once on the state tracker thread.
+     */
+    public void onHostStateChange(Path instPath) {
+        if (instPath == null || this.executor.isShutdown()) {
             return;
         }
+        Path absoluteInstPath = instPath.toAbsolutePath();
+        this.tracker.getHibernation().markActivity();
+        try {
+            this.executor.execute(() -> {
+                InstanceStateTracker instance = this.getOrCreateInstance(absoluteInstPath);
+                instance.refreshFiles();
+                this.tryTick(instance);
+            });
+        } catch (RejectedExecutionException ignored) {
+            // Stopped after the check above, don't throw into the host's event thread
+        }
+    }
 
-        this.lastWorldPath = worldPath;
-
-        boolean allowAnyWorldName = PaceManTrackerOptions.getInstance().allowAnyWorldName;
-        boolean isRandomSpeedrunWorld = PaceManTracker.RANDOM_WORLD_PATTERN.matcher(worldPath.getFileName().toString()).matches();
+    private InstanceStateTracker getOrCreateInstance(Path instFolder) {
+        return this.instances.computeIfAbsent(instFolder, p -> {
+            PaceManTracker.logDebug(() -> "New instance folder: " + p);
+            this.instanceFolders.add(p);
+            InstanceStateTracker instance = new InstanceStateTracker(this.tracker, p);
+            TrackerCheckpoint.InstanceStats stats = this.statsToRestore.remove(p);
+            if (stats != null) {
+                PaceManTracker.logDebug(() -> "Restored reset stats from checkpoint for " + p);
+                instance.restoreStats(stats);
+            }
+            return instance;
+        });
+    }
 
-        boolean wasPracticing = this.isPracticing;
-        this.isPracticing = !allowAnyWorldName && !isRandomSpeedrunWorld;
-        if(wasPracticing && !this.isPracticing){
-            PaceManTracker.logDebug("Stopped practicing, resetting stats");
-            this.reset();
+    /**
+     * Restores the unsubmitted stats of a previous session, unless it is so old that they would have been reset for
+     * being AFK anyway. Must be called before {@link #start()}.
+     */
+    void restoreStats(TrackerCheckpoint checkpoint) {
+        if (Math.abs(System.currentTimeMillis() - checkpoint.savedAt) > InstanceStateTracker.MAX_AFK_TIME) {
+            return;
         }
+        checkpoint.instances.forEach((path, stats) -> this.statsToRestore.put(this.tracker.getPaths().get(path), stats));
+    }
 
-        // Random Speedrun #X -> saves -> .minecraft
-        Path instFolder = worldPath.getParent().getParent();
-        if(!instFolder.equals(this.instPath)){
-            this.instPath = instFolder;
-            PaceManTracker.logDebug("New instance folder: " + instFolder);
-            this.reset();
+    /**
+     * @return a snapshot of every instance's unsubmitted stats, taken on the state tracker thread
+     */
+    CompletableFuture<Map<String, TrackerCheckpoint.InstanceStats>> snapshotStats() {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                Map<String, TrackerCheckpoint.InstanceStats> stats = new LinkedHashMap<>();
+                this.instances.forEach((path, instance) -> stats.put(path.toString(), instance.snapshotStats()));
+                // Keep stats of instances not seen yet this session
+                this.statsToRestore.forEach((path, instanceStats) -> stats.putIfAbsent(path.toString(), instanceStats));
+                return stats;
+            }, this.executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(Collections.emptyMap());
         }
-
-        this.statePath = instFolder.resolve("wpstateout.txt");
-        this.resetsPath = instFolder.resolve("config/mcsr/atum/rsg-attempts.txt");
-        this.hasStateFile = Files.exists(this.statePath);
-        this.hasResetsFile = Files.exists(this.resetsPath);
     }
 
-    public void tryTick() {
+    /**
+     * Re-checks the options on the state tracker thread right away instead of on the next 1-3 second tick, and
+     * re-evaluates the current world in case allowAnyWorldName changed.
+     */
+    void onOptionsChange() {
         try {
-            Thread.currentThread().setName("state-tick");
-            this.tick();
-            this.tickResets();
-        } catch (Throwable t) {
-            String detailedString = ExceptionUtil.toDetailedString(t);
-            PaceManTracker.logWarning("Error while checking state: " + detailedString);
-            PaceManTracker.logWarning("The above error only affects the NPH stats tracking, and can be ignored if it happens rarely.");
+            this.executor.execute(() -> {
+                this.lastWorldPath = null;
+                this.tickResetCheck();
+                this.tickInstPath();
+            });
+        } catch (RejectedExecutionException ignored) {
+            // Stopped
         }
     }
 
-    private boolean isPlaying(State state) {
-        return state == State.PLAYING || state == State.PAUSED;
+    public void reset() {
+        this.instances.values().forEach(InstanceStateTracker::reset);
     }
 
-    public void tick() throws IOException {
-        if (!this.hasStateFile) {
-            return;
-        }
-        long newLM = Files.getLastModifiedTime(this.statePath).toMillis();
-        if (newLM == this.stateLastMod) {
-            return;
-        }
-        long diff = newLM - this.stateLastMod;
-        if(this.stateLastMod != -1 && diff > this.maxAFKTime){
-            PaceManTracker.logDebug("AFK for " + diff + "ms, resetting stats");
+    public void tickResetCheck() {
+        PaceManTrackerOptions options = this.tracker.getContext().getOptions();
+
+        boolean wasEnabled = this.isEnabled;
+        this.isEnabled = options.resetStatsEnabled && this.tracker.shouldRun();
+
+        if (this.isEnabled && !wasEnabled) {
+            PaceManTracker.logDebug("Reset stats enabled");
             this.reset();
+        } else if (!this.isEnabled && wasEnabled) {
+            PaceManTracker.logDebug("Reset stats disabled");
         }
-        this.stateLastMod = newLM;
-
-        State oldState = this.currentState;
-        State newState = State.UNKNOWN;
-        String state = "";
-        for (int i = 0; i < 5; i++) {
-            state = new String(Files.readAllBytes(this.statePath), StandardCharsets.UTF_8);
-            String[] parts = state.split(",");
-            switch (parts[0]) {
-                case "wall":
-                case "previewing":
-                    newState = State.WALL;
-                    break;
-                case "inworld":
-                    if(parts[1].equals("paused")){
-                        newState = State.PAUSED;
-                    } else {
-                        newState = State.PLAYING;
-                    }
-                    break;
-                case "generating":
-                case "waiting":
-                    newState = State.LOADING;
-                    break;
-                case "title":
-                    newState = State.IDLE;
-                    break;
-                default:
-                    SleepUtil.sleep(5);
-                    continue;
-            }
-            break;
-        }
-        if (newState == State.UNKNOWN) {
-            PaceManTracker.logWarning("State cannot be determined after 3 attempts: " + state);
+    }
+
+    public void tickInstPath() {
+        Path worldPath = this.tracker.getWorldPath();
+        if (worldPath == null || worldPath.equals(this.lastWorldPath)) {
             return;
         }
 
-        if(newState == State.PAUSED){
-            this.pauseStart = newLM;
-        } else if (oldState == State.PAUSED){
-            this.pauseTime = newLM - this.pauseStart;
-        }
+        this.lastWorldPath = worldPath;
 
-        // joined instance
-        if (!isPlaying(oldState) && isPlaying(newState)) {
-            this.playingStart = newLM;
-            if (oldState != State.UNKNOWN) {
-                // don't increment seeds played counter when tracker is restarted while in a world
-                this.seedsPlayed++;
-            }
-        }
+        Path instFolder = this.tracker.getPaths().getInstanceFolder(worldPath);
+        InstanceStateTracker instance = this.getOrCreateInstance(instFolder);
+        this.activeInstance = instance;
 
-        // left instance
-        if (isPlaying(oldState) && !isPlaying(newState)) {
-            if (!this.isPracticing && !this.isNether) {
-                // commit playtime
-                long playDiff = Math.min(this.maxPlayTime, newLM - this.playingStart);
-                this.playTime += playDiff - this.pauseTime;
-                this.pauseTime = 0;
-            }
-            this.isPracticing = false;
-            if(this.isNether){
-                this.netherTime += newLM - this.netherStart;
-            }
-            this.isNether = false;
+        boolean allowAnyWorldName = this.tracker.getContext().getOptions().allowAnyWorldName;
+        boolean isRandomSpeedrunWorld = PaceManTracker.RANDOM_WORLD_PATTERN.matcher(worldPath.getFileName().toString()).matches();
+
+        boolean wasPracticing = instance.isPracticing;
+        instance.isPracticing = !allowAnyWorldName && !isRandomSpeedrunWorld;
+        if (wasPracticing && !instance.isPracticing) {
+            PaceManTracker.logDebug("Stopped practicing, resetting stats");
+            instance.reset();
         }
 
-        this.currentState = newState;
+        instance.refreshFiles();
     }
 
-    public void tickResets() throws IOException {
-        if (!this.hasResetsFile) {
-            return;
-        }
-        long newLM = Files.getLastModifiedTime(this.resetsPath).toMillis();
-        if (newLM == this.resetsLastMod) {
-            return;
+    /**
+     * Polls the instance being played.
+     */
+    public void tryTick() {
+        if (this.activeInstance != null) {
+            this.tryTick(this.activeInstance);
         }
-        this.resetsLastMod = newLM;
+    }
 
-        int resets = 0;
-        for (int i = 0; i < 5; i++) {
-            String contents = new String(Files.readAllBytes(this.resetsPath), StandardCharsets.UTF_8);
-            if (contents.isEmpty()) {
-                SleepUtil.sleep(5);
+    /**
+     * Polls the instances that aren't being played, and forgets the ones that have had no state changes for
+     * {@link InstanceStateTracker#MAX_AFK_TIME}, since their stats would be reset for being AFK anyway. The instance
+     * being played is never forgotten.
+     */
+    void tickInactive() {
+        long now = System.currentTimeMillis();
+        Iterator<InstanceStateTracker> iterator = this.instances.values().iterator();
+        while (iterator.hasNext()) {
+            InstanceStateTracker instance = iterator.next();
+            if (instance == this.activeInstance) {
                 continue;
             }
-            resets = Integer.parseInt(contents);
-            break;
-        }
-
-        this.resets = resets;
-        if (this.lastResets == 0) {
-            this.lastResets = this.resets;
-        }
-
-        if (this.currentState != State.WALL) {
-            return;
-        }
-
-        // first wall reset
-        if (this.lastWallReset == 0) {
-            this.lastWallReset = newLM;
-            return;
+            this.tryTick(instance);
+            if (now - instance.getLastActivity() > InstanceStateTracker.MAX_AFK_TIME) {
+                PaceManTracker.logDebug(() -> "Forgetting instance folder with no activity: " + instance.getInstPath());
+                iterator.remove();
+                this.instanceFolders.remove(instance.getInstPath());
+            }
         }
+    }
 
-        long wallDiff = newLM - this.lastWallReset;
-        this.lastWallReset = newLM;
-        if (wallDiff < this.breakThreshold) {
-            this.wallTime += wallDiff;
+    private void tryTick(InstanceStateTracker instance) {
+        try {
+            instance.tick();
+            instance.tickResets();
+        } catch (Throwable t) {
+            String detailedString = ExceptionUtil.toDetailedString(t);
+            PaceManTracker.logWarning("Error while checking state: " + detailedString);
+            PaceManTracker.logWarning("The above error only affects the NPH stats tracking, and can be ignored if it happens rarely.");
         }
-
     }
 
-    public void dumpStats(JsonObject data) {
-        if (!PaceManTrackerOptions.getInstance().resetStatsEnabled) {
+    /**
+     * Submits the reset stats of all instances since the last submission. The stats are collected on the state tracker
+     * thread and sent on the network executor, so this returns immediately.
+     */
+    public void dumpStats(JsonObject gameData, String accessKey) {
+        if (!this.tracker.getContext().getOptions().resetStatsEnabled) {
             PaceManTracker.logDebug("Not submitting stats since user opted out");
             return;
         }
-        JsonObject gameData = data.getAsJsonObject("gameData");
         String mods = gameData.getAsJsonArray("modList").toString();
         if (!mods.contains("seedqueue") || !mods.contains("state-output")) {
             PaceManTracker.logWarning("Could not submit reset stats as either SeedQueue or State Output is missing");
             return;
         }
+        long now = System.currentTimeMillis();
+
+        this.executor.execute(() -> {
+            try {
+                this.collectAndSubmitStats(gameData, accessKey, now);
+            } catch (Throwable t) {
+                String detailedString = ExceptionUtil.toDetailedString(t);
+                PaceManTracker.logWarning("Error while submitting stats: " + detailedString);
+                PaceManTracker.logWarning("The above error only affects the NPH stats tracking.");
+            }
+        });
+    }
 
-        int newResets = this.resets - this.lastResets;
+    private void collectAndSubmitStats(JsonObject gameData, String accessKey, long now) {
+        if (this.activeInstance != null) {
+            this.activeInstance.commitCurrentRunPlayTime(now);
+        }
 
-        // add the overworld time (capped) spent in this run to playTime
-        long diff = Math.min(this.maxPlayTime, System.currentTimeMillis() - this.playingStart);
-        this.playTime += diff;
+        InstanceStateTracker.StatTotals totals = new InstanceStateTracker.StatTotals();
+        this.instances.values().forEach(instance -> instance.drainStatsInto(totals));
 
-        String accessKey = data.get("accessKey").getAsString();
+        if (this.activeInstance != null) {
+            this.activeInstance.startNether(now);
+        }
 
         JsonObject input = new JsonObject();
         input.addProperty("gameData", gameData.toString());
         input.addProperty("accessKey", accessKey);
-        input.addProperty("wallTime", this.wallTime);
-        input.addProperty("playTime", this.playTime);
-        input.addProperty("netherTime", this.netherTime);
-        input.addProperty("seedsPlayed", this.seedsPlayed);
-        input.addProperty("resets", newResets);
-        input.addProperty("totalResets", this.resets);
-
-        this.lastResets = this.resets;
-        this.playTime = 0;
-        this.wallTime = 0;
-        this.seedsPlayed = 0;
-        this.isNether = true;
-        this.netherTime = 0;
-        this.netherStart = System.currentTimeMillis();
-
-        try {
-            String toSend = input.toString();
-            PaceManTracker.logDebug("Sending reset stats: " + toSend.replace(accessKey, "KEY_HIDDEN"));
-            PostUtil.PostResponse out = PostUtil.sendData(SUBMIT_STATS_ENDPOINT, input.toString());
-            int res = out.getCode();
-            PaceManTracker.logDebug("Stats Response " + res + ": " + out.getMessage());
-        } catch (Throwable t) {
-            String detailedString = ExceptionUtil.toDetailedString(t);
-            PaceManTracker.logError("Stats submission encountered an error: " + detailedString);
-        }
+        input.addProperty("wallTime", totals.wallTime);
+        input.addProperty("playTime", totals.playTime);
+        input.addProperty("netherTime", totals.netherTime);
+        input.addProperty("seedsPlayed", totals.seedsPlayed);
+        input.addProperty("resets", totals.newResets);
+        input.addProperty("totalResets", totals.totalResets);
+
+        String toSend = input.toString();
+        PaceManTracker.logDebug(() -> "Sending reset stats: " + toSend.replace(accessKey, "KEY_HIDDEN"));
+        // Nothing waits on the stats response, so don't hold up the tick thread for it
+        NetworkExecutor.get().execute(() -> {
+            try {
+                PaceManTracker.PaceManResponse out = this.tracker.sendStats(toSend);
+                PaceManTracker.logDebug(() -> "Stats Response " + out.getType() + ": " + out.getMessage());
+            } catch (Throwable t) {
+                String detailedString = ExceptionUtil.toDetailedString(t);
+                PaceManTracker.logError("Stats submission encountered an error: " + detailedString);
+            }
+        });
     }
 
-    public void stop() {
-        Thread.currentThread().setName("state-stopping");
+    /**
+     * @param timeoutMillis how long to wait for a tick in progress to finish
+     */
+    public void stop(long timeoutMillis) {
+        this.executor.shutdownNow();
         try {
-            // Wait for and shutdown executor
-            this.executor.shutdownNow();
-            this.executor.awaitTermination(10, TimeUnit.SECONDS);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+            if (!this.executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                PaceManTracker.logWarning("State tracker thread did not stop in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
-    private enum State {
+    public enum State {
         UNKNOWN, IDLE, WALL, LOADING, PLAYING, PAUSED
     }
 
@@ -0,0 +1,113 @@
+package gg.paceman.tracker;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonSyntaxException;
+import gg.paceman.tracker.util.FileIdentity;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A snapshot of the tracker's progress, written to the PaceMan dir every few seconds and on shutdown so a restarted
+ * tracker can continue reading events.log where it left off instead of re-reading it, and keeps its reset stats.
+ * <p>
+ * The file is replaced atomically, so a crash leaves either the previous or the new checkpoint. Everything in it is
+ * validated against the current files before use.
+ */
+class TrackerCheckpoint {
+    private static final Gson GSON = new Gson();
+    // The last contents written to each checkpoint file, without savedAt
+    private static final Map<Path, String> LAST_WRITTEN = new ConcurrentHashMap<>();
+
+    long savedAt;
+    @Nullable
+    EventLogState eventLog;
+    @Nullable
+    RunState run;
+    // The run history record of the world being played, see RunHistory
+    @Nullable
+    JsonObject historyRun;
+    Map<String, InstanceStats> instances = Collections.emptyMap();
+    // A cancel for the last run that never reached PaceMan.gg
+    boolean cancelPending;
+
+    @Nullable
+    static TrackerCheckpoint load(Path path) {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try {
+            TrackerCheckpoint checkpoint = GSON.fromJson(new String(Files.readAllBytes(path), StandardCharsets.UTF_8), TrackerCheckpoint.class);
+            if (checkpoint == null || checkpoint.instances == null) {
+                return null;
+            }
+            PaceManTracker.logDebug("Loaded checkpoint from " + path);
+            return checkpoint;
+        } catch (IOException | JsonSyntaxException e) {
+            PaceManTracker.logWarning("Ignoring unreadable checkpoint file: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the checkpoint if anything changed since the last one, setting {@link #savedAt} to now. An unchanged
+     * checkpoint keeps the time of the last change, which is what matters for deciding if its stats are stale.
+     */
+    static synchronized void save(Path path, TrackerCheckpoint checkpoint) {
+        checkpoint.savedAt = 0;
+        String contents = GSON.toJson(checkpoint);
+        if (contents.equals(LAST_WRITTEN.get(path))) {
+            return;
+        }
+        checkpoint.savedAt = System.currentTimeMillis();
+        String json = GSON.toJson(checkpoint);
+        try {
+            Files.createDirectories(path.getParent());
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            Files.write(tmp, json.getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            LAST_WRITTEN.put(path, contents);
+        } catch (IOException e) {
+            PaceManTracker.logDebug(() -> "Failed to write checkpoint: " + e);
+        }
+    }
+
+    /**
+     * How far {@link EventTracker} got through the events.log of the world in the header.
+     */
+    static class EventLogState {
+        String header;
+        FileIdentity identity;
+        long readProgress;
+        long runStartTime;
+    }
+
+    /**
+     * The {@link PaceManTracker} state of the run in the header.
+     */
+    static class RunState {
+        String runProgress;
+        String worldUniquifier;
+        List<String> events;
+    }
+
+    /**
+     * The reset stats of one instance that have not been submitted yet.
+     */
+    static class InstanceStats {
+        long wallTime;
+        long playTime;
+        long netherTime;
+        int seedsPlayed;
+        int lastResets;
+    }
+}
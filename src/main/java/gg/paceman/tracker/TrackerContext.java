@@ -0,0 +1,176 @@
+package gg.paceman.tracker;
+
+import gg.paceman.tracker.util.CircuitBreaker;
+import gg.paceman.tracker.util.ExceptionUtil;
+import gg.paceman.tracker.util.PostUtil;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * What a {@link PaceManTracker} reads and sends with besides its files (see {@link TrackerPaths}): its options, the
+ * PaceMan.gg server it sends to and the circuit breakers guarding that server.
+ * <p>
+ * The default context, used by {@link PaceManTracker#getInstance()}, has the global {@link PaceManTrackerOptions}
+ * (saved to and reloaded from options.json) and sends to {@code -Dpaceman.url}. An isolated context keeps its options
+ * in memory and has its own circuit breakers, so trackers running side by side in one JVM (dev checks, benchmarks)
+ * don't see each other's options or trip each other's breakers. Logging stays global.
+ */
+public final class TrackerContext {
+    // -Dpaceman.url=http://127.0.0.1:<port> points the tracker at a local stand-in like the dev source set's FakePaceManServer
+    private static final TrackerContext DEFAULT = new TrackerContext(System.getProperty("paceman.url", "https://paceman.gg"), null);
+
+    static {
+        PostUtil.registerCircuitBreaker(DEFAULT.eventEndpoint, DEFAULT.eventCircuitBreaker);
+        PostUtil.registerCircuitBreaker(DEFAULT.testEndpoint, DEFAULT.testCircuitBreaker);
+        PostUtil.registerCircuitBreaker(DEFAULT.statsEndpoint, DEFAULT.statsCircuitBreaker);
+    }
+
+    private final String url;
+    private final String eventEndpoint;
+    private final String testEndpoint;
+    private final String statsEndpoint;
+    // Run events and cancels: bursts of a few sends around a split, a handful per minute sustained
+    private final CircuitBreaker eventCircuitBreaker = new CircuitBreaker("event", 10, 0.5);
+    private final CircuitBreaker testCircuitBreaker = new CircuitBreaker("test", 3, 0.2);
+    // One submission per run at most, so a small bucket is plenty
+    private final CircuitBreaker statsCircuitBreaker = new CircuitBreaker("stats", 3, 0.1);
+    // Null for the global options
+    @Nullable
+    private final AtomicReference<PaceManTrackerOptions> options;
+    private final List<BiConsumer<PaceManTrackerOptions, PaceManTrackerOptions>> changeListeners = new CopyOnWriteArrayList<>();
+
+    private TrackerContext(String url, @Nullable PaceManTrackerOptions options) {
+        this.url = url.replaceAll("/+$", "");
+        this.eventEndpoint = this.url + HttpEventSink.EVENT_PATH;
+        this.testEndpoint = this.url + "/api/test";
+        this.statsEndpoint = this.url + HttpEventSink.STATS_PATH;
+        this.options = options == null ? null : new AtomicReference<>(options);
+    }
+
+    /**
+     * @return the context with the global options and circuit breakers, whose breakers also guard
+     * {@link PostUtil#sendData(String, String)} calls to its endpoints
+     */
+    public static TrackerContext getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @param url     the server to send to, e.g. a FakePaceManServer's URL
+     * @param options the starting options, changed with {@link #updateOptions(UnaryOperator)} and never saved
+     */
+    public static TrackerContext isolated(String url, PaceManTrackerOptions options) {
+        return new TrackerContext(url, options);
+    }
+
+    /**
+     * @return the base URL without a trailing slash, e.g. https://paceman.gg
+     */
+    public String getUrl() {
+        return this.url;
+    }
+
+    public String getEventEndpoint() {
+        return this.eventEndpoint;
+    }
+
+    public String getTestEndpoint() {
+        return this.testEndpoint;
+    }
+
+    public CircuitBreaker getEventCircuitBreaker() {
+        return this.eventCircuitBreaker;
+    }
+
+    public CircuitBreaker getTestCircuitBreaker() {
+        return this.testCircuitBreaker;
+    }
+
+    public CircuitBreaker getStatsCircuitBreaker() {
+        return this.statsCircuitBreaker;
+    }
+
+    /**
+     * @return the state of the circuit breakers guarding requests to this context's server, for logs and the GUI
+     */
+    public List<CircuitBreaker> getCircuitBreakers() {
+        return Arrays.asList(this.eventCircuitBreaker, this.testCircuitBreaker, this.statsCircuitBreaker);
+    }
+
+    /**
+     * @return the current options, see {@link PaceManTrackerOptions#getInstance()}
+     */
+    public PaceManTrackerOptions getOptions() {
+        return this.options == null ? PaceManTrackerOptions.getInstance() : this.options.get();
+    }
+
+    /**
+     * Applies a change to the options and tells the change listeners. Only the default context saves them.
+     *
+     * @return the new options
+     */
+    public PaceManTrackerOptions updateOptions(UnaryOperator<PaceManTrackerOptions> change) throws IOException {
+        if (this.options == null) {
+            return PaceManTrackerOptions.update(change);
+        }
+        PaceManTrackerOptions old;
+        PaceManTrackerOptions updated;
+        synchronized (this.options) {
+            old = this.options.get();
+            updated = change.apply(old);
+            this.options.set(updated);
+        }
+        if (!old.equals(updated)) {
+            for (BiConsumer<PaceManTrackerOptions, PaceManTrackerOptions> listener : this.changeListeners) {
+                try {
+                    listener.accept(old, updated);
+                } catch (Throwable t) {
+                    PaceManTracker.logError("Error in options change listener: " + ExceptionUtil.toDetailedString(t));
+                }
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * See {@link PaceManTrackerOptions#addChangeListener(BiConsumer)}.
+     */
+    public void addOptionsListener(BiConsumer<PaceManTrackerOptions, PaceManTrackerOptions> listener) {
+        if (this.options == null) {
+            PaceManTrackerOptions.addChangeListener(listener);
+        } else {
+            this.changeListeners.add(listener);
+        }
+    }
+
+    public void removeOptionsListener(BiConsumer<PaceManTrackerOptions, PaceManTrackerOptions> listener) {
+        if (this.options == null) {
+            PaceManTrackerOptions.removeChangeListener(listener);
+        } else {
+            this.changeListeners.remove(listener);
+        }
+    }
+
+    /**
+     * Watches options.json for edits until {@link #stopWatchingOptions()}, for the default context. Isolated options
+     * have no file to watch.
+     */
+    public void startWatchingOptions() {
+        if (this.options == null) {
+            PaceManTrackerOptions.startWatching();
+        }
+    }
+
+    public void stopWatchingOptions() {
+        if (this.options == null) {
+            PaceManTrackerOptions.stopWatching();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package gg.paceman.tracker;
+
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+
+/**
+ * Where the trackers find the game's files and keep their own. Every file a {@link PaceManTracker} reads or writes is
+ * resolved from here, on this file system, so a tracker can run against an in-memory file system (for tests and
+ * benchmarks) or a different home folder without touching the real one. Options and the server to send to are in
+ * the tracker's {@link TrackerContext}.
+ */
+public final class TrackerPaths {
+    private final FileSystem fileSystem;
+    private final Path speedrunIGTDir;
+    private final Path paceManDir;
+
+    /**
+     * @param speedrunIGTDir the SpeedRunIGT folder holding latest_world.json, usually ~/speedrunigt
+     * @param paceManDir     the tracker's own folder for checkpoints, history and analytics
+     */
+    public TrackerPaths(Path speedrunIGTDir, Path paceManDir) {
+        if (speedrunIGTDir.getFileSystem() != paceManDir.getFileSystem()) {
+            throw new IllegalArgumentException("Tracker paths must be on the same file system");
+        }
+        this.fileSystem = speedrunIGTDir.getFileSystem();
+        this.speedrunIGTDir = speedrunIGTDir.toAbsolutePath();
+        this.paceManDir = paceManDir.toAbsolutePath();
+    }
+
+    /**
+     * @return the real locations: ~/speedrunigt and the PaceMan config folder
+     */
+    public static TrackerPaths getDefault() {
+        FileSystem fileSystem = FileSystems.getDefault();
+        return new TrackerPaths(fileSystem.getPath(System.getProperty("user.home"), "speedrunigt"), PaceManTrackerOptions.getPaceManDir());
+    }
+
+    public FileSystem getFileSystem() {
+        return this.fileSystem;
+    }
+
+    /**
+     * For paths read from game files (world paths in latest_world.json) and checkpoints.
+     */
+    public Path get(String path) {
+        return this.fileSystem.getPath(path);
+    }
+
+    public Path getLatestWorldFile() {
+        return this.speedrunIGTDir.resolve("latest_world.json");
+    }
+
+    public Path getPaceManDir() {
+        return this.paceManDir;
+    }
+
+    public Path getCheckpointFile() {
+        return this.paceManDir.resolve("checkpoint.json");
+    }
+
+    public Path getHistoryDir() {
+        return this.paceManDir.resolve("history");
+    }
+
+    public Path getResetAnalyticsFile() {
+        return this.paceManDir.resolve("reset-analytics.bin");
+    }
+
+    /**
+     * Random Speedrun #X -> saves -> .minecraft
+     */
+    public Path getInstanceFolder(Path worldPath) {
+        return worldPath.getParent().getParent().toAbsolutePath();
+    }
+
+    /**
+     * The State Output mod's file.
+     */
+    public Path getStateFile(Path instPath) {
+        return instPath.resolve("wpstateout.txt");
+    }
+
+    /**
+     * Atum's reset counter.
+     */
+    public Path getResetsFile(Path instPath) {
+        return instPath.resolve("config/mcsr/atum/rsg-attempts.txt");
+    }
+}
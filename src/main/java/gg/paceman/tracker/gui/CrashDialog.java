@@ -0,0 +1,40 @@
+package gg.paceman.tracker.gui;
+
+import gg.paceman.tracker.PaceManTracker;
+import gg.paceman.tracker.util.ExceptionUtil;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.datatransfer.StringSelection;
+
+/**
+ * Crash dialog for the standalone GUI, kept out of the tracker core so that headless runs never load Swing.
+ */
+public final class CrashDialog {
+    private CrashDialog() {
+    }
+
+    public static void showAndExit(Throwable t, String message) {
+        String detailedException = ExceptionUtil.toDetailedString(t);
+        int ans = JOptionPane.showOptionDialog(null, message, "PaceMan Tracker: Crash", JOptionPane.OK_CANCEL_OPTION, JOptionPane.ERROR_MESSAGE, null, new Object[]{"Copy Error", "OK"}, "Copy Error");
+        if (ans == 0) {
+            CrashDialog.copyToClipboard("Error during startup or main loop: " + detailedException);
+        }
+        PaceManTracker.logError(detailedException);
+        PaceManTracker.flushLogs();
+        System.exit(1);
+    }
+
+    private static void copyToClipboard(String string) {
+        try {
+            Toolkit.getDefaultToolkit()
+                    .getSystemClipboard()
+                    .setContents(
+                            new StringSelection(string),
+                            null
+                    );
+        } catch (Exception e) {
+            PaceManTracker.logError("Failed to copy string to clipboard:\n" + ExceptionUtil.toDetailedString(e));
+        }
+    }
+}
@@ -3,9 +3,15 @@ package gg.paceman.tracker.gui;
 import com.intellij.uiDesigner.core.GridConstraints;
 import com.intellij.uiDesigner.core.GridLayoutManager;
 import com.intellij.uiDesigner.core.Spacer;
+import gg.paceman.tracker.Hibernation;
 import gg.paceman.tracker.PaceManTracker;
 import gg.paceman.tracker.PaceManTrackerOptions;
+import gg.paceman.tracker.ResetAnalytics;
+import gg.paceman.tracker.util.CircuitBreaker;
+import gg.paceman.tracker.util.NetworkExecutor;
 import gg.paceman.tracker.util.PostUtil;
+import gg.paceman.tracker.util.UpdateUtil;
+import gg.paceman.tracker.util.VersionUtil;
 
 import javax.swing.*;
 import java.awt.*;
@@ -14,7 +20,12 @@ import java.awt.event.KeyEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 public class PaceManTrackerGUI extends JFrame {
@@ -26,6 +37,9 @@ public class PaceManTrackerGUI extends JFrame {
     private JButton saveButton;
     private JButton testButton;
     private JCheckBox resetStatsEnabled;
+    private JLabel statusLabel;
+    private final BiConsumer<PaceManTrackerOptions, PaceManTrackerOptions> optionsListener = this::onOptionsChange;
+    private final Timer statusTimer;
     private boolean closed = false;
     private final boolean asPlugin;
 
@@ -82,8 +96,14 @@ public class PaceManTrackerGUI extends JFrame {
 
         this.testButton.addActionListener(e -> this.onPressTest());
 
+        PaceManTrackerOptions.addChangeListener(this.optionsListener);
+
+        this.updateStatus();
+        this.statusTimer = new Timer(1000, e -> this.updateStatus());
+        this.statusTimer.start();
+
         this.revalidate();
-        this.setMinimumSize(new Dimension(300, (asPlugin ? 140 : 120) + (RESET_STATS_OPTION_USABLE ? 20 : 0)));
+        this.setMinimumSize(new Dimension(300, (asPlugin ? 160 : 140) + (RESET_STATS_OPTION_USABLE ? 20 : 0)));
         this.pack();
         this.setResizable(false);
         this.setVisible(actuallyShow);
@@ -109,6 +129,16 @@ public class PaceManTrackerGUI extends JFrame {
         return instance;
     }
 
+    public void showUpdateAvailable(VersionUtil.Version latestVersion) {
+        if (0 == JOptionPane.showConfirmDialog(this, "An update is available (v" + latestVersion + "), would you like to go to the latest release page?", "PaceMan Tracker: Update Available", JOptionPane.YES_NO_OPTION, JOptionPane.INFORMATION_MESSAGE)) {
+            try {
+                Desktop.getDesktop().browse(URI.create(UpdateUtil.LATEST_RELEASE_PAGE));
+            } catch (IOException e) {
+                PaceManTracker.logError("Failed to open the latest release page: " + e);
+            }
+        }
+    }
+
     private void updateEnabledFields() {
         boolean enabled = !this.asPlugin || this.checkBoxEnabled();
         this.accessKeyField.setEnabled(enabled);
@@ -120,10 +150,10 @@ public class PaceManTrackerGUI extends JFrame {
     private void onPressTest() {
         this.save();
         this.testButton.setEnabled(false);
-        new Thread(() -> {
+        NetworkExecutor.get().execute(() -> {
             this.testKey();
             this.testButton.setEnabled(true);
-        }, "test-button").start();
+        });
     }
 
     private void testKey() {
@@ -148,8 +178,17 @@ public class PaceManTrackerGUI extends JFrame {
         }
 
         PostUtil.PostResponse response = PaceManTracker.testAccessKey(options.accessKey);
-        if (response == null || response.getCode() >= 300) {
-            onFailure.accept(response == null ? "Access key is not valid! (no response)" : "Access key is not valid! (" + response.getCode() + ": " + response.getMessage() + ")");
+        if (response == null) {
+            // Connection errors and requests held back by the circuit breaker say nothing about the key
+            onFailure.accept("Could not reach PaceMan.gg, please check your connection and try again later.");
+            return;
+        }
+        if (response.getCode() == 429 || response.getCode() >= 500) {
+            onFailure.accept("PaceMan.gg is unavailable right now, please try again later. (" + response.getCode() + ")");
+            return;
+        }
+        if (response.getCode() >= 300) {
+            onFailure.accept("Access key is not valid! (" + response.getCode() + ": " + response.getMessage() + ")");
             return;
         }
 
@@ -162,17 +201,60 @@ public class PaceManTrackerGUI extends JFrame {
     }
 
     private void save() {
-        PaceManTrackerOptions options = PaceManTrackerOptions.getInstance();
-        options.enabledForPlugin = this.checkBoxEnabled();
-        options.resetStatsEnabled = this.resetStatsEnabled();
-        options.accessKey = this.getKeyBoxText().trim();
         try {
-            options.save();
+            PaceManTrackerOptions.update(options -> options
+                    .withEnabledForPlugin(this.checkBoxEnabled())
+                    .withResetStatsEnabled(this.resetStatsEnabled())
+                    .withAccessKey(this.getKeyBoxText().trim()));
         } catch (IOException ex) {
             throw new RuntimeException(ex);
         }
         this.updateButtons();
-        PaceManTracker.jingleQABRefresh.run();
+    }
+
+    /**
+     * Shows options changed elsewhere (options.json edits, the Jingle quick action button), unless they would
+     * overwrite unsaved changes in the GUI.
+     */
+    private void onOptionsChange(PaceManTrackerOptions oldOptions, PaceManTrackerOptions newOptions) {
+        SwingUtilities.invokeLater(() -> {
+            boolean hadChanges = (this.asPlugin && this.checkBoxEnabled() != oldOptions.enabledForPlugin) || (this.resetStatsEnabled() != oldOptions.resetStatsEnabled) || (!Objects.equals(this.getKeyBoxText(), oldOptions.accessKey));
+            if (!hadChanges) {
+                this.enabledCheckBox.setSelected(newOptions.enabledForPlugin);
+                this.resetStatsEnabled.setSelected(newOptions.resetStatsEnabled);
+                this.accessKeyField.setText(newOptions.accessKey);
+                if (this.asPlugin) {
+                    this.updateEnabledFields();
+                }
+            }
+            this.updateButtons();
+        });
+    }
+
+    private void updateStatus() {
+        Hibernation hibernation = PaceManTracker.getInstance().getHibernation();
+        String status = hibernation.isHibernating() ? "Status: Hibernating (no game activity)" : "Status: Active";
+        long hibernatedMinutes = TimeUnit.MILLISECONDS.toMinutes(hibernation.getTotalHibernatedMillis());
+        if (hibernatedMinutes > 0) {
+            status += ", " + (hibernatedMinutes >= 60 ? (hibernatedMinutes / 60) + "h " : "") + (hibernatedMinutes % 60) + "m saved";
+        }
+        for (CircuitBreaker breaker : PaceManTracker.getCircuitBreakers()) {
+            if (breaker.getState() == CircuitBreaker.State.OPEN) {
+                status += ", PaceMan.gg unreachable (retry in " + (breaker.getMillisUntilPermitted() + 999) / 1000 + "s)";
+                break;
+            }
+        }
+        ResetAnalytics resetAnalytics = PaceManTracker.getInstance().getResetAnalytics();
+        ResetAnalytics.Summary hour = resetAnalytics.getSummary(ResetAnalytics.Window.HOUR);
+        if (hour.resets > 0) {
+            status += String.format(", %.0f resets/h, %.2f nethers/h", hour.resetsPerHour, hour.nethersPerHour);
+        }
+        this.statusLabel.setText(status);
+        List<String> tooltip = new ArrayList<>();
+        tooltip.add("Resets in the " + hour);
+        tooltip.add("Resets in the " + resetAnalytics.getSummary(ResetAnalytics.Window.DAY));
+        PaceManTracker.getCircuitBreakers().forEach(breaker -> tooltip.add("PaceMan.gg requests, " + breaker.describe()));
+        this.statusLabel.setToolTipText("<html>" + String.join("<br>", tooltip) + "</html>");
     }
 
     private void updateButtons() {
@@ -202,6 +284,8 @@ public class PaceManTrackerGUI extends JFrame {
         if (!this.asPlugin) {
             PaceManTracker.getInstance().stop();
         }
+        this.statusTimer.stop();
+        PaceManTrackerOptions.removeChangeListener(this.optionsListener);
         this.closed = true;
     }
 
@@ -221,7 +305,7 @@ public class PaceManTrackerGUI extends JFrame {
      */
     private void $$$setupUI$$$() {
         mainPanel = new JPanel();
-        mainPanel.setLayout(new GridLayoutManager(6, 2, new Insets(5, 5, 5, 5), -1, -1));
+        mainPanel.setLayout(new GridLayoutManager(7, 2, new Insets(5, 5, 5, 5), -1, -1));
         final JLabel label1 = new JLabel();
         label1.setText("PaceMan Tracker");
         mainPanel.add(label1, new GridConstraints(0, 0, 1, 2, GridConstraints.ANCHOR_CENTER, GridConstraints.FILL_NONE, GridConstraints.SIZEPOLICY_FIXED, GridConstraints.SIZEPOLICY_FIXED, null, null, null, 0, false));
@@ -241,13 +325,16 @@ public class PaceManTrackerGUI extends JFrame {
         label2.setText("Access Key:");
         panel1.add(label2, new GridConstraints(0, 0, 1, 1, GridConstraints.ANCHOR_WEST, GridConstraints.FILL_NONE, GridConstraints.SIZEPOLICY_FIXED, GridConstraints.SIZEPOLICY_FIXED, null, null, null, 0, false));
         final Spacer spacer1 = new Spacer();
-        mainPanel.add(spacer1, new GridConstraints(5, 0, 1, 2, GridConstraints.ANCHOR_CENTER, GridConstraints.FILL_VERTICAL, 1, GridConstraints.SIZEPOLICY_WANT_GROW, null, null, null, 0, false));
+        mainPanel.add(spacer1, new GridConstraints(6, 0, 1, 2, GridConstraints.ANCHOR_CENTER, GridConstraints.FILL_VERTICAL, 1, GridConstraints.SIZEPOLICY_WANT_GROW, null, null, null, 0, false));
         saveButton = new JButton();
         saveButton.setText("Save");
         mainPanel.add(saveButton, new GridConstraints(4, 0, 1, 1, GridConstraints.ANCHOR_EAST, GridConstraints.FILL_NONE, GridConstraints.SIZEPOLICY_CAN_SHRINK | GridConstraints.SIZEPOLICY_CAN_GROW, GridConstraints.SIZEPOLICY_FIXED, null, null, null, 0, false));
         testButton = new JButton();
         testButton.setText("Test");
         mainPanel.add(testButton, new GridConstraints(4, 1, 1, 1, GridConstraints.ANCHOR_WEST, GridConstraints.FILL_NONE, GridConstraints.SIZEPOLICY_CAN_SHRINK | GridConstraints.SIZEPOLICY_CAN_GROW, GridConstraints.SIZEPOLICY_FIXED, null, null, null, 0, false));
+        statusLabel = new JLabel();
+        statusLabel.setText("Status: Active");
+        mainPanel.add(statusLabel, new GridConstraints(5, 0, 1, 2, GridConstraints.ANCHOR_CENTER, GridConstraints.FILL_NONE, GridConstraints.SIZEPOLICY_FIXED, GridConstraints.SIZEPOLICY_FIXED, null, null, null, 0, false));
     }
 
     /**
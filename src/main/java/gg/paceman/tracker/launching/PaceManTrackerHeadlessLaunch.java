@@ -0,0 +1,65 @@
+package gg.paceman.tracker.launching;
+
+import gg.paceman.tracker.PaceManTracker;
+import gg.paceman.tracker.PaceManTrackerOptions;
+import gg.paceman.tracker.util.LockUtil;
+import gg.paceman.tracker.util.SleepUtil;
+import gg.paceman.tracker.util.UpdateUtil;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Launches PaceMan as a standalone program without a GUI. This class must only use the tracker core (no Swing, FlatLaf
+ * or GUI classes) so that it can be the entrypoint of the headless jar.
+ */
+public class PaceManTrackerHeadlessLaunch {
+    private static LockUtil.LockStuff lockStuff;
+
+    public static void main(String[] args) throws IOException {
+        List<String> argList = Arrays.asList(args);
+
+        if (!argList.contains("--skiplocks")) {
+            PaceManTrackerHeadlessLaunch.checkLock();
+        }
+
+        PaceManTrackerOptions.tryLoad().save();
+        PaceManTracker.VERSION = Optional.ofNullable(PaceManTrackerHeadlessLaunch.class.getPackage().getImplementationVersion()).orElse("DEV");
+        PaceManTracker.log("Running PaceMan Tracker v" + PaceManTracker.VERSION + " (no GUI)");
+        PaceManTracker.getInstance().start(false);
+        if (argList.contains("--cdstraining")) {
+            PaceManTrackerHeadlessLaunch.exitAfterTraining();
+            return;
+        }
+        UpdateUtil.checkForUpdatesAsync(PaceManTracker.VERSION, null);
+    }
+
+    /**
+     * Used by the cdsArchive Gradle task: lets the first ticks run so their classes get loaded, then exits so that the
+     * JVM can dump the class-data-sharing archive.
+     */
+    static void exitAfterTraining() {
+        Thread thread = new Thread(() -> {
+            SleepUtil.sleep(1000);
+            PaceManTracker.getInstance().stop();
+            System.exit(0);
+        }, "cds-training");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void checkLock() {
+        PaceManTrackerOptions.ensurePaceManDir();
+        Path lockPath = PaceManTrackerOptions.getPaceManDir().resolve("LOCK");
+        if (LockUtil.isLocked(lockPath)) {
+            System.out.println("PaceMan Tracker is already opened, you cannot run another instance. (Not recommended: use --skiplocks to bypass)");
+            System.exit(0);
+        } else {
+            lockStuff = LockUtil.lock(lockPath);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> LockUtil.releaseLock(lockStuff)));
+        }
+    }
+}
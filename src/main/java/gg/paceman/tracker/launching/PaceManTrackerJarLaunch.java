@@ -3,8 +3,8 @@ package gg.paceman.tracker.launching;
 import com.formdev.flatlaf.FlatDarkLaf;
 import gg.paceman.tracker.PaceManTracker;
 import gg.paceman.tracker.PaceManTrackerOptions;
+import gg.paceman.tracker.gui.CrashDialog;
 import gg.paceman.tracker.gui.PaceManTrackerGUI;
-import gg.paceman.tracker.util.ExceptionUtil;
 import gg.paceman.tracker.util.LockUtil;
 import gg.paceman.tracker.util.UpdateUtil;
 
@@ -25,6 +25,11 @@ public class PaceManTrackerJarLaunch {
 
     public static void main(String[] args) throws IOException {
         PaceManTrackerJarLaunch.args = Arrays.asList(args);
+        if (PaceManTrackerJarLaunch.args.contains("--nogui")) {
+            // Skip the look and feel and the rest of Swing entirely
+            PaceManTrackerHeadlessLaunch.main(args);
+            return;
+        }
         FlatDarkLaf.setup();
 
         if (!PaceManTrackerJarLaunch.args.contains("--skiplocks")) {
@@ -32,31 +37,24 @@ public class PaceManTrackerJarLaunch {
         }
 
         PaceManTrackerOptions.tryLoad().save();
-        PaceManTrackerGUI gui = null;
-        if (!PaceManTrackerJarLaunch.args.contains("--nogui")) {
-            gui = PaceManTrackerGUI.open(false, null);
-            gui.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
-        }
+        PaceManTrackerGUI gui = PaceManTrackerGUI.open(false, null);
+        gui.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
+        PaceManTracker.crashHandler = CrashDialog::showAndExit;
         PaceManTracker.VERSION = Optional.ofNullable(PaceManTrackerJarLaunch.class.getPackage().getImplementationVersion()).orElse("DEV");
         PaceManTracker.log("Running PaceMan Tracker v" + PaceManTracker.VERSION);
         PaceManTracker.getInstance().start(false);
-        try {
-            UpdateUtil.checkForUpdates(gui, PaceManTracker.VERSION);
-        } catch (IOException e) {
-            PaceManTracker.logError("Failed to check for an update for PaceMan Tracker:\n" + ExceptionUtil.toDetailedString(e));
+        if (PaceManTrackerJarLaunch.args.contains("--cdstraining")) {
+            PaceManTrackerHeadlessLaunch.exitAfterTraining();
+            return;
         }
+        UpdateUtil.checkForUpdatesAsync(PaceManTracker.VERSION, v -> SwingUtilities.invokeLater(() -> gui.showUpdateAvailable(v)));
     }
 
     private static void checkLock() {
         PaceManTrackerOptions.ensurePaceManDir();
         Path lockPath = PaceManTrackerOptions.getPaceManDir().resolve("LOCK");
         if (LockUtil.isLocked(lockPath)) {
-            if (PaceManTrackerJarLaunch.args.contains("--nogui")) {
-                System.out.println("PaceMan Tracker is already opened, you cannot run another instance. (Not recommended: use --skiplocks to bypass)");
-                System.exit(0);
-            } else {
-                PaceManTrackerJarLaunch.showMultiTrackerWarning();
-            }
+            PaceManTrackerJarLaunch.showMultiTrackerWarning();
         } else {
             lockStuff = LockUtil.lock(lockPath);
             Runtime.getRuntime().addShutdownHook(new Thread(() -> LockUtil.releaseLock(lockStuff)));
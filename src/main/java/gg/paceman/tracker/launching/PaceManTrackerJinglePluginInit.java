@@ -57,6 +57,8 @@ public class PaceManTrackerJinglePluginInit {
         PaceManTracker.debugConsumer = m -> Jingle.log(Level.DEBUG, "(PaceMan Tracker) " + m);
         PaceManTracker.errorConsumer = m -> Jingle.log(Level.ERROR, "(PaceMan Tracker) " + m);
         PaceManTracker.warningConsumer = m -> Jingle.log(Level.WARN, "(PaceMan Tracker) " + m);
+        // Don't build debug messages that Jingle won't show
+        PaceManTracker.debugEnabled = () -> Jingle.options != null && Jingle.options.showDebug;
     }
 
     public static void initialize() {
@@ -78,6 +80,11 @@ public class PaceManTrackerJinglePluginInit {
             PaceManTracker.log("Loaded PaceMan Tracker v" + PaceManTracker.VERSION);
         }
         PaceManTracker tracker = PaceManTracker.getInstance();
+        // Jingle already watches the main instance's state, so take state changes from it instead of polling as often
+        tracker.getStateTracker().useHostStateEvents();
+        Runnable onMainInstanceState = () -> Jingle.getMainInstance().ifPresent(instance -> tracker.getStateTracker().onHostStateChange(instance.instancePath));
+        PluginEvents.STATE_CHANGE.register(onMainInstanceState);
+        PluginEvents.MAIN_INSTANCE_CHANGED.register(onMainInstanceState);
         tracker.start(true);
         PluginEvents.STOP.register(tracker::stop);
 
@@ -94,15 +101,14 @@ public class PaceManTrackerJinglePluginInit {
             return JingleGUI.makeButton(
                     options.enabledForPlugin ? "Disable PaceMan" : "Enable PaceMan",
                     () -> {
-                        options.enabledForPlugin = !options.enabledForPlugin;
-                        paceManTrackerGUI.enabledCheckBox.setSelected(options.enabledForPlugin);
-                        JingleGUI.get().refreshQuickActions();
-                        JingleGUI.get().refreshHack();
+                        PaceManTrackerOptions newOptions;
                         try {
-                            options.save();
+                            newOptions = PaceManTrackerOptions.update(o -> o.withEnabledForPlugin(!o.enabledForPlugin));
                         } catch (IOException ex) {
                             throw new RuntimeException(ex);
                         }
+                        paceManTrackerGUI.enabledCheckBox.setSelected(newOptions.enabledForPlugin);
+                        JingleGUI.get().refreshHack();
                     },
                     () -> JingleGUI.get().openTab(pmtPanel),
                     "Right Click to Configure",
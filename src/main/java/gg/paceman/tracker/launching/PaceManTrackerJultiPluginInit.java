@@ -8,6 +8,7 @@ import gg.paceman.tracker.util.LockUtil;
 import org.apache.logging.log4j.Level;
 import xyz.duncanruns.julti.Julti;
 import xyz.duncanruns.julti.JultiAppLaunch;
+import xyz.duncanruns.julti.JultiOptions;
 import xyz.duncanruns.julti.gui.JultiGUI;
 import xyz.duncanruns.julti.gui.PluginsGUI;
 import xyz.duncanruns.julti.plugin.PluginEvents;
@@ -58,6 +59,8 @@ public class PaceManTrackerJultiPluginInit implements PluginInitializer {
         PaceManTracker.debugConsumer = m -> Julti.log(Level.DEBUG, "(PaceMan Tracker) " + m);
         PaceManTracker.errorConsumer = m -> Julti.log(Level.ERROR, "(PaceMan Tracker) " + m);
         PaceManTracker.warningConsumer = m -> Julti.log(Level.WARN, "(PaceMan Tracker) " + m);
+        // Don't build debug messages that Julti won't show
+        PaceManTracker.debugEnabled = () -> JultiOptions.getJultiOptions().showDebug;
     }
 
     @Override
@@ -80,6 +83,10 @@ public class PaceManTrackerJultiPluginInit implements PluginInitializer {
             PaceManTracker.log("Loaded PaceMan Tracker v" + PaceManTracker.VERSION);
         }
         PaceManTracker tracker = PaceManTracker.getInstance();
+        // Julti already watches every instance's state, so take state changes from it instead of polling as often
+        tracker.getStateTracker().useHostStateEvents();
+        PluginEvents.InstanceEventType.STATE_CHANGE.register(instance -> tracker.getStateTracker().onHostStateChange(instance.getPath()));
+        PluginEvents.InstanceEventType.ACTIVATE.register(instance -> tracker.getStateTracker().onHostStateChange(instance.getPath()));
         tracker.start(true);
         PluginEvents.RunnableEventType.STOP.register(tracker::stop);
         PluginEvents.RunnableEventType.PRE_UPDATE.register(tracker::stop);
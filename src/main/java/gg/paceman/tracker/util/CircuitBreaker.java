@@ -0,0 +1,196 @@
+package gg.paceman.tracker.util;
+
+import gg.paceman.tracker.PaceManTracker;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Guards one endpoint against hammering a server that is down, overloaded or rate limiting us.
+ * <ul>
+ *     <li>Opens after {@link #FAILURE_THRESHOLD} failures in a row (connection errors, 5xx responses, or successful
+ *     calls slower than {@link #SLOW_CALL_MILLIS}), or immediately on a 429 response.</li>
+ *     <li>While open, calls are rejected without touching the network, for an increasing time (or as long as the
+ *     server's Retry-After asks for).</li>
+ *     <li>Then a single trial call is let through (half open), which closes or re-opens the circuit.</li>
+ *     <li>A token bucket limits how often calls are made even while everything works.</li>
+ * </ul>
+ * Denials (other 4xx responses) mean the server is up and are not failures.
+ */
+public final class CircuitBreaker {
+    private static final int FAILURE_THRESHOLD = 3;
+    // Well under the request timeout, which would cancel a call before it could count as slow
+    private static final long SLOW_CALL_MILLIS = 3_000;
+    private static final long BASE_OPEN_MILLIS = 15_000;
+    private static final long MAX_OPEN_MILLIS = 5 * 60_000;
+
+    private final String name;
+    private final int bucketCapacity;
+    private final double tokensPerMilli;
+    private final LongSupplier clock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private int consecutiveOpens = 0;
+    private long openUntil = 0;
+    private boolean trialInFlight = false;
+    private double tokens;
+    private long lastRefill;
+    private String lastFailure = null;
+
+    private long calls = 0;
+    private long failures = 0;
+    private long rejected = 0;
+
+    /**
+     * @param name            shown in logs and the GUI
+     * @param bucketCapacity  the most calls that can be made in a burst
+     * @param tokensPerSecond the sustained calls per second
+     */
+    public CircuitBreaker(String name, int bucketCapacity, double tokensPerSecond) {
+        this(name, bucketCapacity, tokensPerSecond, System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock the current time in milliseconds, replaced by dev checks to step through backoffs without waiting
+     */
+    public CircuitBreaker(String name, int bucketCapacity, double tokensPerSecond, LongSupplier clock) {
+        this.name = name;
+        this.bucketCapacity = bucketCapacity;
+        this.tokensPerMilli = tokensPerSecond / 1000;
+        this.clock = clock;
+        this.tokens = bucketCapacity;
+        this.lastRefill = clock.getAsLong();
+    }
+
+    /**
+     * Takes permission to make a call.
+     *
+     * @return 0 if the call may be made now, otherwise the milliseconds until it might be allowed
+     */
+    public synchronized long tryAcquire() {
+        long now = this.clock.getAsLong();
+        if (this.state == State.OPEN) {
+            if (now < this.openUntil) {
+                this.rejected++;
+                return this.openUntil - now;
+            }
+            this.setState(State.HALF_OPEN);
+        }
+        if (this.state == State.HALF_OPEN && this.trialInFlight) {
+            this.rejected++;
+            return 1000;
+        }
+        this.refill(now);
+        if (this.tokens < 1) {
+            this.rejected++;
+            return (long) Math.ceil((1 - this.tokens) / this.tokensPerMilli);
+        }
+        this.tokens--;
+        this.calls++;
+        if (this.state == State.HALF_OPEN) {
+            this.trialInFlight = true;
+        }
+        return 0;
+    }
+
+    public synchronized void onSuccess(long latencyMillis) {
+        if (latencyMillis > SLOW_CALL_MILLIS) {
+            this.onFailure("took " + latencyMillis + "ms", -1);
+            return;
+        }
+        if (this.state == State.OPEN) {
+            // A call that started before the circuit opened, only the half open trial call closes it
+            return;
+        }
+        this.trialInFlight = false;
+        this.consecutiveFailures = 0;
+        this.consecutiveOpens = 0;
+        this.setState(State.CLOSED);
+    }
+
+    /**
+     * @param retryAfterMillis how long the server asked us to wait, or -1
+     */
+    public synchronized void onFailure(String reason, long retryAfterMillis) {
+        this.trialInFlight = false;
+        this.failures++;
+        this.lastFailure = reason;
+        if (this.state == State.OPEN) {
+            // A call that started before the circuit opened, don't back off further for it
+            this.openUntil = Math.max(this.openUntil, this.clock.getAsLong() + Math.min(retryAfterMillis, MAX_OPEN_MILLIS));
+            return;
+        }
+        if (this.state == State.HALF_OPEN || ++this.consecutiveFailures >= FAILURE_THRESHOLD || retryAfterMillis > 0) {
+            this.open(retryAfterMillis);
+        }
+    }
+
+    /**
+     * A 429 response, opens immediately for as long as the server asks, or the usual backoff if it doesn't say.
+     */
+    public synchronized void onRateLimited(long retryAfterMillis) {
+        this.trialInFlight = false;
+        this.failures++;
+        this.lastFailure = "rate limited";
+        if (this.state == State.OPEN) {
+            this.openUntil = Math.max(this.openUntil, this.clock.getAsLong() + Math.min(retryAfterMillis, MAX_OPEN_MILLIS));
+            return;
+        }
+        this.open(retryAfterMillis);
+    }
+
+    public synchronized State getState() {
+        if (this.state == State.OPEN && this.clock.getAsLong() >= this.openUntil) {
+            return State.HALF_OPEN;
+        }
+        return this.state;
+    }
+
+    /**
+     * @return the milliseconds until calls may be attempted again, 0 if they may be now
+     */
+    public synchronized long getMillisUntilPermitted() {
+        return this.state == State.OPEN ? Math.max(0, this.openUntil - this.clock.getAsLong()) : 0;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * @return the state and counters, for logs and the GUI
+     */
+    public synchronized String describe() {
+        String stateString = this.getState() == State.OPEN ? "open for " + (this.getMillisUntilPermitted() + 999) / 1000 + "s" : this.getState().name().toLowerCase().replace('_', ' ');
+        return String.format("%s: %s, %d calls, %d failed, %d not attempted%s", this.name, stateString, this.calls, this.failures, this.rejected, this.lastFailure == null ? "" : ", last failure: " + this.lastFailure);
+    }
+
+    private void open(long retryAfterMillis) {
+        long backoff = Math.min(MAX_OPEN_MILLIS, BASE_OPEN_MILLIS << Math.min(this.consecutiveOpens, 10));
+        this.consecutiveOpens++;
+        this.openUntil = this.clock.getAsLong() + Math.max(backoff, Math.min(retryAfterMillis, MAX_OPEN_MILLIS));
+        this.consecutiveFailures = 0;
+        this.setState(State.OPEN);
+    }
+
+    private void refill(long now) {
+        this.tokens = Math.min(this.bucketCapacity, this.tokens + (now - this.lastRefill) * this.tokensPerMilli);
+        this.lastRefill = now;
+    }
+
+    private void setState(State state) {
+        if (this.state == state) {
+            return;
+        }
+        this.state = state;
+        if (state == State.OPEN) {
+            PaceManTracker.logWarning("PaceMan.gg " + this.name + " requests paused for " + (this.openUntil - this.clock.getAsLong() + 999) / 1000 + "s after failures (" + this.lastFailure + ")");
+        } else {
+            PaceManTracker.logDebug(() -> "PaceMan.gg " + this.name + " circuit " + state.name().toLowerCase().replace('_', ' '));
+        }
+    }
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+}
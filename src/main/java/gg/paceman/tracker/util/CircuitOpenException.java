@@ -0,0 +1,21 @@
+package gg.paceman.tracker.util;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of sending a request when its endpoint's {@link CircuitBreaker} doesn't allow it.
+ */
+public class CircuitOpenException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final long retryInMillis;
+
+    public CircuitOpenException(CircuitBreaker breaker, long retryInMillis) {
+        super("Not sending " + breaker.getName() + " request, PaceMan.gg is unavailable or rate limiting (retry in " + (retryInMillis + 999) / 1000 + "s)");
+        this.retryInMillis = retryInMillis;
+    }
+
+    public long getRetryInMillis() {
+        return this.retryInMillis;
+    }
+}
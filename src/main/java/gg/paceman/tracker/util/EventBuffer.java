@@ -0,0 +1,156 @@
+package gg.paceman.tracker.util;
+
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An append-only list of event lines stored back to back as a JSON array of strings, UTF-8 encoded in a single byte
+ * array, with an index of where each line ends. Lines are escaped once when added, so writing the array into a payload
+ * decodes it in one go instead of making a String per event on every send. Clearing only resets the counters, so the
+ * arrays are reused for the next run.
+ * <p>
+ * Not thread safe.
+ */
+public final class EventBuffer {
+    private static final int INITIAL_BYTES = 4096;
+    private static final int INITIAL_LINES = 64;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    // Always starts with '[' and has room for the closing ']' after byteCount
+    private byte[] bytes = new byte[INITIAL_BYTES];
+    private int[] ends = new int[INITIAL_LINES];
+    private int byteCount = 1;
+    private int lineCount = 0;
+
+    public EventBuffer() {
+        this.bytes[0] = '[';
+    }
+
+    public void add(String line) {
+        // At most 6 bytes per char (an escaped control char), the quotes, a comma and the closing bracket
+        int maxBytes = this.byteCount + line.length() * 6 + 4;
+        if (maxBytes > this.bytes.length) {
+            this.bytes = Arrays.copyOf(this.bytes, Math.max(this.bytes.length * 2, maxBytes));
+        }
+        if (this.lineCount == this.ends.length) {
+            this.ends = Arrays.copyOf(this.ends, this.ends.length * 2);
+        }
+        if (this.lineCount > 0) {
+            this.bytes[this.byteCount++] = ',';
+        }
+        this.bytes[this.byteCount++] = '"';
+        this.appendEscaped(line);
+        this.bytes[this.byteCount++] = '"';
+        this.ends[this.lineCount++] = this.byteCount;
+    }
+
+    /**
+     * Escapes like a JsonWriter without HTML escaping and encodes to UTF-8, straight into the byte array.
+     */
+    private void appendEscaped(String line) {
+        byte[] bytes = this.bytes;
+        int pos = this.byteCount;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"' || c == '\\') {
+                bytes[pos++] = '\\';
+                bytes[pos++] = (byte) c;
+            } else if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                bytes[pos++] = '\\';
+                switch (c) {
+                    case '\t':
+                        bytes[pos++] = 't';
+                        break;
+                    case '\b':
+                        bytes[pos++] = 'b';
+                        break;
+                    case '\n':
+                        bytes[pos++] = 'n';
+                        break;
+                    case '\r':
+                        bytes[pos++] = 'r';
+                        break;
+                    case '\f':
+                        bytes[pos++] = 'f';
+                        break;
+                    default:
+                        bytes[pos++] = 'u';
+                        bytes[pos++] = HEX[c >> 12];
+                        bytes[pos++] = HEX[(c >> 8) & 0xf];
+                        bytes[pos++] = HEX[(c >> 4) & 0xf];
+                        bytes[pos++] = HEX[c & 0xf];
+                        break;
+                }
+            } else if (c < 0x80) {
+                bytes[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[pos++] = (byte) (0xc0 | (c >> 6));
+                bytes[pos++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < line.length() && Character.isLowSurrogate(line.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, line.charAt(++i));
+                    bytes[pos++] = (byte) (0xf0 | (codePoint >> 18));
+                    bytes[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                    bytes[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                    bytes[pos++] = (byte) (0x80 | (codePoint & 0x3f));
+                } else {
+                    // Unpaired surrogate, replaced the same way String.getBytes does
+                    bytes[pos++] = '?';
+                }
+            } else {
+                bytes[pos++] = (byte) (0xe0 | (c >> 12));
+                bytes[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                bytes[pos++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        this.byteCount = pos;
+    }
+
+    public void addAll(List<String> lines) {
+        lines.forEach(this::add);
+    }
+
+    public int size() {
+        return this.lineCount;
+    }
+
+    public boolean isEmpty() {
+        return this.lineCount == 0;
+    }
+
+    public void clear() {
+        this.byteCount = 1;
+        this.lineCount = 0;
+    }
+
+    public String get(int index) {
+        if (index < 0 || index >= this.lineCount) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.lineCount);
+        }
+        // Skip the '[' or ',' before the string literal
+        int start = (index == 0 ? 0 : this.ends[index - 1]) + 1;
+        return JsonParser.parseString(new String(this.bytes, start, this.ends[index] - start, StandardCharsets.UTF_8)).getAsString();
+    }
+
+    public List<String> toList() {
+        List<String> lines = new ArrayList<>(this.lineCount);
+        for (int i = 0; i < this.lineCount; i++) {
+            lines.add(this.get(i));
+        }
+        return lines;
+    }
+
+    /**
+     * Writes the lines as a JSON array of strings.
+     */
+    public void writeJsonArray(JsonWriter writer) throws IOException {
+        this.bytes[this.byteCount] = ']';
+        writer.jsonValue(new String(this.bytes, 0, this.byteCount + 1, StandardCharsets.UTF_8));
+    }
+}
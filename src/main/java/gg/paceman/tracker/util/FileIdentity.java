@@ -0,0 +1,61 @@
+package gg.paceman.tracker.util;
+
+import javax.annotation.Nullable;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Objects;
+
+/**
+ * Identifies a file independently of its path and contents, to tell a file that grew apart from one that was deleted
+ * and recreated at the same path. Uses the file key (device and inode) where the file system has one, and the creation
+ * time otherwise (Windows). File systems with neither (zip file systems) can't tell files apart, so every identity on
+ * them is the same and replacements are only noticed by the file shrinking.
+ */
+public final class FileIdentity {
+    @Nullable
+    private final String fileKey;
+    private final long creationTime;
+
+    private FileIdentity(@Nullable String fileKey, long creationTime) {
+        this.fileKey = fileKey;
+        this.creationTime = creationTime;
+    }
+
+    public static FileIdentity of(BasicFileAttributes attributes) {
+        Object fileKey = attributes.fileKey();
+        FileTime creationTime = attributes.creationTime();
+        return new FileIdentity(fileKey == null ? null : fileKey.toString(), creationTime == null ? -1 : creationTime.toMillis());
+    }
+
+    /**
+     * @return true if both identities likely belong to the same file
+     */
+    public boolean isSameFile(@Nullable FileIdentity other) {
+        if (other == null) {
+            return false;
+        }
+        if (this.fileKey != null && other.fileKey != null) {
+            // Some file systems report the modification time as the creation time, so it can't be compared here
+            return this.fileKey.equals(other.fileKey);
+        }
+        return this.creationTime == other.creationTime;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || this.getClass() != o.getClass()) return false;
+        FileIdentity that = (FileIdentity) o;
+        return this.creationTime == that.creationTime && Objects.equals(this.fileKey, that.fileKey);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.fileKey, this.creationTime);
+    }
+
+    @Override
+    public String toString() {
+        return (this.fileKey == null ? "" : this.fileKey + "@") + this.creationTime;
+    }
+}
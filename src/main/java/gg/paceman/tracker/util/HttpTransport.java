@@ -0,0 +1,79 @@
+package gg.paceman.tracker.util;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+
+/**
+ * The HTTP client behind {@link PostUtil}. This is the Java 8 version using HttpURLConnection, Java 11+ runtimes load
+ * the java.net.http version in META-INF/versions/11 of the multi-release jar.
+ */
+final class HttpTransport {
+
+    private HttpTransport() {
+    }
+
+    static String getName() {
+        return "HttpURLConnection";
+    }
+
+    static PostUtil.PostResponse post(String endpointUrl, String jsonData) throws IOException {
+        // Create URL object
+        URL url = new URL(endpointUrl);
+        HttpURLConnection connection = null;
+        try {
+            // Open connection
+            connection = (HttpURLConnection) url.openConnection();
+
+            // Set the necessary properties
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setDoOutput(true);
+            connection.setConnectTimeout(PostUtil.CONNECT_TIMEOUT_MILLIS);
+            connection.setReadTimeout(PostUtil.READ_TIMEOUT_MILLIS);
+
+            // Write JSON data to the connection output stream
+            try (OutputStream os = connection.getOutputStream()) {
+                byte[] input = jsonData.getBytes(StandardCharsets.UTF_8);
+                os.write(input, 0, input.length);
+            }
+            int responseCode = connection.getResponseCode();
+            String message = responseCode >= 400 ? HttpTransport.readStream(connection.getErrorStream()) : connection.getResponseMessage();
+
+
+            // Return the response code
+            return new PostUtil.PostResponse(responseCode, message, PostUtil.parseRetryAfter(connection.getHeaderField("Retry-After")));
+        } finally {
+            // Close the connection
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    static CompletableFuture<PostUtil.PostResponse> postAsync(String endpointUrl, String jsonData) {
+        // HttpURLConnection has no async API, so block a network executor thread instead
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return HttpTransport.post(endpointUrl, jsonData);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, NetworkExecutor.get());
+    }
+
+    /**
+     * @param inputStream null when the response has no body
+     */
+    private static String readStream(InputStream inputStream) {
+        if (inputStream == null) {
+            return "";
+        }
+        // UTF-8 like the java.net.http version, not the platform charset
+        return new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8)).lines().collect(Collectors.joining("\n"));
+    }
+}
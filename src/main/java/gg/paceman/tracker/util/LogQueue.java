@@ -0,0 +1,131 @@
+package gg.paceman.tracker.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A bounded ring buffer of log messages drained by a single daemon thread, so that slow log consumers (Julti/Jingle
+ * log panes, stdout) never block the thread that logged. When full, the oldest message is dropped to make room.
+ */
+public final class LogQueue {
+    private final ArrayBlockingQueue<Entry> queue;
+    private final AtomicInteger dropped = new AtomicInteger(0);
+    // Every message gets the next number when submitted, the drain thread records the last one it delivered. Numbers
+    // are taken and queued under one lock, so the queue is always in number order.
+    private final Object submitLock = new Object();
+    private final AtomicLong submitted = new AtomicLong(0);
+    private final Object deliveredLock = new Object();
+    private long delivered = 0;
+    private final Consumer<String> dropReporter;
+    private volatile Thread drainThread;
+
+    /**
+     * @param capacity     the maximum amount of messages waiting to be delivered
+     * @param dropReporter where to report how many messages were dropped, called from the drain thread
+     */
+    public LogQueue(int capacity, Consumer<String> dropReporter) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.dropReporter = dropReporter;
+    }
+
+    /**
+     * Queues a message to be given to the consumer on the drain thread. Never waits on the consumer, only briefly on
+     * other threads submitting at the same time.
+     *
+     * @param consumer a supplier of the consumer, resolved on the drain thread so swapped consumers are respected
+     */
+    public void submit(Supplier<Consumer<String>> consumer, String message) {
+        this.ensureStarted();
+        synchronized (this.submitLock) {
+            Entry entry = new Entry(this.submitted.incrementAndGet(), consumer, message);
+            while (!this.queue.offer(entry)) {
+                if (this.queue.poll() != null) {
+                    this.dropped.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits up to the given amount of milliseconds for all messages submitted so far to be delivered (or dropped),
+     * including one the drain thread already took from the queue but is still delivering.
+     */
+    public void flush(long timeoutMillis) {
+        long target = this.submitted.get();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (this.deliveredLock) {
+            long remaining;
+            // Messages are delivered in order, so a later one being delivered means the earlier ones were dropped
+            while (this.delivered < target && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                try {
+                    this.deliveredLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void ensureStarted() {
+        if (this.drainThread != null) {
+            return;
+        }
+        synchronized (this) {
+            if (this.drainThread != null) {
+                return;
+            }
+            Thread thread = new Thread(this::drainLoop, "paceman-log");
+            thread.setDaemon(true);
+            thread.start();
+            this.drainThread = thread;
+        }
+    }
+
+    private void drainLoop() {
+        while (true) {
+            Entry entry;
+            try {
+                entry = this.queue.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            int droppedCount = this.dropped.getAndSet(0);
+            if (droppedCount > 0) {
+                this.deliver(this.dropReporter, droppedCount + " log messages were dropped because logging fell behind.");
+            }
+            if (entry != null) {
+                this.deliver(entry.consumer.get(), entry.message);
+                synchronized (this.deliveredLock) {
+                    this.delivered = entry.number;
+                    this.deliveredLock.notifyAll();
+                }
+            }
+        }
+    }
+
+    private void deliver(Consumer<String> consumer, String message) {
+        try {
+            consumer.accept(message);
+        } catch (Throwable t) {
+            // A broken consumer should not kill the drain thread
+            System.err.println("Failed to log message: " + message + "\n" + ExceptionUtil.toDetailedString(t));
+        }
+    }
+
+    private static class Entry {
+        private final long number;
+        private final Supplier<Consumer<String>> consumer;
+        private final String message;
+
+        private Entry(long number, Supplier<Consumer<String>> consumer, String message) {
+            this.number = number;
+            this.consumer = consumer;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package gg.paceman.tracker.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs blocking outbound network calls (cancels, stats submission, key tests) off the tracker's tick threads.
+ * <p>
+ * This is the Java 8 version using a cached pool of daemon threads, Java 21+ runtimes load the version in
+ * META-INF/versions/21 of the multi-release jar, which uses virtual threads instead.
+ */
+public final class NetworkExecutor {
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "paceman-network");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private NetworkExecutor() {
+    }
+
+    public static ExecutorService get() {
+        return EXECUTOR;
+    }
+
+    public static boolean usesVirtualThreads() {
+        return false;
+    }
+}
@@ -1,58 +1,155 @@
 package gg.paceman.tracker.util;
 
-import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
-import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class PostUtil {
+    // Used by both HTTP clients, so a dead or stalled server can't hold a sending thread forever
+    static final int CONNECT_TIMEOUT_MILLIS = 5_000;
+    public static final int READ_TIMEOUT_MILLIS = 10_000;
+
+    private static final Map<String, CircuitBreaker> CIRCUIT_BREAKERS = new ConcurrentHashMap<>();
+
     private PostUtil() {
     }
 
+    /**
+     * Makes {@link #sendData(String, String)} and {@link #sendDataAsync(String, String)} to this endpoint go through the
+     * circuit breaker.
+     *
+     * @return the given circuit breaker
+     */
+    public static CircuitBreaker registerCircuitBreaker(String endpointUrl, CircuitBreaker breaker) {
+        CIRCUIT_BREAKERS.put(endpointUrl, breaker);
+        return breaker;
+    }
+
+    /**
+     * @throws CircuitOpenException if the endpoint has a circuit breaker that doesn't allow a request right now, nothing
+     *                              is sent in that case
+     */
     public static PostResponse sendData(String endpointUrl, String jsonData) throws IOException {
-        // Create URL object
-        URL url = new URL(endpointUrl);
-        HttpURLConnection connection = null;
+        return PostUtil.sendData(endpointUrl, jsonData, CIRCUIT_BREAKERS.get(endpointUrl));
+    }
+
+    /**
+     * Like {@link #sendData(String, String)}, through the given circuit breaker instead of the one registered for the
+     * endpoint, for trackers with their own.
+     *
+     * @param breaker null to send without one
+     */
+    public static PostResponse sendData(String endpointUrl, String jsonData, @Nullable CircuitBreaker breaker) throws IOException {
+        if (breaker == null) {
+            return HttpTransport.post(endpointUrl, jsonData);
+        }
+        long waitMillis = breaker.tryAcquire();
+        if (waitMillis > 0) {
+            throw new CircuitOpenException(breaker, waitMillis);
+        }
+
+        long start = System.currentTimeMillis();
+        PostResponse response;
         try {
-            // Open connection
-            connection = (HttpURLConnection) url.openConnection();
-
-            // Set the necessary properties
-            connection.setRequestMethod("POST");
-            connection.setRequestProperty("Content-Type", "application/json");
-            connection.setDoOutput(true);
-
-            // Write JSON data to the connection output stream
-            try (OutputStream os = connection.getOutputStream()) {
-                byte[] input = jsonData.getBytes(StandardCharsets.UTF_8);
-                os.write(input, 0, input.length);
-            }
-            int responseCode = connection.getResponseCode();
-            String message = responseCode >= 400 ? PostUtil.readStream(connection.getErrorStream()) : connection.getResponseMessage();
+            response = HttpTransport.post(endpointUrl, jsonData);
+        } catch (IOException | RuntimeException e) {
+            breaker.onFailure(e.getClass().getSimpleName(), -1);
+            throw e;
+        }
+        PostUtil.onResponse(breaker, response, System.currentTimeMillis() - start);
+        return response;
+    }
 
+    /**
+     * Sends the data without blocking the calling thread: with java.net.http's own async sending on Java 11+, on a
+     * {@link NetworkExecutor} thread on Java 8. Goes through the endpoint's circuit breaker like
+     * {@link #sendData(String, String)}. Failures complete the future exceptionally with the IOException (a
+     * {@link CircuitOpenException} if the circuit breaker held the request back) wrapped in a CompletionException.
+     */
+    public static CompletableFuture<PostResponse> sendDataAsync(String endpointUrl, String jsonData) {
+        return PostUtil.sendDataAsync(endpointUrl, jsonData, CIRCUIT_BREAKERS.get(endpointUrl));
+    }
 
-            // Return the response code
-            return new PostResponse(responseCode, message);
-        } finally {
-            // Close the connection
-            if (connection != null) {
-                connection.disconnect();
+    /**
+     * Like {@link #sendDataAsync(String, String)}, through the given circuit breaker.
+     *
+     * @param breaker null to send without one
+     */
+    public static CompletableFuture<PostResponse> sendDataAsync(String endpointUrl, String jsonData, @Nullable CircuitBreaker breaker) {
+        if (breaker == null) {
+            return HttpTransport.postAsync(endpointUrl, jsonData);
+        }
+        long waitMillis = breaker.tryAcquire();
+        if (waitMillis > 0) {
+            CompletableFuture<PostResponse> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(new CompletionException(new CircuitOpenException(breaker, waitMillis)));
+            return rejected;
+        }
+
+        long start = System.currentTimeMillis();
+        return HttpTransport.postAsync(endpointUrl, jsonData).whenComplete((response, t) -> {
+            if (t == null) {
+                PostUtil.onResponse(breaker, response, System.currentTimeMillis() - start);
+            } else {
+                Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+                breaker.onFailure(cause.getClass().getSimpleName(), -1);
             }
+        });
+    }
+
+    private static void onResponse(CircuitBreaker breaker, PostResponse response, long tookMillis) {
+        if (response.code == 429) {
+            breaker.onRateLimited(response.retryAfterMillis);
+        } else if (response.code >= 500) {
+            breaker.onFailure("HTTP " + response.code, response.retryAfterMillis);
+        } else {
+            breaker.onSuccess(tookMillis);
         }
     }
 
-    private static String readStream(InputStream inputStream) {
-        return new BufferedReader(new InputStreamReader(inputStream)).lines().collect(Collectors.joining("\n"));
+    /**
+     * @return the name of the HTTP client in use, which depends on the Java version of the runtime
+     */
+    public static String getClientName() {
+        return HttpTransport.getName();
+    }
+
+    /**
+     * @param retryAfter the Retry-After header, in seconds or as an HTTP date
+     * @return the milliseconds to wait, or -1 if there is no (valid) header
+     */
+    static long parseRetryAfter(String retryAfter) {
+        if (retryAfter == null || retryAfter.trim().isEmpty()) {
+            return -1;
+        }
+        retryAfter = retryAfter.trim();
+        try {
+            return Math.max(0, Long.parseLong(retryAfter) * 1000);
+        } catch (NumberFormatException ignored) {
+        }
+        try {
+            return Math.max(0, ZonedDateTime.parse(retryAfter, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli() - System.currentTimeMillis());
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
     }
 
     public static class PostResponse {
         public final int code;
         public final String message;
+        // From the Retry-After header, -1 if there was none
+        public final long retryAfterMillis;
 
-        private PostResponse(int code, String message) {
+        PostResponse(int code, String message, long retryAfterMillis) {
             this.code = code;
             this.message = message;
+            this.retryAfterMillis = retryAfterMillis;
         }
 
         public int getCode() {
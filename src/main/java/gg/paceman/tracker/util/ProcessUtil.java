@@ -0,0 +1,18 @@
+package gg.paceman.tracker.util;
+
+/**
+ * Detects running Minecraft processes. Java 8 has no API to list processes, so this version can't tell, Java 11+
+ * runtimes load the version in META-INF/versions/11 of the multi-release jar, which uses ProcessHandle.
+ */
+public final class ProcessUtil {
+    private ProcessUtil() {
+    }
+
+    public static boolean canDetectGame() {
+        return false;
+    }
+
+    public static boolean isGameRunning() {
+        return false;
+    }
+}
@@ -1,40 +1,144 @@
 package gg.paceman.tracker.util;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonSyntaxException;
 import gg.paceman.tracker.PaceManTracker;
-import gg.paceman.tracker.gui.PaceManTrackerGUI;
+import gg.paceman.tracker.PaceManTrackerOptions;
 import gg.paceman.tracker.util.VersionUtil.Version;
-import org.kohsuke.github.GHRelease;
-import org.kohsuke.github.GitHub;
 
-import javax.swing.*;
-import java.awt.*;
+import javax.annotation.Nullable;
 import java.io.IOException;
-import java.net.URI;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.function.Consumer;
 
 public class UpdateUtil {
     private static final String GH_REPO_LOCATION = "PaceMan-MCSR/PaceMan-Tracker";
+    public static final String LATEST_RELEASE_PAGE = "https://github.com/" + GH_REPO_LOCATION + "/releases/latest";
+    private static final String LATEST_RELEASE_API = "https://api.github.com/repos/" + GH_REPO_LOCATION + "/releases/latest";
+    private static final Path CACHE_PATH = PaceManTrackerOptions.getPaceManDir().resolve("update-check.json");
+    private static final long CACHE_TTL_MILLIS = 6 * 3_600_000; // 6 hours
+    private static final int TIMEOUT_MILLIS = 5000;
+    private static final Gson GSON = new Gson();
 
-    public static void checkForUpdates(PaceManTrackerGUI gui, String currentVersionString) throws IOException {
+    /**
+     * Checks for updates on a background thread, so startup never waits on GitHub.
+     *
+     * @param onUpdateAvailable called on the update check thread with the newer version, or null to log a warning
+     */
+    public static void checkForUpdatesAsync(String currentVersionString, @Nullable Consumer<Version> onUpdateAvailable) {
+        Thread thread = new Thread(() -> {
+            try {
+                UpdateUtil.checkForUpdates(currentVersionString, onUpdateAvailable);
+            } catch (UnknownHostException e) {
+                PaceManTracker.logDebug("Skipping update check, no internet connection.");
+            } catch (Exception e) {
+                PaceManTracker.logError("Failed to check for an update for PaceMan Tracker:\n" + ExceptionUtil.toDetailedString(e));
+            }
+        }, "update-check");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public static void checkForUpdates(String currentVersionString, @Nullable Consumer<Version> onUpdateAvailable) throws IOException {
         if (currentVersionString == null || "DEV".equals(currentVersionString)) return;
         PaceManTracker.logDebug("Checking for updates...");
         Version currentVersion = Version.of(currentVersionString.startsWith("v") ? currentVersionString.substring(1) : currentVersionString);
         Version latestVersion = UpdateUtil.getLatestGithubVersion();
 
         if (latestVersion.compareTo(currentVersion) > 0) {
-            if (gui != null) {
-                if (0 == JOptionPane.showConfirmDialog(gui, "An update is available (v" + latestVersion + "), would you like to go to the latest release page?", "PaceMan Tracker: Update Available", JOptionPane.YES_NO_OPTION, JOptionPane.INFORMATION_MESSAGE)) {
-                    Desktop.getDesktop().browse(URI.create("https://github.com/" + GH_REPO_LOCATION + "/releases/latest"));
-                }
+            if (onUpdateAvailable != null) {
+                onUpdateAvailable.accept(latestVersion);
             } else {
-                PaceManTracker.logWarning("You are not on the latest version (v" + latestVersion + ")! You can get the latest here: https://github.com/" + GH_REPO_LOCATION + "/releases/latest");
+                PaceManTracker.logWarning("You are not on the latest version (v" + latestVersion + ")! You can get the latest here: " + LATEST_RELEASE_PAGE);
             }
         }
     }
 
     private static Version getLatestGithubVersion() throws IOException {
-        GHRelease release = GitHub.connectAnonymously().getRepository(GH_REPO_LOCATION).listReleases().toList().get(0);
-        String lv = release.getTagName();
-        lv = lv.startsWith("v") ? lv.substring(1) : lv;
-        return Version.of(lv);
+        UpdateCache cache = UpdateUtil.readCache();
+        if (cache != null && Math.abs(System.currentTimeMillis() - cache.checkedAt) < CACHE_TTL_MILLIS) {
+            return Version.of(cache.latestVersion);
+        }
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(LATEST_RELEASE_API).openConnection();
+        try {
+            connection.setConnectTimeout(TIMEOUT_MILLIS);
+            connection.setReadTimeout(TIMEOUT_MILLIS);
+            connection.setRequestProperty("Accept", "application/vnd.github+json");
+            if (cache != null && cache.etag != null) {
+                // GitHub does not count 304 responses against the anonymous rate limit
+                connection.setRequestProperty("If-None-Match", cache.etag);
+            }
+            int responseCode = connection.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && cache != null) {
+                cache.checkedAt = System.currentTimeMillis();
+                UpdateUtil.writeCache(cache);
+                return Version.of(cache.latestVersion);
+            }
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Unexpected response from GitHub: " + responseCode);
+            }
+            JsonObject release;
+            try (Reader reader = new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)) {
+                release = GSON.fromJson(reader, JsonObject.class);
+            } catch (JsonSyntaxException e) {
+                throw new IOException(e);
+            }
+            String lv = release.get("tag_name").getAsString();
+            lv = lv.startsWith("v") ? lv.substring(1) : lv;
+            Version latestVersion = Version.of(lv);
+
+            UpdateCache newCache = new UpdateCache();
+            newCache.checkedAt = System.currentTimeMillis();
+            newCache.etag = connection.getHeaderField("ETag");
+            newCache.latestVersion = lv;
+            UpdateUtil.writeCache(newCache);
+            return latestVersion;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Nullable
+    private static UpdateCache readCache() {
+        if (!Files.exists(CACHE_PATH)) {
+            return null;
+        }
+        try {
+            UpdateCache cache = GSON.fromJson(new String(Files.readAllBytes(CACHE_PATH), StandardCharsets.UTF_8), UpdateCache.class);
+            if (cache == null || cache.latestVersion == null) {
+                return null;
+            }
+            Version.of(cache.latestVersion); // Throws on a corrupted version
+            return cache;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static void writeCache(UpdateCache cache) {
+        try {
+            PaceManTrackerOptions.ensurePaceManDir();
+            Path tmp = CACHE_PATH.resolveSibling(CACHE_PATH.getFileName() + ".tmp");
+            Files.write(tmp, GSON.toJson(cache).getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, CACHE_PATH, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            PaceManTracker.logDebug(() -> "Failed to write update check cache: " + e);
+        }
+    }
+
+    private static class UpdateCache {
+        long checkedAt;
+        String etag;
+        String latestVersion;
     }
 }
@@ -0,0 +1,90 @@
+package gg.paceman.tracker.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * The HTTP client behind {@link PostUtil}. This is the Java 11+ version from the multi-release jar: one shared
+ * java.net.http client that negotiates HTTP/2 and keeps connections to paceman.gg alive between sends.
+ */
+final class HttpTransport {
+
+    private static final HttpClient CLIENT = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(Duration.ofMillis(PostUtil.CONNECT_TIMEOUT_MILLIS))
+            .executor(NetworkExecutor.get())
+            .build();
+
+    private HttpTransport() {
+    }
+
+    static String getName() {
+        return "java.net.http (HTTP/2)";
+    }
+
+    static PostUtil.PostResponse post(String endpointUrl, String jsonData) throws IOException {
+        try {
+            return HttpTransport.postAsync(endpointUrl, jsonData).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while sending to " + endpointUrl);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    static CompletableFuture<PostUtil.PostResponse> postAsync(String endpointUrl, String jsonData) {
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(endpointUrl))
+                    .header("Content-Type", "application/json")
+                    .timeout(Duration.ofMillis(PostUtil.READ_TIMEOUT_MILLIS))
+                    .POST(HttpRequest.BodyPublishers.ofString(jsonData))
+                    .build();
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(new CompletionException(new IOException(e)));
+        }
+        return CLIENT.sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenApply(response -> {
+            int code = response.statusCode();
+            // Same as the HttpURLConnection version: the error body for denials, the status message otherwise
+            String message = code >= 400 ? response.body() : HttpTransport.reasonPhrase(code);
+            return new PostUtil.PostResponse(code, message, PostUtil.parseRetryAfter(response.headers().firstValue("Retry-After").orElse(null)));
+        });
+    }
+
+    /**
+     * HTTP/2 responses have no reason phrase, so use the standard one to keep messages the same as HttpURLConnection.
+     */
+    private static String reasonPhrase(int code) {
+        switch (code) {
+            case 200:
+                return "OK";
+            case 201:
+                return "Created";
+            case 202:
+                return "Accepted";
+            case 204:
+                return "No Content";
+            case 301:
+                return "Moved Permanently";
+            case 302:
+                return "Found";
+            case 304:
+                return "Not Modified";
+            default:
+                return String.valueOf(code);
+        }
+    }
+}
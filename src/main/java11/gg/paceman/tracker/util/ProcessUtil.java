@@ -0,0 +1,61 @@
+package gg.paceman.tracker.util;
+
+import gg.paceman.tracker.PaceManTracker;
+
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Detects running Minecraft processes. This is the Java 11+ version from the multi-release jar, which looks through
+ * the command lines of the user's processes with ProcessHandle.
+ * <p>
+ * Some systems (often Windows) don't give the command line of a process, only its executable. A java or javaw process
+ * whose command line can't be read is counted as a possible game, since it can't be ruled out.
+ */
+public final class ProcessUtil {
+    private static final AtomicBoolean LOGGED_NO_COMMAND_LINE = new AtomicBoolean(false);
+
+    private ProcessUtil() {
+    }
+
+    public static boolean canDetectGame() {
+        return true;
+    }
+
+    public static boolean isGameRunning() {
+        // The tracker (or Julti/Jingle hosting it) is a java process too
+        long ownPid = ProcessHandle.current().pid();
+        return ProcessHandle.allProcesses()
+                .filter(process -> process.pid() != ownPid)
+                .anyMatch(ProcessUtil::mayBeGame);
+    }
+
+    private static boolean mayBeGame(ProcessHandle process) {
+        ProcessHandle.Info info = process.info();
+        Optional<String> commandLine = info.commandLine();
+        if (commandLine.isPresent()) {
+            return ProcessUtil.isGameCommandLine(commandLine.get().toLowerCase(Locale.ROOT));
+        }
+        if (!info.command().map(ProcessUtil::isJavaExecutable).orElse(false)) {
+            return false;
+        }
+        if (LOGGED_NO_COMMAND_LINE.compareAndSet(false, true)) {
+            PaceManTracker.log("Can't read the command line of java process " + process.pid() + ", so it can't be told apart from Minecraft. Hibernation treats such processes as a running game.");
+        }
+        return true;
+    }
+
+    private static boolean isJavaExecutable(String command) {
+        String name = command.substring(Math.max(command.lastIndexOf('/'), command.lastIndexOf('\\')) + 1).toLowerCase(Locale.ROOT);
+        return name.equals("java") || name.equals("java.exe") || name.equals("javaw.exe");
+    }
+
+    private static boolean isGameCommandLine(String commandLine) {
+        // Vanilla main class, and the entrypoints of MultiMC-based launchers (MultiMC, Prism, ...)
+        return commandLine.contains("net.minecraft.client.main.main")
+                || commandLine.contains("org.multimc.entrypoint")
+                || commandLine.contains("org.prismlauncher.entrypoint")
+                || commandLine.contains("net.fabricmc.loader.impl.launch.knot.knotclient");
+    }
+}
@@ -0,0 +1,25 @@
+package gg.paceman.tracker.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs blocking outbound network calls (cancels, stats submission, key tests) off the tracker's tick threads.
+ * <p>
+ * This is the Java 21+ version from the multi-release jar: every call gets its own virtual thread, so a slow round
+ * trip does not hold on to a platform thread.
+ */
+public final class NetworkExecutor {
+    private static final ExecutorService EXECUTOR = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("paceman-network-", 0).factory());
+
+    private NetworkExecutor() {
+    }
+
+    public static ExecutorService get() {
+        return EXECUTOR;
+    }
+
+    public static boolean usesVirtualThreads() {
+        return true;
+    }
+}